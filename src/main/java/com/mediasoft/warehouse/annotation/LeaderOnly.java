@@ -0,0 +1,21 @@
+package com.mediasoft.warehouse.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Аннотация для того, чтобы отметить запланированные методы, которые в кластере
+ * должен выполнять только один экземпляр приложения — владелец аренды лидерства.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface LeaderOnly {
+    /**
+     * Название аренды. Методы с одинаковым названием аренды взаимно исключают друг друга.
+     *
+     * @return название аренды
+     */
+    String value();
+}
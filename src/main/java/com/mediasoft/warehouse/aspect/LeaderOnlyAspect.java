@@ -0,0 +1,58 @@
+package com.mediasoft.warehouse.aspect;
+
+import com.mediasoft.warehouse.annotation.LeaderOnly;
+import com.mediasoft.warehouse.service.LeaderLeaseManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.interceptor.ExposeInvocationInterceptor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Аспект, который выполняет методы, помеченные аннотацией {@link LeaderOnly},
+ * только на экземпляре приложения, владеющем арендой лидерства.
+ * Выполняется раньше остальных аспектов, поэтому пропущенный запуск
+ * не открывает транзакцию и не учитывается в измерениях. Порядок следует сразу за
+ * {@link ExposeInvocationInterceptor}: без него привязка аннотации к параметру совета не работает.
+ */
+@Component
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+@RequiredArgsConstructor
+@Slf4j
+public class LeaderOnlyAspect {
+    private final LeaderLeaseManager leaderLeaseManager;
+
+    /**
+     * Захватывает или продлевает аренду и выполняет метод, продлевая аренду во время выполнения.
+     * Если аренда принадлежит другому экземпляру, метод не выполняется.
+     *
+     * @param joinPoint  точка присоединения, представляющая вызов целевого метода
+     * @param leaderOnly аннотация, примененная к методу
+     * @return результат выполнения метода или null, если запуск пропущен
+     * @throws Throwable, если возникает исключение при выполнении метода
+     */
+    @Around("@annotation(leaderOnly)")
+    public Object runAsLeader(ProceedingJoinPoint joinPoint, LeaderOnly leaderOnly) throws Throwable {
+        if (!leaderLeaseManager.isEnabled()) {
+            return joinPoint.proceed();
+        }
+        if (leaderLeaseManager.acquire(leaderOnly.value()).isEmpty()) {
+            log.debug("{} skipped: lease {} is held by another node",
+                    joinPoint.getSignature().toShortString(), leaderOnly.value());
+            return null;
+        }
+        final ScheduledFuture<?> heartbeat = leaderLeaseManager.startHeartbeat(leaderOnly.value());
+        try {
+            return joinPoint.proceed();
+        } finally {
+            heartbeat.cancel(false);
+        }
+    }
+}
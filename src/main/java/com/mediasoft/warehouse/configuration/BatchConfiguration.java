@@ -1,35 +1,64 @@
 package com.mediasoft.warehouse.configuration;
 
+import com.mediasoft.warehouse.export.ProductSnapshotExporter;
+import com.mediasoft.warehouse.export.SnapshotSession;
+import com.mediasoft.warehouse.export.SnapshotWriter;
 import com.mediasoft.warehouse.model.Product;
+import com.mediasoft.warehouse.partitioner.ProductIdRangePartitioner;
 import com.mediasoft.warehouse.processor.ProductItemProcessor;
+import com.mediasoft.warehouse.scheduling.OptimizedSchedulerWithSpringBatching;
+import com.mediasoft.warehouse.service.LeaderLeaseManager;
+import com.mediasoft.warehouse.sizing.AdaptiveBatchListener;
+import com.mediasoft.warehouse.sizing.AdaptiveBatchSizer;
+import com.mediasoft.warehouse.sizing.AdaptiveBatchSizers;
+import com.mediasoft.warehouse.sizing.AdaptiveCompletionPolicy;
+import com.mediasoft.warehouse.telemetry.PricingRunRecorder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ItemWriteListener;
 import org.springframework.batch.core.Job;
+import org.springframework.batch.core.SkipListener;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.builder.FaultTolerantStepBuilder;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
 import org.springframework.batch.core.step.builder.StepBuilder;
 import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.database.JdbcBatchItemWriter;
 import org.springframework.batch.item.database.JdbcPagingItemReader;
 import org.springframework.batch.item.database.Order;
 import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilder;
 import org.springframework.batch.item.database.support.PostgresPagingQueryProvider;
-import org.springframework.batch.item.file.FlatFileItemWriter;
-import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
-import org.springframework.batch.item.file.transform.PassThroughLineAggregator;
 import org.springframework.batch.item.support.CompositeItemWriter;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
-import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.sql.Connection;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * Конфигурационный класс для настройки и определения задач пакетной обработки.
@@ -38,26 +67,75 @@ import java.util.Map;
 @ConditionalOnExpression(value = "#{'${app.scheduling.mode:none}'.equals('optimization') and " +
         "${app.scheduling.optimization.spring-batch:false}}")
 @Profile("!dev")
+@Slf4j
 public class BatchConfiguration {
+    private static final String CHUNK_START_ATTRIBUTE = "pricing.chunk.start";
+
+    @Value("${app.scheduling.optimization.partitioning.enabled:false}")
+    private boolean partitioningEnabled;
+    @Value("${app.scheduling.optimization.partitioning.grid-size:4}")
+    private int gridSize;
+    @Value("${app.scheduling.optimization.partitioning.pool-size:4}")
+    private int poolSize;
+    @Value("${app.scheduling.optimization.fault-tolerance.retry-limit:3}")
+    private int retryLimit;
+    @Value("${app.scheduling.optimization.fault-tolerance.skip-limit:100}")
+    private int skipLimit;
+
     /**
      * Создает читатель для чтения данных из базы данных.
      *
      * @param dataSource источник данных для чтения
+     * @param batchSizer регулятор размера пакета
      * @return JdbcPagingItemReader для чтения данных из базы данных
      */
     @Bean
-    public JdbcPagingItemReader<Product> reader(DataSource dataSource) {
+    @StepScope
+    public JdbcPagingItemReader<Product> reader(DataSource dataSource, AdaptiveBatchSizer batchSizer) {
         JdbcPagingItemReader<Product> reader = new JdbcPagingItemReader<>();
         reader.setDataSource(dataSource);
         // Размер пакета - количество записей, выбираемых за один раз из базы данных
-        reader.setFetchSize(10000);
+        reader.setFetchSize(batchSizer.getFetchSize());
         // Размер страницы - количество записей, выбираемых из базы данных за один запрос пагинации
-        reader.setPageSize(1000);
+        reader.setPageSize(batchSizer.getFetchSize());
         reader.setRowMapper(productRowMapper());
         reader.setQueryProvider(queryProvider());
         return reader;
     }
 
+    /**
+     * Создает читатель для чтения диапазона идентификаторов одной партиции.
+     *
+     * @param dataSource источник данных для чтения
+     * @param batchSizer регулятор размера пакета
+     * @param minId      нижняя граница диапазона идентификаторов партиции
+     * @param maxId      верхняя граница диапазона идентификаторов партиции
+     * @return JdbcPagingItemReader для чтения данных партиции
+     */
+    @Bean
+    @StepScope
+    public JdbcPagingItemReader<Product> partitionReader(
+            DataSource dataSource,
+            AdaptiveBatchSizer batchSizer,
+            @Value("#{stepExecutionContext['" + ProductIdRangePartitioner.MIN_ID_KEY + "']}") String minId,
+            @Value("#{stepExecutionContext['" + ProductIdRangePartitioner.MAX_ID_KEY + "']}") String maxId) {
+        PostgresPagingQueryProvider queryProvider = createQueryProvider();
+        queryProvider.setWhereClause("WHERE id BETWEEN :minId AND :maxId");
+
+        Map<String, Object> parameterValues = new HashMap<>();
+        parameterValues.put("minId", UUID.fromString(minId));
+        parameterValues.put("maxId", UUID.fromString(maxId));
+
+        JdbcPagingItemReader<Product> reader = new JdbcPagingItemReader<>();
+        reader.setDataSource(dataSource);
+        reader.setFetchSize(batchSizer.getFetchSize());
+        reader.setPageSize(batchSizer.getFetchSize());
+        reader.setRowMapper(productRowMapper());
+        reader.setQueryProvider(queryProvider);
+        reader.setParameterValues(parameterValues);
+        return reader;
+    }
+
     /**
      * Создает маппер строк для маппинга результатов запроса.
      *
@@ -75,11 +153,20 @@ public class BatchConfiguration {
      */
     @Bean
     public PostgresPagingQueryProvider queryProvider() {
+        return createQueryProvider();
+    }
+
+    /**
+     * Создает новый экземпляр поставщика запросов, отсортированных по идентификатору.
+     *
+     * @return поставщик запросов с пагинируемыми данными
+     */
+    private PostgresPagingQueryProvider createQueryProvider() {
         Map<String, Order> sortKeys = new HashMap<>();
         sortKeys.put("id", Order.ASCENDING);
         PostgresPagingQueryProvider queryProvider = new PostgresPagingQueryProvider();
         queryProvider.setSelectClause("SELECT *");
-        queryProvider.setFromClause("FROM products");
+        queryProvider.setFromClause("FROM product");
         queryProvider.setSortKeys(sortKeys);
 
         return queryProvider;
@@ -104,73 +191,288 @@ public class BatchConfiguration {
     @Bean
     public JdbcBatchItemWriter<Product> writer(DataSource dataSource) {
         return new JdbcBatchItemWriterBuilder<Product>()
-                .sql("UPDATE products SET price = :price WHERE id = :id")
+                .sql("UPDATE product SET price = :price WHERE id = :id")
                 .dataSource(dataSource)
                 .beanMapped()
                 .build();
     }
 
     /**
-     * Создает писатель для записи данных в файл.
+     * Создает композитный писатель: в базу данных и проверка лидерства перед фиксацией порции.
      *
-     * @return FlatFileItemWriter для записи данных в файл
+     * @param writer                писатель данных в базу данных
+     * @param leadershipCheckWriter проверка лидерства перед фиксацией порции
+     * @return CompositeItemWriter для шагов обработки данных
      */
     @Bean
-    public FlatFileItemWriter<Product> fileWriter() {
-        return new FlatFileItemWriterBuilder<Product>()
-                .name("productItemWriter")
-                .shouldDeleteIfExists(true)
-                .resource(new FileSystemResource("products.txt"))
-                .lineAggregator(new PassThroughLineAggregator<>())
-                .build();
+    public CompositeItemWriter<Product> compositeItemWriter(JdbcBatchItemWriter<Product> writer,
+                                                            ItemWriter<Product> leadershipCheckWriter) {
+        CompositeItemWriter<Product> compositeWriter = new CompositeItemWriter<>();
+        compositeWriter.setDelegates(Arrays.asList(writer, leadershipCheckWriter));
+        return compositeWriter;
     }
 
     /**
-     * Создает композитный писатель для использования обоих писателей данных.
+     * Создает писатель, который последним в транзакции порции проверяет, что экземпляр
+     * по-прежнему владеет арендой лидерства, и блокирует строку аренды до фиксации порции.
      *
-     * @param dataSource источник данных для записи
-     * @return CompositeItemWriter для использования обоих писателей данных
+     * @param leaderLeaseManager менеджер аренд лидерства
+     * @return ItemWriter для проверки лидерства
      */
     @Bean
-    public CompositeItemWriter<Product> compositeItemWriter(DataSource dataSource) {
-        CompositeItemWriter<Product> compositeWriter = new CompositeItemWriter<>();
-        compositeWriter.setDelegates(Arrays.asList(writer(dataSource), fileWriter()));
-        return compositeWriter;
+    public ItemWriter<Product> leadershipCheckWriter(LeaderLeaseManager leaderLeaseManager) {
+        return chunk -> leaderLeaseManager.checkLeadership(LeaderLeaseManager.PRICING_LEASE);
+    }
+
+    /**
+     * Создает регулятор размера порций и страниц чтения, сохраняющий подобранный размер между запусками.
+     *
+     * @param adaptiveBatchSizers реестр регуляторов размера пакета
+     * @return AdaptiveBatchSizer для шагов обработки данных
+     */
+    @Bean
+    public AdaptiveBatchSizer batchSizer(AdaptiveBatchSizers adaptiveBatchSizers) {
+        return adaptiveBatchSizers.get(OptimizedSchedulerWithSpringBatching.SCHEDULER_NAME);
+    }
+
+    /**
+     * Создает слушатель, который передает длительность записи порций регулятору размера пакета.
+     *
+     * @param batchSizer регулятор размера пакета
+     * @return AdaptiveBatchListener для шагов обработки данных
+     */
+    @Bean
+    public AdaptiveBatchListener<Product> adaptiveBatchListener(AdaptiveBatchSizer batchSizer) {
+        return new AdaptiveBatchListener<>(batchSizer);
+    }
+
+    /**
+     * Создает слушатель, который записывает в журнал товары, пропущенные из-за ошибок.
+     *
+     * @return SkipListener для шагов обработки данных
+     */
+    @Bean
+    public SkipListener<Product, Product> pricingSkipListener() {
+        return new SkipListener<>() {
+            @Override
+            public void onSkipInRead(Throwable throwable) {
+                log.warn("Skipped unreadable product: {}", throwable.getMessage());
+            }
+
+            @Override
+            public void onSkipInProcess(Product product, Throwable throwable) {
+                log.warn("Skipped product {} while calculating price: {}", product.getId(), throwable.getMessage());
+            }
+
+            @Override
+            public void onSkipInWrite(Product product, Throwable throwable) {
+                log.warn("Skipped product {} while saving price: {}", product.getId(), throwable.getMessage());
+            }
+        };
+    }
+
+    /**
+     * Создает слушатель, который учитывает длительность транзакции каждой порции в показателях запусков.
+     *
+     * @param pricingRunRecorder компонент показателей запусков
+     * @return ChunkListener для шагов обработки данных
+     */
+    @Bean
+    public ChunkListener pricingChunkListener(PricingRunRecorder pricingRunRecorder) {
+        return new ChunkListener() {
+            @Override
+            public void beforeChunk(ChunkContext context) {
+                context.setAttribute(CHUNK_START_ATTRIBUTE, System.nanoTime());
+            }
+
+            @Override
+            public void afterChunk(ChunkContext context) {
+                if (context.getAttribute(CHUNK_START_ATTRIBUTE) instanceof Long start) {
+                    pricingRunRecorder.recordTransaction(OptimizedSchedulerWithSpringBatching.SCHEDULER_NAME,
+                            System.nanoTime() - start);
+                }
+            }
+        };
+    }
+
+    /**
+     * Создает исполнитель, на котором параллельно выполняются шаги партиций.
+     * Размер пула не должен превышать размер пула соединений с базой данных.
+     *
+     * @return TaskExecutor для шагов партиций
+     */
+    @Bean
+    public TaskExecutor partitionTaskExecutor() {
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(poolSize);
+        taskExecutor.setMaxPoolSize(poolSize);
+        taskExecutor.setThreadNamePrefix("price-partition-");
+        return taskExecutor;
     }
 
     /**
      * Создает Job для обработки данных.
      *
-     * @param jobRepository репозиторий заданий
-     * @param step1         шаг обработки данных
+     * @param jobRepository        репозиторий заданий
+     * @param step1                шаг обработки данных
+     * @param partitionManagerStep управляющий шаг партиционированной обработки данных
+     * @param exportSnapshotStep   шаг выгрузки снимка таблицы товаров
      * @return экземпляр Job для обработки данных
      */
     @Bean
-    public Job importUserJob(JobRepository jobRepository, Step step1) {
-        return new JobBuilder("importUserJob", jobRepository)
+    public Job importUserJob(JobRepository jobRepository, Step step1,
+                             Step partitionManagerStep, Step exportSnapshotStep) {
+        JobBuilder jobBuilder = new JobBuilder("importUserJob", jobRepository)
+                .incrementer(new RunIdIncrementer());
+        if (partitioningEnabled) {
+            return jobBuilder
+                    .start(partitionManagerStep)
+                    .next(exportSnapshotStep)
+                    .build();
+        }
+        return jobBuilder
                 .start(step1)
+                .next(exportSnapshotStep)
                 .build();
     }
 
     /**
      * Создает шаг обработки данных для использования в работе.
      *
-     * @param jobRepository       репозиторий работ
-     * @param transactionManager  менеджер транзакций
-     * @param reader              читатель данных
-     * @param processor           обработчик данных
-     * @param compositeItemWriter композитный писатель данных
+     * @param jobRepository         репозиторий работ
+     * @param transactionManager    менеджер транзакций
+     * @param reader                читатель данных
+     * @param processor             обработчик данных
+     * @param compositeItemWriter   композитный писатель данных
+     * @param pricingChunkListener  слушатель длительности транзакций порций
+     * @param pricingSkipListener   слушатель пропущенных товаров
+     * @param batchSizer            регулятор размера порций
+     * @param adaptiveBatchListener слушатель длительности записи порций
      * @return экземпляр Step для обработки данных
      */
     @Bean
     public Step step1(JobRepository jobRepository, PlatformTransactionManager transactionManager,
                       JdbcPagingItemReader<Product> reader, ItemProcessor<Product, Product> processor,
-                      CompositeItemWriter<Product> compositeItemWriter) {
-        return new StepBuilder("step1", jobRepository)
-                .<Product, Product>chunk(100000, transactionManager)
+                      CompositeItemWriter<Product> compositeItemWriter, ChunkListener pricingChunkListener,
+                      SkipListener<Product, Product> pricingSkipListener, AdaptiveBatchSizer batchSizer,
+                      AdaptiveBatchListener<Product> adaptiveBatchListener) {
+        return faultTolerant(new StepBuilder("step1", jobRepository)
+                .<Product, Product>chunk(new AdaptiveCompletionPolicy(batchSizer), transactionManager)
                 .reader(reader)
                 .processor(processor)
-                .writer(compositeItemWriter)
+                .writer(compositeItemWriter), pricingSkipListener)
+                .listener(pricingChunkListener)
+                .listener((ItemWriteListener<Product>) adaptiveBatchListener)
+                .listener((StepExecutionListener) adaptiveBatchListener)
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Создает шаг обработки данных одной партиции.
+     *
+     * @param jobRepository         репозиторий работ
+     * @param transactionManager    менеджер транзакций
+     * @param partitionReader       читатель данных партиции
+     * @param processor             обработчик данных
+     * @param compositeItemWriter   композитный писатель данных
+     * @param pricingChunkListener  слушатель длительности транзакций порций
+     * @param pricingSkipListener   слушатель пропущенных товаров
+     * @param batchSizer            регулятор размера порций
+     * @param adaptiveBatchListener слушатель длительности записи порций
+     * @return экземпляр Step для обработки данных партиции
+     */
+    @Bean
+    public Step partitionWorkerStep(JobRepository jobRepository, PlatformTransactionManager transactionManager,
+                                    JdbcPagingItemReader<Product> partitionReader,
+                                    ItemProcessor<Product, Product> processor,
+                                    CompositeItemWriter<Product> compositeItemWriter,
+                                    ChunkListener pricingChunkListener,
+                                    SkipListener<Product, Product> pricingSkipListener,
+                                    AdaptiveBatchSizer batchSizer,
+                                    AdaptiveBatchListener<Product> adaptiveBatchListener) {
+        return faultTolerant(new StepBuilder("partitionWorkerStep", jobRepository)
+                .<Product, Product>chunk(new AdaptiveCompletionPolicy(batchSizer), transactionManager)
+                .reader(partitionReader)
+                .processor(processor)
+                .writer(compositeItemWriter), pricingSkipListener)
+                .listener(pricingChunkListener)
+                .listener((ItemWriteListener<Product>) adaptiveBatchListener)
+                .listener((StepExecutionListener) adaptiveBatchListener)
+                .build();
+    }
+
+    /**
+     * Создает управляющий шаг, который разбивает таблицу товаров на диапазоны идентификаторов
+     * и параллельно запускает для них шаги партиций.
+     *
+     * @param jobRepository         репозиторий работ
+     * @param partitionWorkerStep   шаг обработки данных партиции
+     * @param partitionTaskExecutor исполнитель шагов партиций
+     * @return экземпляр Step для партиционированной обработки данных
+     */
+    @Bean
+    public Step partitionManagerStep(JobRepository jobRepository, Step partitionWorkerStep,
+                                     TaskExecutor partitionTaskExecutor) {
+        return new StepBuilder("partitionManagerStep", jobRepository)
+                .partitioner(partitionWorkerStep.getName(), new ProductIdRangePartitioner())
+                .step(partitionWorkerStep)
+                .gridSize(gridSize)
+                .taskExecutor(partitionTaskExecutor)
+                .build();
+    }
+
+    /**
+     * Создает шаг, который выгружает снимок таблицы товаров после обновления цен.
+     * Снимок выгружается отдельным шагом, а не по мере записи порций,
+     * чтобы после перезапуска задания он содержал все товары, включая обработанные до сбоя.
+     *
+     * @param jobRepository           репозиторий работ
+     * @param transactionManager      менеджер транзакций
+     * @param dataSource              источник данных
+     * @param productSnapshotExporter компонент выгрузки снимка
+     * @param snapshotWriter          компонент записи снимков
+     * @return экземпляр Step для выгрузки снимка
+     */
+    @Bean
+    public Step exportSnapshotStep(JobRepository jobRepository, PlatformTransactionManager transactionManager,
+                                   DataSource dataSource, ProductSnapshotExporter productSnapshotExporter,
+                                   SnapshotWriter snapshotWriter) {
+        return new StepBuilder("exportSnapshotStep", jobRepository)
+                .tasklet((contribution, chunkContext) -> {
+                    final Connection connection = DataSourceUtils.getConnection(dataSource);
+                    try (SnapshotSession snapshot = snapshotWriter.open()) {
+                        productSnapshotExporter.export(connection, snapshot);
+                        final Path snapshotPath = snapshot.commit();
+                        chunkContext.getStepContext().getStepExecution().getExecutionContext()
+                                .putLong(OptimizedSchedulerWithSpringBatching.SNAPSHOT_BYTES_KEY, snapshot.getBytes());
+                        log.info("Exported products snapshot to {}", snapshotPath);
+                    } finally {
+                        DataSourceUtils.releaseConnection(connection, dataSource);
+                    }
+                    return RepeatStatus.FINISHED;
+                }, transactionManager)
+                .build();
+    }
+
+    /**
+     * Включает для шага обработки данных повтор порций при временных ошибках бд (взаимные блокировки,
+     * таймауты) и пропуск товаров, которые невозможно обработать или которые были удалены во время обработки.
+     * Результаты обработчика кэшируются, поэтому при повторе цена товара не увеличивается повторно.
+     *
+     * @param builder      построитель шага обработки данных
+     * @param skipListener слушатель пропущенных товаров
+     * @return построитель отказоустойчивого шага
+     */
+    private FaultTolerantStepBuilder<Product, Product> faultTolerant(SimpleStepBuilder<Product, Product> builder,
+                                                                     SkipListener<Product, Product> skipListener) {
+        return builder.faultTolerant()
+                .processorNonTransactional()
+                .retry(TransientDataAccessException.class)
+                .retryLimit(retryLimit)
+                .skip(DataIntegrityViolationException.class)
+                .skip(EmptyResultDataAccessException.class)
+                .skip(ArithmeticException.class)
+                .skipLimit(skipLimit)
+                .listener(skipListener);
+    }
+}
@@ -1,6 +1,8 @@
 package com.mediasoft.warehouse.configuration;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mediasoft.warehouse.service.ProductSearchCache;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CachingConfigurer;
 import org.springframework.cache.annotation.EnableCaching;
@@ -8,6 +10,7 @@ import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -29,14 +32,28 @@ public class CacheConfiguration implements CachingConfigurer {
 
     /**
      * Создает менеджер кэша на основе настроек Caffeine.
+     * Кэши результатов поиска товаров {@link ProductSearchCache} регистрируются заранее
+     * с собственными размером и временем жизни и собирают статистику попаданий и промахов,
+     * которая публикуется как показатель {@code cache.gets} с тегом {@code cache}.
      *
      * @param caffeine Объект, содержащий настройки кэширования.
+     * @param searchCacheSize Максимальное количество страниц в каждом кэше результатов поиска.
+     * @param searchCacheTtl Время жизни страницы в кэше результатов поиска в миллисекундах.
      * @return Менеджер кэша для использования в приложении.
      */
     @Bean
-    public CacheManager cacheManager(Caffeine caffeine) {
+    public CacheManager cacheManager(Caffeine caffeine,
+                                     @Value("${app.search.cache.max-size:1000}") long searchCacheSize,
+                                     @Value("${app.search.cache.ttl:60000}") long searchCacheTtl) {
         CaffeineCacheManager caffeineCacheManager = new CaffeineCacheManager();
         caffeineCacheManager.setCaffeine(caffeine);
+        for (String cacheName : new String[]{ProductSearchCache.LISTING_CACHE, ProductSearchCache.FILTER_CACHE}) {
+            caffeineCacheManager.registerCustomCache(cacheName, Caffeine.newBuilder()
+                    .maximumSize(searchCacheSize)
+                    .expireAfterWrite(Duration.ofMillis(searchCacheTtl))
+                    .recordStats()
+                    .build());
+        }
         return caffeineCacheManager;
     }
 }
@@ -1,18 +1,33 @@
 package com.mediasoft.warehouse.controller;
 
 import com.mediasoft.warehouse.dto.SaveProductDto;
+import com.mediasoft.warehouse.dto.ViewImportResultDto;
+import com.mediasoft.warehouse.dto.ViewProductBatchDto;
 import com.mediasoft.warehouse.dto.ViewProductDto;
-import com.mediasoft.warehouse.filter.currency.CurrencyProvider;
-import com.mediasoft.warehouse.model.enums.Currency;
-import com.mediasoft.warehouse.model.Product;
+import com.mediasoft.warehouse.dto.ViewProductFacetsDto;
+import com.mediasoft.warehouse.export.ExportFormat;
+import com.mediasoft.warehouse.export.ProductCatalogExporter;
+import com.mediasoft.warehouse.model.enums.FieldName;
+import com.mediasoft.warehouse.service.ProductFacetService;
+import com.mediasoft.warehouse.service.ProductImportService;
 import com.mediasoft.warehouse.service.ProductService;
 import com.mediasoft.warehouse.search.AbstractProductFilter;
+import com.mediasoft.warehouse.search.CountMode;
+import com.mediasoft.warehouse.search.CursorPage;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.UUID;
 
@@ -24,7 +39,9 @@ import java.util.UUID;
 @RequestMapping("/products")
 public class ProductController {
     private final ProductService productService;
-    private final CurrencyProvider currencyProvider;
+    private final ProductCatalogExporter productCatalogExporter;
+    private final ProductImportService productImportService;
+    private final ProductFacetService productFacetService;
 
     /**
      * Получить список товаров с возможностью фильтрации и пагинацией.
@@ -32,50 +49,107 @@ public class ProductController {
      * @param search Ключевое слово для фильтрации товаров (опционально).
      * @param page   Номер страницы.
      * @param size   Размер страницы.
+     * @param count  Способ подсчета общего количества товаров.
      * @return Список DTO товаров, с фильтром или без.
      */
     @GetMapping
-    public Page<ViewProductDto> get(@RequestParam(required = false) String search,
-                                    @RequestParam(defaultValue = "1") int page,
-                                    @RequestParam(defaultValue = "5") int size) {
-        Page<Product> productsPage;
+    public Slice<ViewProductDto> get(@RequestParam(required = false) String search,
+                                     @RequestParam(defaultValue = "1") int page,
+                                     @RequestParam(defaultValue = "5") int size,
+                                     @RequestParam(defaultValue = "EXACT") CountMode count) {
         if (search == null) {
-            productsPage = productService.getAllProducts(page, size);
-        } else {
-            productsPage = productService.getAllProducts(search, page, size);
+            return productService.getAllProducts(page, size, count);
         }
-        Currency currency = currencyProvider.getCurrency();
-        return productsPage.map(product -> {
-            ViewProductDto viewProductDto = new ViewProductDto(product);
-            viewProductDto.setCurrency(currency);
-            return viewProductDto;
-        });
+        return productService.getAllProducts(search, page, size, count);
     }
 
     /**
      * Поиск товаров с использованием фильтров.
      *
      * @param pageable               Pageable для работы с пагинацией и сортировкой результатов поиска
+     * @param count                  способ подсчета общего количества товаров
      * @param abstractProductFilters список фильтров товаров
      * @return страницу товаров, удовлетворяющих фильтрам, преобразованную в список DTO товаров
      */
     @PostMapping("/search")
-    public Page<ViewProductDto> searchProducts(Pageable pageable,
-                                               @RequestBody @Valid List<AbstractProductFilter<?>> abstractProductFilters) {
-        return productService.getAllProducts(pageable, abstractProductFilters).map(ViewProductDto::new);
+    public Slice<ViewProductDto> searchProducts(Pageable pageable,
+                                                @RequestParam(defaultValue = "EXACT") CountMode count,
+                                                @RequestBody @Valid List<AbstractProductFilter<?>> abstractProductFilters) {
+        return productService.getAllProducts(pageable, abstractProductFilters, count);
     }
 
     /**
-     * Поиск товаров с использованием фильтров.
+     * Выгрузить все товары, удовлетворяющие фильтрам, одним потоком в валюте сеанса.
      *
-     * @param pageable               Pageable для работы с пагинацией и сортировкой результатов поиска
+     * @param format                 формат выгрузки
+     * @param abstractProductFilters список фильтров товаров (опционально)
+     * @param response               ответ, в который записываются товары
+     * @throws IOException если произошла ошибка записи ответа
+     */
+    @RequestMapping(value = "/export", method = {RequestMethod.GET, RequestMethod.POST})
+    public void export(@RequestParam(defaultValue = "NDJSON") ExportFormat format,
+                       @RequestBody(required = false) @Valid List<AbstractProductFilter<?>> abstractProductFilters,
+                       HttpServletResponse response) throws IOException {
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=products." + format.getExtension());
+        productCatalogExporter.export(abstractProductFilters == null ? List.of() : abstractProductFilters,
+                format, response.getOutputStream());
+    }
+
+    /**
+     * Получить количества товаров по категориям, доступности и ценовым диапазонам.
+     *
+     * @param abstractProductFilters Список фильтров товаров (опционально).
+     * @return Фасеты товаров, удовлетворяющих фильтрам.
+     */
+    @RequestMapping(value = "/facets", method = {RequestMethod.GET, RequestMethod.POST})
+    public ViewProductFacetsDto getFacets(
+            @RequestBody(required = false) @Valid List<AbstractProductFilter<?>> abstractProductFilters) {
+        return productFacetService.getFacets(abstractProductFilters == null ? List.of() : abstractProductFilters);
+    }
+
+    /**
+     * Получить список товаров по курсору без пропуска строк.
+     *
+     * @param search    Ключевое слово для фильтрации товаров (опционально).
+     * @param cursor    Курсор из предыдущей страницы (опционально).
+     * @param sort      Поле сортировки, если курсор не передан.
+     * @param direction Направление сортировки, если курсор не передан.
+     * @param size      Размер страницы.
+     * @param count     Нужно ли подсчитать общее количество товаров.
+     * @return Страница DTO товаров с курсором следующей страницы.
+     */
+    @GetMapping("/cursor")
+    public CursorPage<ViewProductDto> getByCursor(@RequestParam(required = false) String search,
+                                                  @RequestParam(required = false) String cursor,
+                                                  @RequestParam(defaultValue = "ID") FieldName sort,
+                                                  @RequestParam(defaultValue = "ASC") Sort.Direction direction,
+                                                  @RequestParam(defaultValue = "5") int size,
+                                                  @RequestParam(defaultValue = "false") boolean count) {
+        return productService.getProductsAfter(search, cursor, sort, direction, size, count);
+    }
+
+    /**
+     * Поиск товаров с использованием фильтров по курсору без пропуска строк.
+     *
+     * @param cursor                 курсор из предыдущей страницы (опционально)
+     * @param sort                   поле сортировки, если курсор не передан
+     * @param direction              направление сортировки, если курсор не передан
+     * @param size                   размер страницы
+     * @param count                  нужно ли подсчитать общее количество товаров, удовлетворяющих фильтрам
      * @param abstractProductFilters список фильтров товаров
-     * @return страницу товаров, удовлетворяющих фильтрам, преобразованную в список DTO товаров
+     * @return страницу DTO товаров, удовлетворяющих фильтрам, с курсором следующей страницы
      */
-    @PostMapping("/search")
-    public Page<ViewProductDto> searchProducts(Pageable pageable,
-                                               @RequestBody @Valid List<AbstractProductFilter<?>> abstractProductFilters) {
-        return productService.getAllProducts(pageable, abstractProductFilters).map(ViewProductDto::new);
+    @PostMapping("/search/cursor")
+    public CursorPage<ViewProductDto> searchProductsByCursor(@RequestParam(required = false) String cursor,
+                                                             @RequestParam(defaultValue = "ID") FieldName sort,
+                                                             @RequestParam(defaultValue = "ASC") Sort.Direction direction,
+                                                             @RequestParam(defaultValue = "20") int size,
+                                                             @RequestParam(defaultValue = "false") boolean count,
+                                                             @RequestBody @Valid List<AbstractProductFilter<?>> abstractProductFilters) {
+        return productService.getProductsAfter(abstractProductFilters, cursor, sort, direction, size, count);
     }
 
     /**
@@ -86,20 +160,53 @@ public class ProductController {
      */
     @GetMapping("/{id}")
     public ViewProductDto getById(@PathVariable UUID id) {
-        ViewProductDto productDto = new ViewProductDto(productService.getProductById(id));
-        productDto.setCurrency(currencyProvider.getCurrency());
-        return productDto;
+        return productService.getProductViewById(id);
+    }
+
+    /**
+     * Получить товары по списку ID одним запросом.
+     *
+     * @param ids Идентификаторы товаров.
+     * @return Найденные товары и идентификаторы, для которых товары не найдены.
+     */
+    @PostMapping("/batch-get")
+    public ViewProductBatchDto getByIds(@RequestBody List<UUID> ids) {
+        return productService.getProductViewsByIds(new LinkedHashSet<>(ids));
     }
 
     /**
      * Создать товар.
      *
      * @param saveProductDto Информация о новом товаре.
-     * @return Информация о созданном товаре.
+     * @return Информация о созданном товаре с ценой в валюте сеанса.
      */
     @PostMapping
     public ViewProductDto create(@RequestBody @Valid SaveProductDto saveProductDto) {
-        return new ViewProductDto(productService.createProduct(saveProductDto));
+        return productService.getProductViewById(productService.createProduct(saveProductDto).getId());
+    }
+
+    /**
+     * Создать товары из потока JSON-массива.
+     *
+     * @param inputStream JSON-массив с информацией о новых товарах.
+     * @return Результат импорта каждого товара.
+     * @throws IOException если произошла ошибка чтения запроса.
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ViewImportResultDto bulkCreateFromJson(InputStream inputStream) throws IOException {
+        return productImportService.importJson(inputStream);
+    }
+
+    /**
+     * Создать товары из CSV с заголовком.
+     *
+     * @param inputStream CSV с информацией о новых товарах.
+     * @return Результат импорта каждого товара.
+     * @throws IOException если произошла ошибка чтения запроса.
+     */
+    @PostMapping(value = "/bulk", consumes = "text/csv")
+    public ViewImportResultDto bulkCreateFromCsv(InputStream inputStream) throws IOException {
+        return productImportService.importCsv(inputStream);
     }
 
     /**
@@ -107,12 +214,12 @@ public class ProductController {
      *
      * @param id             Идентификатор товара.
      * @param saveProductDto Новая информация о товаре.
-     * @return Информация об измененном товаре.
+     * @return Информация об измененном товаре с ценой в валюте сеанса.
      */
     @PutMapping("/{id}")
     public ViewProductDto update(@PathVariable UUID id,
                                  @RequestBody @Valid SaveProductDto saveProductDto) {
-        return new ViewProductDto(productService.updateProduct(id, saveProductDto));
+        return productService.getProductViewById(productService.updateProduct(id, saveProductDto).getId());
     }
 
     /**
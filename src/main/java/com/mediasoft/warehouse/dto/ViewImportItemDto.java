@@ -0,0 +1,41 @@
+package com.mediasoft.warehouse.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.mediasoft.warehouse.model.enums.ImportStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * DTO для отображения результата импорта одного товара.
+ */
+@Getter
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ViewImportItemDto {
+    /**
+     * Порядковый номер товара во входных данных, начиная с нуля.
+     */
+    private int index;
+
+    /**
+     * Артикул товара.
+     */
+    private String article;
+
+    /**
+     * Результат импорта.
+     */
+    private ImportStatus status;
+
+    /**
+     * Идентификатор созданного товара.
+     */
+    private UUID id;
+
+    /**
+     * Причина, по которой товар не создан.
+     */
+    private String error;
+}
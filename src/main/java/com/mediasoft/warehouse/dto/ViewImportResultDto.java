@@ -0,0 +1,36 @@
+package com.mediasoft.warehouse.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * DTO для отображения результата массового импорта товаров.
+ */
+@Getter
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ViewImportResultDto {
+    /**
+     * Количество созданных товаров.
+     */
+    private long created;
+
+    /**
+     * Количество несозданных товаров.
+     */
+    private long rejected;
+
+    /**
+     * Результаты импорта товаров в порядке входных данных.
+     */
+    private List<ViewImportItemDto> items;
+
+    /**
+     * Причина и место, в котором чтение входных данных прервано из-за нарушения формата.
+     * Товары, прочитанные до этого места, импортированы, а следующие за ним не прочитаны.
+     */
+    private String error;
+}
@@ -0,0 +1,28 @@
+package com.mediasoft.warehouse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO для отображения количества товаров в ценовом диапазоне.
+ */
+@Getter
+@AllArgsConstructor
+public class ViewPriceBucketDto {
+    /**
+     * Нижняя граница цены включительно или null для первого диапазона.
+     */
+    private BigDecimal from;
+
+    /**
+     * Верхняя граница цены не включительно или null для последнего диапазона.
+     */
+    private BigDecimal to;
+
+    /**
+     * Количество товаров в диапазоне.
+     */
+    private long count;
+}
@@ -0,0 +1,24 @@
+package com.mediasoft.warehouse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DTO для отображения товаров, запрошенных по списку идентификаторов.
+ */
+@Getter
+@AllArgsConstructor
+public class ViewProductBatchDto {
+    /**
+     * Найденные товары в порядке запрошенных идентификаторов.
+     */
+    private List<ViewProductDto> products;
+
+    /**
+     * Идентификаторы, для которых товары не найдены.
+     */
+    private List<UUID> missing;
+}
@@ -95,4 +95,35 @@ public class ViewProductDto {
         this.isAvailable = product.getIsAvailable();
         this.currency = Currency.RUB;
     }
+
+    /**
+     * Создает экземпляр класса из значений полей товара.
+     * Используется в запросах JPQL, выбирающих DTO без загрузки сущностей {@link Product}.
+     *
+     * @param id                     Идентификатор товара.
+     * @param name                   Наименование товара.
+     * @param article                Артикул товара.
+     * @param description            Описание товара.
+     * @param category               Категория товара.
+     * @param price                  Цена товара.
+     * @param quantity               Количество товара.
+     * @param lastQuantityChangeDate Дата последнего изменения количества товара.
+     * @param createdDate            Дата создания товара.
+     * @param isAvailable            Доступность товара.
+     */
+    public ViewProductDto(UUID id, String name, String article, String description, ProductCategory category,
+                          BigDecimal price, Long quantity, LocalDateTime lastQuantityChangeDate,
+                          LocalDate createdDate, Boolean isAvailable) {
+        this.id = id;
+        this.name = name;
+        this.article = article;
+        this.description = description;
+        this.category = category;
+        this.price = price;
+        this.quantity = quantity;
+        this.lastQuantityChangeDate = lastQuantityChangeDate;
+        this.createdDate = createdDate;
+        this.isAvailable = isAvailable;
+        this.currency = Currency.RUB;
+    }
 }
@@ -0,0 +1,35 @@
+package com.mediasoft.warehouse.dto;
+
+import com.mediasoft.warehouse.model.enums.ProductCategory;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DTO для отображения фасетов товаров: количества товаров по категориям, доступности и ценовым диапазонам.
+ */
+@Getter
+@AllArgsConstructor
+public class ViewProductFacetsDto {
+    /**
+     * Общее количество товаров.
+     */
+    private long total;
+
+    /**
+     * Количество товаров по категориям.
+     */
+    private Map<ProductCategory, Long> categories;
+
+    /**
+     * Количество доступных и недоступных товаров.
+     */
+    private Map<Boolean, Long> availability;
+
+    /**
+     * Количество товаров по ценовым диапазонам в рублях.
+     */
+    private List<ViewPriceBucketDto> prices;
+}
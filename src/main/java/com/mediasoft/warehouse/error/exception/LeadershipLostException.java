@@ -0,0 +1,16 @@
+package com.mediasoft.warehouse.error.exception;
+
+/**
+ * Исключение, которое выбрасывается, когда экземпляр приложения
+ * потерял аренду лидерства до фиксации изменений.
+ */
+public class LeadershipLostException extends RuntimeException {
+    /**
+     * Конструктор для создания объекта исключения.
+     *
+     * @param name Название аренды, которая была потеряна.
+     */
+    public LeadershipLostException(String name) {
+        super(String.format("Leadership for lease [%s] is lost", name));
+    }
+}
@@ -0,0 +1,30 @@
+package com.mediasoft.warehouse.export;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Формат выгрузки каталога товаров.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ExportFormat {
+    /**
+     * Один JSON-объект товара на строку.
+     */
+    NDJSON("application/x-ndjson", "ndjson"),
+    /**
+     * CSV с заголовком.
+     */
+    CSV("text/csv", "csv");
+
+    /**
+     * Тип содержимого ответа.
+     */
+    private final String contentType;
+
+    /**
+     * Расширение файла выгрузки.
+     */
+    private final String extension;
+}
@@ -0,0 +1,153 @@
+package com.mediasoft.warehouse.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mediasoft.warehouse.dto.ViewProductDto;
+import com.mediasoft.warehouse.search.AbstractProductFilter;
+import com.mediasoft.warehouse.service.ProductService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Выгружает каталог товаров в поток ответа в формате NDJSON или CSV.
+ * Товары читаются через {@link ProductService#forEachProduct} и записываются по одному, поэтому
+ * выгрузка занимает постоянный объем памяти и выполняется одним запросом к бд вместо постраничного чтения.
+ * Цены переводятся в валюту сеанса, даты форматируются так же, как в ответах API.
+ */
+@Component
+public class ProductCatalogExporter {
+    private static final String CSV_HEADER = "id,name,article,description,category,price,quantity,"
+            + "last_quantity_change_date,created_date,is_available,currency";
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ProductService productService;
+    private final ObjectWriter objectWriter;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    /**
+     * Конструктор для создания компонента выгрузки.
+     *
+     * @param productService сервис товаров
+     * @param objectMapper   объект для сериализации JSON
+     * @param fetchSize      количество строк, получаемых из бд за одно обращение
+     */
+    public ProductCatalogExporter(ProductService productService, ObjectMapper objectMapper,
+                                  @Value("${app.export.fetch-size:1000}") int fetchSize) {
+        this.productService = productService;
+        this.objectMapper = objectMapper;
+        this.objectWriter = objectMapper.writerFor(ViewProductDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Выгружает товары, удовлетворяющие фильтрам, в поток. Поток не закрывается.
+     *
+     * @param filters      список фильтров товаров
+     * @param format       формат выгрузки
+     * @param outputStream поток, в который записываются товары
+     * @return количество выгруженных товаров
+     * @throws IOException если произошла ошибка записи в поток
+     */
+    public long export(List<AbstractProductFilter<?>> filters, ExportFormat format, OutputStream outputStream)
+            throws IOException {
+        try {
+            return format == ExportFormat.CSV
+                    ? exportCsv(filters, outputStream)
+                    : exportNdjson(filters, outputStream);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Выгружает товары в формате NDJSON.
+     *
+     * @param filters      список фильтров товаров
+     * @param outputStream поток, в который записываются товары
+     * @return количество выгруженных товаров
+     * @throws IOException если произошла ошибка записи в поток
+     */
+    private long exportNdjson(List<AbstractProductFilter<?>> filters, OutputStream outputStream) throws IOException {
+        final long[] rows = {0};
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            productService.forEachProduct(filters, fetchSize, view -> {
+                try {
+                    objectWriter.writeValue(generator, view);
+                    generator.writeRaw('\n');
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        return rows[0];
+    }
+
+    /**
+     * Выгружает товары в формате CSV с заголовком.
+     *
+     * @param filters      список фильтров товаров
+     * @param outputStream поток, в который записываются товары
+     * @return количество выгруженных товаров
+     * @throws IOException если произошла ошибка записи в поток
+     */
+    private long exportCsv(List<AbstractProductFilter<?>> filters, OutputStream outputStream) throws IOException {
+        final long[] rows = {0};
+        final Writer writer = new BufferedWriter(
+                new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        productService.forEachProduct(filters, fetchSize, view -> {
+            try {
+                writer.write(toCsvRow(view));
+                writer.write('\n');
+                rows[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+        return rows[0];
+    }
+
+    /**
+     * Форматирует DTO товара в строку CSV.
+     *
+     * @param view DTO товара
+     * @return строка CSV без разделителя строк
+     */
+    private static String toCsvRow(ViewProductDto view) {
+        final String lastQuantityChangeDate = view.getLastQuantityChangeDate() == null
+                ? ""
+                : DATE_TIME_FORMATTER.format(view.getLastQuantityChangeDate());
+        return String.join(",",
+                view.getId().toString(),
+                ProductSnapshotExporter.escapeCsv(view.getName()),
+                ProductSnapshotExporter.escapeCsv(view.getArticle()),
+                ProductSnapshotExporter.escapeCsv(view.getDescription()),
+                view.getCategory().name(),
+                view.getPrice().toPlainString(),
+                view.getQuantity().toString(),
+                lastQuantityChangeDate,
+                view.getCreatedDate() == null ? "" : view.getCreatedDate().toString(),
+                String.valueOf(view.getIsAvailable()),
+                view.getCurrency().getName());
+    }
+}
@@ -0,0 +1,132 @@
+package com.mediasoft.warehouse.export;
+
+import com.mediasoft.warehouse.model.Product;
+import com.mediasoft.warehouse.service.PriceEpochProvider;
+import org.postgresql.PGConnection;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Выгружает снимок таблицы товаров в формате CSV.
+ * На PostgreSQL снимок передается командой {@code COPY ... TO STDOUT} через {@code CopyManager}
+ * без создания объектов для каждой строки, на остальных базах данных (H2) - через обычный JDBC-запрос.
+ * Выгрузка выполняется в переданном соединении, поэтому видит неподтвержденные изменения его транзакции.
+ */
+@Component
+public class ProductSnapshotExporter {
+    // Цена хранится с дополнительными знаками для режима эпох, а в снимок выгружается до копеек
+    private static final String SELECT_QUERY = "SELECT id, name, article, description, category, "
+            + "ROUND(price, " + PriceEpochProvider.PRICE_SCALE + ") AS price, quantity, is_available FROM product";
+    private static final String COPY_QUERY = "COPY (" + SELECT_QUERY + ") TO STDOUT WITH (FORMAT csv)";
+    private static final int FETCH_SIZE = 10000;
+
+    /**
+     * Выгружает снимок таблицы товаров в поток.
+     *
+     * @param connection   соединение с бд
+     * @param outputStream поток, в который записывается снимок
+     * @return количество выгруженных товаров
+     * @throws SQLException если произошла ошибка доступа к бд
+     * @throws IOException  если произошла ошибка записи в поток
+     */
+    public long export(Connection connection, OutputStream outputStream) throws SQLException, IOException {
+        if (connection.isWrapperFor(PGConnection.class)) {
+            return connection.unwrap(PGConnection.class).getCopyAPI().copyOut(COPY_QUERY, outputStream);
+        }
+        return exportWithSelect(connection, outputStream);
+    }
+
+    /**
+     * Выгружает снимок таблицы товаров построчно через JDBC в том же формате, что и {@code COPY ... (FORMAT csv)}.
+     *
+     * @param connection   соединение с бд
+     * @param outputStream поток, в который записывается снимок
+     * @return количество выгруженных товаров
+     * @throws SQLException если произошла ошибка доступа к бд
+     * @throws IOException  если произошла ошибка записи в поток
+     */
+    private long exportWithSelect(Connection connection, OutputStream outputStream) throws SQLException, IOException {
+        long rows = 0;
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_QUERY)) {
+            statement.setFetchSize(FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                final ResultSetMetaData metaData = resultSet.getMetaData();
+                final int columnCount = metaData.getColumnCount();
+                while (resultSet.next()) {
+                    for (int i = 1; i <= columnCount; i++) {
+                        if (i > 1) {
+                            outputStream.write(',');
+                        }
+                        final String value = metaData.getColumnType(i) == Types.BOOLEAN
+                                ? formatBoolean(resultSet, i)
+                                : resultSet.getString(i);
+                        if (value != null) {
+                            outputStream.write(escapeCsv(value).getBytes(StandardCharsets.UTF_8));
+                        }
+                    }
+                    outputStream.write('\n');
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Форматирует товар в строку снимка в том же формате, что и выгрузка таблицы.
+     *
+     * @param product товар
+     * @return строка снимка без разделителя строк
+     */
+    public String toCsvRow(Product product) {
+        return String.join(",",
+                escapeCsv(product.getId().toString()),
+                escapeCsv(product.getName()),
+                escapeCsv(product.getArticle()),
+                escapeCsv(product.getDescription()),
+                escapeCsv(product.getCategory().name()),
+                product.getPrice().setScale(PriceEpochProvider.PRICE_SCALE, RoundingMode.HALF_UP).toPlainString(),
+                product.getQuantity().toString(),
+                Boolean.TRUE.equals(product.getIsAvailable()) ? "t" : "f");
+    }
+
+    /**
+     * Форматирует логическое значение так же, как PostgreSQL в формате CSV.
+     *
+     * @param resultSet ResultSet, содержащий значение
+     * @param column    номер столбца
+     * @return "t", "f" или null
+     * @throws SQLException если произошла ошибка доступа к бд
+     */
+    private String formatBoolean(ResultSet resultSet, int column) throws SQLException {
+        final boolean value = resultSet.getBoolean(column);
+        return resultSet.wasNull() ? null : value ? "t" : "f";
+    }
+
+    /**
+     * Экранирует значение по правилам CSV.
+     *
+     * @param value значение
+     * @return экранированное значение
+     */
+    public static String escapeCsv(String value) {
+        if (value.isEmpty()) {
+            return "\"\"";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
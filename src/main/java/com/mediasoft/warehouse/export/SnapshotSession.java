@@ -0,0 +1,276 @@
+package com.mediasoft.warehouse.export;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Сессия записи одного снимка.
+ * Данные накапливаются в одном из двух буферов, заполненный буфер передается выделенному потоку,
+ * который записывает его на диск, пока вызывающий поток заполняет второй буфер.
+ * Вызывающий поток ожидает диск, только если оба буфера еще не записаны.
+ * Ожидание периодически проверяет, что поток записи жив, поэтому его ошибка или завершение
+ * прерывают сессию с причиной ошибки, а не блокируют вызывающий поток.
+ */
+@Slf4j
+public class SnapshotSession extends OutputStream {
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final int GZIP_BUFFER_SIZE = 1 << 16;
+    private static final long WAIT_MILLIS = 100;
+
+    private final SnapshotWriter snapshotWriter;
+    private final Path temp;
+    private final boolean gzip;
+    private final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(2);
+    private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(2);
+    private final Thread writerThread;
+    private volatile IOException failure;
+    private volatile boolean aborted;
+    private byte[] buffer;
+    private int position;
+    private long bytes;
+    private boolean closed;
+
+    /**
+     * Создает сессию и запускает поток записи.
+     *
+     * @param snapshotWriter компонент, публикующий снимок
+     * @param temp           временный файл снимка
+     * @param gzip           признак сжатия снимка
+     * @param bufferSize     размер каждого из двух буферов
+     */
+    SnapshotSession(SnapshotWriter snapshotWriter, Path temp, boolean gzip, int bufferSize) {
+        this.snapshotWriter = snapshotWriter;
+        this.temp = temp;
+        this.gzip = gzip;
+        this.buffer = new byte[bufferSize];
+        this.free.add(new byte[bufferSize]);
+        this.writerThread = new Thread(this::drain, "snapshot-writer-" + THREAD_COUNTER.incrementAndGet());
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (position == buffer.length) {
+            handOff();
+        }
+        buffer[position++] = (byte) b;
+        bytes++;
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        ensureOpen();
+        while (length > 0) {
+            if (position == buffer.length) {
+                handOff();
+            }
+            final int count = Math.min(length, buffer.length - position);
+            System.arraycopy(data, offset, buffer, position, count);
+            position += count;
+            offset += count;
+            length -= count;
+            bytes += count;
+        }
+    }
+
+    /**
+     * Дописывает оставшиеся данные, дожидается окончания записи и публикует снимок.
+     *
+     * @return путь к файлу поколения снимка
+     * @throws IOException если произошла ошибка записи или публикации снимка
+     */
+    public Path commit() throws IOException {
+        ensureOpen();
+        try {
+            if (position > 0) {
+                handOff();
+            }
+            finish();
+        } catch (IOException exception) {
+            abort();
+            throw exception;
+        }
+        closed = true;
+        if (failure != null) {
+            Files.deleteIfExists(temp);
+            throw failure;
+        }
+        return snapshotWriter.publish(temp, bytes);
+    }
+
+    /**
+     * Возвращает количество записанных в сессию байт до сжатия.
+     *
+     * @return количество байт
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Отменяет запись снимка и удаляет временный файл. Текущий снимок остается без изменений.
+     */
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        aborted = true;
+        try {
+            finish();
+        } catch (IOException exception) {
+            log.warn("Interrupted while aborting snapshot {}", temp, exception);
+        }
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException exception) {
+            log.warn("Failed to delete temporary snapshot {}", temp, exception);
+        }
+    }
+
+    /**
+     * Отменяет запись снимка, если он не был подтвержден.
+     */
+    @Override
+    public void close() {
+        abort();
+    }
+
+    /**
+     * Передает заполненный буфер потоку записи и получает свободный.
+     *
+     * @throws IOException если поток записи завершился с ошибкой или ожидание было прервано
+     */
+    private void handOff() throws IOException {
+        checkWriter();
+        try {
+            while (!filled.offer(new Chunk(buffer, position), WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkWriter();
+            }
+            byte[] next;
+            while ((next = free.poll(WAIT_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                checkWriter();
+            }
+            buffer = next;
+            position = 0;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing snapshot " + temp);
+        }
+    }
+
+    /**
+     * Сообщает потоку записи о конце данных и дожидается его завершения.
+     * Если поток записи уже завершился, ожидание не выполняется.
+     *
+     * @throws IOException если ожидание было прервано
+     */
+    private void finish() throws IOException {
+        try {
+            boolean sent = false;
+            while (!sent && writerThread.isAlive()) {
+                sent = filled.offer(Chunk.END, WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            writerThread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while finishing snapshot " + temp);
+        }
+    }
+
+    /**
+     * Проверяет, что поток записи не завершился с ошибкой и еще принимает буферы.
+     *
+     * @throws IOException ошибка потока записи или признак его неожиданного завершения
+     */
+    private void checkWriter() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (!writerThread.isAlive()) {
+            throw failure != null ? failure : new IOException("Snapshot writer stopped for " + temp);
+        }
+    }
+
+    /**
+     * Цикл потока записи: записывает буферы на диск и возвращает их вызывающему потоку.
+     * После ошибки или отмены буферы только возвращаются, чтобы вызывающий поток не блокировался.
+     */
+    private void drain() {
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final OutputStream channelStream = Channels.newOutputStream(channel);
+            final OutputStream outputStream = gzip
+                    ? new GZIPOutputStream(channelStream, GZIP_BUFFER_SIZE)
+                    : channelStream;
+            while (true) {
+                final Chunk chunk = filled.take();
+                if (chunk == Chunk.END) {
+                    break;
+                }
+                if (failure == null && !aborted) {
+                    try {
+                        outputStream.write(chunk.data(), 0, chunk.length());
+                    } catch (IOException exception) {
+                        failure = exception;
+                    }
+                }
+                free.put(chunk.data());
+            }
+            if (failure == null && !aborted) {
+                outputStream.flush();
+                if (outputStream instanceof GZIPOutputStream gzipOutputStream) {
+                    gzipOutputStream.finish();
+                }
+                channel.force(true);
+            }
+            if (failure == null) {
+                outputStream.close();
+            }
+        } catch (IOException exception) {
+            failure = exception;
+        } catch (InterruptedException exception) {
+            failure = new InterruptedIOException("Snapshot writer interrupted");
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException | Error exception) {
+            failure = new IOException("Snapshot writer failed for " + temp, exception);
+            throw exception;
+        }
+    }
+
+    /**
+     * Проверяет, что сессия еще не завершена.
+     *
+     * @throws IOException если сессия уже подтверждена или отменена
+     */
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Snapshot session is already closed");
+        }
+    }
+
+    /**
+     * Заполненная часть буфера, переданная потоку записи.
+     *
+     * @param data   буфер
+     * @param length количество заполненных байт
+     */
+    private record Chunk(byte[] data, int length) {
+        private static final Chunk END = new Chunk(new byte[0], 0);
+    }
+}
@@ -0,0 +1,141 @@
+package com.mediasoft.warehouse.export;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Компонент для записи снимков таблицы товаров, общий для всех планировщиков.
+ * Каждый снимок записывается в отдельном потоке во временный файл, после успешного завершения
+ * атомарно переименовывается в файл поколения с отметкой времени и становится текущим снимком.
+ * Хранится не более заданного количества поколений.
+ */
+@Component
+@Slf4j
+public class SnapshotWriter {
+    private static final String GZIP_EXTENSION = ".gz";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final DateTimeFormatter GENERATION_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmssSSS");
+
+    @Value("${app.scheduling.snapshot.directory:.}")
+    private String directoryName;
+    @Value("${app.scheduling.snapshot.file-name:products.txt}")
+    private String fileName;
+    @Value("${app.scheduling.snapshot.gzip:false}")
+    private boolean gzip;
+    @Value("${app.scheduling.snapshot.generations:5}")
+    private int generations;
+    @Value("${app.scheduling.snapshot.buffer-size:1048576}")
+    private int bufferSize;
+
+    private Path directory;
+    private String baseName;
+    private String extension;
+    private Pattern generationPattern;
+
+    /**
+     * Создает каталог снимков и подготавливает шаблон имен файлов поколений.
+     *
+     * @throws IOException если не удалось создать каталог
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        // Путь строится из строки: преобразование в Path через загрузчик ресурсов веб-приложения
+        // указывает на каталог контейнера сервлетов, а не на рабочий каталог
+        directory = Path.of(directoryName);
+        Files.createDirectories(directory);
+        final int dot = fileName.lastIndexOf('.');
+        baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        extension = dot > 0 ? fileName.substring(dot) : "";
+        generationPattern = Pattern.compile(Pattern.quote(baseName) + "-\\d{8}-\\d{9}"
+                + Pattern.quote(extension) + "(" + Pattern.quote(GZIP_EXTENSION) + ")?");
+    }
+
+    /**
+     * Начинает запись нового снимка.
+     * Снимок становится доступным только после вызова {@link SnapshotSession#commit()},
+     * закрытие сессии без подтверждения отменяет запись.
+     *
+     * @return сессия записи снимка
+     * @throws IOException если не удалось создать временный файл
+     */
+    public SnapshotSession open() throws IOException {
+        final Path temp = Files.createTempFile(directory, baseName + "-", extension + TEMP_EXTENSION);
+        return new SnapshotSession(this, temp, gzip, bufferSize);
+    }
+
+    /**
+     * Публикует записанный снимок: переименовывает временный файл в файл поколения,
+     * заменяет им текущий снимок и удаляет устаревшие поколения.
+     *
+     * @param temp  временный файл снимка
+     * @param bytes количество записанных байт до сжатия
+     * @return путь к файлу поколения
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    synchronized Path publish(Path temp, long bytes) throws IOException {
+        final String suffix = extension + (gzip ? GZIP_EXTENSION : "");
+        final Path generation = directory.resolve(
+                baseName + "-" + LocalDateTime.now().format(GENERATION_FORMATTER) + suffix);
+        Files.move(temp, generation, StandardCopyOption.ATOMIC_MOVE);
+
+        final Path latest = directory.resolve(fileName + (gzip ? GZIP_EXTENSION : ""));
+        replaceLatest(generation, latest);
+        if (generations <= 0) {
+            Files.delete(generation);
+        }
+        pruneGenerations();
+
+        log.info("Published snapshot {} ({} bytes before compression)", latest, bytes);
+        return generation;
+    }
+
+    /**
+     * Атомарно заменяет текущий снимок жесткой ссылкой на файл поколения,
+     * а если файловая система не поддерживает жесткие ссылки - его копией.
+     *
+     * @param generation файл поколения
+     * @param latest     файл текущего снимка
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    private void replaceLatest(Path generation, Path latest) throws IOException {
+        final Path link = directory.resolve(latest.getFileName() + TEMP_EXTENSION);
+        Files.deleteIfExists(link);
+        try {
+            Files.createLink(link, generation);
+        } catch (UnsupportedOperationException | IOException exception) {
+            Files.copy(generation, link, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(link, latest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Удаляет поколения снимков сверх заданного количества, начиная с самых старых.
+     *
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    private void pruneGenerations() throws IOException {
+        final List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream
+                    .filter(path -> generationPattern.matcher(path.getFileName().toString()).matches())
+                    .sorted(Comparator.comparing((Path path) -> path.getFileName().toString()).reversed())
+                    .toList();
+        }
+        for (int i = Math.max(generations, 0); i < files.size(); i++) {
+            Files.deleteIfExists(files.get(i));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.mediasoft.warehouse.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Сущность, представляющая эпоху цен: накопленный множитель,
+ * который применяется к базовой цене товаров при чтении.
+ */
+@Entity
+@Table(name = "price_epoch")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class PriceEpoch {
+    /**
+     * Идентификатор эпохи. Более поздние эпохи имеют больший идентификатор.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", updatable = false, unique = true, nullable = false)
+    private Long id;
+
+    /**
+     * Накопленный множитель цены относительно базовой цены товаров.
+     */
+    @Column(name = "multiplier", nullable = false, precision = 19, scale = 10)
+    private BigDecimal multiplier;
+
+    /**
+     * Дата создания эпохи.
+     */
+    @Column(name = "created_date", updatable = false, nullable = false)
+    private LocalDateTime createdDate;
+
+    /**
+     * Конструктор, создающий новую эпоху с указанным множителем.
+     *
+     * @param multiplier Накопленный множитель цены.
+     */
+    public PriceEpoch(BigDecimal multiplier) {
+        this.multiplier = multiplier;
+        this.createdDate = LocalDateTime.now();
+    }
+}
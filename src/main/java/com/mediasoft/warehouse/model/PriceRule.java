@@ -0,0 +1,72 @@
+package com.mediasoft.warehouse.model;
+
+import com.mediasoft.warehouse.model.enums.ProductCategory;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * Сущность, представляющая правило изменения цен для категории товаров
+ * и, необязательно, для диапазона цен внутри категории.
+ * Товары, для которых не нашлось правила, изменяются на общий процент
+ * {@code app.scheduling.priceIncreasePercentage}.
+ */
+@Entity
+@Table(name = "price_rule", indexes = @Index(name = "idx_price_rule_category", columnList = "category"))
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class PriceRule {
+    /**
+     * Идентификатор правила.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", updatable = false, unique = true, nullable = false)
+    private Long id;
+
+    /**
+     * Категория товаров, к которой применяется правило.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "category", nullable = false)
+    private ProductCategory category;
+
+    /**
+     * Нижняя граница цены (включительно) или null, если граница не задана.
+     */
+    @Column(name = "min_price", precision = 19, scale = 2)
+    private BigDecimal minPrice;
+
+    /**
+     * Верхняя граница цены (не включительно) или null, если граница не задана.
+     */
+    @Column(name = "max_price", precision = 19, scale = 2)
+    private BigDecimal maxPrice;
+
+    /**
+     * Процент изменения цены.
+     */
+    @Column(name = "percent", nullable = false, precision = 19, scale = 4)
+    private BigDecimal percent;
+
+    /**
+     * Приоритет правила. Если к товару подходит несколько правил,
+     * применяется правило с наибольшим приоритетом, а при равенстве - добавленное позже.
+     */
+    @Column(name = "priority", nullable = false)
+    private Integer priority;
+}
@@ -0,0 +1,45 @@
+package com.mediasoft.warehouse.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Сущность, представляющая контрольную точку поэтапного обновления цен товаров.
+ * Позволяет продолжить прерванный запуск планировщика с места остановки.
+ */
+@Entity
+@Table(name = "price_update_checkpoint")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class PriceUpdateCheckpoint {
+    /**
+     * Название планировщика, которому принадлежит контрольная точка.
+     */
+    @Id
+    @Column(name = "scheduler", updatable = false, nullable = false)
+    private String scheduler;
+
+    /**
+     * Идентификатор последнего обработанного товара
+     * или null, если последний запуск завершился полностью.
+     */
+    @Column(name = "last_id")
+    private UUID lastId;
+
+    /**
+     * Время последнего обновления контрольной точки.
+     */
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -61,9 +61,9 @@ public class Product {
     private ProductCategory category;
 
     /**
-     * Цена товара.
+     * Цена товара. В режиме ленивых эпох хранится базовая цена с дополнительными знаками после запятой.
      */
-    @Column(name = "price", nullable = false)
+    @Column(name = "price", nullable = false, precision = 38, scale = 10)
     @NonNull
     private BigDecimal price;
 
@@ -0,0 +1,56 @@
+package com.mediasoft.warehouse.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Сущность, представляющая аренду лидерства для запланированной задачи.
+ * Задачу выполняет только экземпляр приложения, владеющий неистекшей арендой.
+ */
+@Entity
+@Table(name = "scheduler_lease")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class SchedulerLease {
+    /**
+     * Название аренды.
+     */
+    @Id
+    @Column(name = "name", updatable = false, nullable = false)
+    private String name;
+
+    /**
+     * Идентификатор экземпляра приложения, владеющего арендой.
+     */
+    @Column(name = "owner", nullable = false)
+    private String owner;
+
+    /**
+     * Токен ограждения. Увеличивается при каждой смене владельца,
+     * поэтому бывший лидер не может зафиксировать изменения после потери аренды.
+     */
+    @Column(name = "fencing_token", nullable = false)
+    private Long fencingToken;
+
+    /**
+     * Время истечения аренды.
+     */
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    /**
+     * Время последнего продления аренды владельцем.
+     */
+    @Column(name = "heartbeat_at", nullable = false)
+    private LocalDateTime heartbeatAt;
+}
@@ -4,13 +4,28 @@ package com.mediasoft.warehouse.model.enums;
  * Перечисление для полей товаров.
  */
 public enum FieldName {
-    ID,
-    NAME,
-    ARTICLE,
-    DESCRIPTION,
-    CATEGORY,
-    PRICE,
-    QUANTITY,
-    LAST_QUANTITY_CHANGE_DATE,
-    CREATED_DATE
+    ID("id"),
+    NAME("name"),
+    ARTICLE("article"),
+    DESCRIPTION("description"),
+    CATEGORY("category"),
+    PRICE("price"),
+    QUANTITY("quantity"),
+    LAST_QUANTITY_CHANGE_DATE("lastQuantityChangeDate"),
+    CREATED_DATE("createdDate");
+
+    private final String attribute;
+
+    FieldName(String attribute) {
+        this.attribute = attribute;
+    }
+
+    /**
+     * Возвращает название атрибута сущности товара.
+     *
+     * @return Название атрибута.
+     */
+    public String getAttribute() {
+        return attribute;
+    }
 }
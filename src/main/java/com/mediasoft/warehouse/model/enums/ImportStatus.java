@@ -0,0 +1,23 @@
+package com.mediasoft.warehouse.model.enums;
+
+/**
+ * Перечисление для результата импорта одного товара.
+ */
+public enum ImportStatus {
+    /**
+     * Товар создан.
+     */
+    CREATED,
+    /**
+     * Товар с таким артикулом уже существует или встречается в импорте раньше.
+     */
+    DUPLICATE,
+    /**
+     * Данные товара не прошли проверку.
+     */
+    INVALID,
+    /**
+     * Товар не сохранен из-за ошибки бд.
+     */
+    FAILED
+}
@@ -10,7 +10,9 @@ public enum OperationType {
     EQUAL("="),
     GRATER_THAN_OR_EQ(">="),
     LESS_THAN_OR_EQ("<="),
-    LIKE("~");
+    LIKE("~"),
+    IN("in"),
+    BETWEEN("between");
 
     private final String code;
 
@@ -28,6 +30,15 @@ public enum OperationType {
         return code;
     }
     
+    /**
+     * Проверяет, задается ли параметр операции списком значений.
+     *
+     * @return true для операций "in" и "between".
+     */
+    public boolean isMultiValued() {
+        return this == IN || this == BETWEEN;
+    }
+
     /**
      * Получает тип операции по коду.
      *
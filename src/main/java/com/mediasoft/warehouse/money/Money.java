@@ -0,0 +1,329 @@
+package com.mediasoft.warehouse.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Денежная сумма с фиксированной точкой: целое число минимальных единиц в {@code long} и масштаб.
+ * Используется в горячих циклах пересчета цен вместо {@link BigDecimal}: арифметические операции
+ * не создают промежуточных объектов, округление выполняется точно по правилу HALF_UP.
+ * Преобразование в {@link BigDecimal} и обратно выполняется без потерь.
+ * Если результат умножения не помещается в {@code long}, он вычисляется через {@link BigDecimal}.
+ */
+public final class Money implements Comparable<Money> {
+    /**
+     * Максимальный поддерживаемый масштаб.
+     */
+    public static final int MAX_SCALE = 18;
+    /**
+     * Ноль с нулевым масштабом.
+     */
+    public static final Money ZERO = new Money(0, 0);
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= MAX_SCALE; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final long unscaledValue;
+    private final int scale;
+
+    private Money(long unscaledValue, int scale) {
+        this.unscaledValue = unscaledValue;
+        this.scale = scale;
+    }
+
+    /**
+     * Создает сумму из количества минимальных единиц и масштаба.
+     *
+     * @param unscaledValue количество минимальных единиц
+     * @param scale         масштаб от 0 до {@link #MAX_SCALE}
+     * @return сумма, равная {@code unscaledValue * 10^-scale}
+     */
+    public static Money ofUnscaled(long unscaledValue, int scale) {
+        checkScale(scale);
+        return new Money(unscaledValue, scale);
+    }
+
+    /**
+     * Создает сумму из {@link BigDecimal} без потери точности.
+     * Незначащие нули дробной части отбрасываются, только если без этого значение не помещается.
+     *
+     * @param value значение
+     * @return сумма, равная значению
+     * @throws ArithmeticException если значение нельзя представить без потери точности
+     */
+    public static Money of(BigDecimal value) {
+        if (isCompact(value)) {
+            return new Money(unscaledLong(value), value.scale());
+        }
+        BigDecimal normalized = value.scale() < 0 ? value.setScale(0, RoundingMode.UNNECESSARY) : value;
+        if (normalized.scale() > MAX_SCALE || normalized.unscaledValue().bitLength() > 63) {
+            normalized = normalized.stripTrailingZeros();
+            if (normalized.scale() < 0) {
+                normalized = normalized.setScale(0, RoundingMode.UNNECESSARY);
+            }
+        }
+        if (normalized.scale() > MAX_SCALE) {
+            throw new ArithmeticException("Scale of " + value + " exceeds " + MAX_SCALE);
+        }
+        return new Money(normalized.unscaledValue().longValueExact(), normalized.scale());
+    }
+
+    /**
+     * Создает сумму из {@link BigDecimal}, округляя значение по правилу HALF_UP до указанного масштаба.
+     *
+     * @param value значение
+     * @param scale масштаб от 0 до {@link #MAX_SCALE}
+     * @return округленная сумма
+     * @throws ArithmeticException если округленное значение не помещается в {@code long}
+     */
+    public static Money of(BigDecimal value, int scale) {
+        checkScale(scale);
+        return of(value.setScale(scale, RoundingMode.HALF_UP));
+    }
+
+    /**
+     * Преобразует сумму в {@link BigDecimal} с тем же масштабом.
+     *
+     * @return значение суммы
+     */
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(unscaledValue, scale);
+    }
+
+    /**
+     * Возвращает количество минимальных единиц.
+     *
+     * @return количество минимальных единиц
+     */
+    public long getUnscaledValue() {
+        return unscaledValue;
+    }
+
+    /**
+     * Возвращает масштаб.
+     *
+     * @return масштаб
+     */
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * Складывает суммы. Масштаб результата равен большему из масштабов.
+     *
+     * @param other слагаемое
+     * @return сумма
+     * @throws ArithmeticException при переполнении
+     */
+    public Money add(Money other) {
+        if (scale == other.scale) {
+            return new Money(Math.addExact(unscaledValue, other.unscaledValue), scale);
+        }
+        if (scale > other.scale) {
+            return new Money(Math.addExact(unscaledValue, other.upscale(scale)), scale);
+        }
+        return new Money(Math.addExact(upscale(other.scale), other.unscaledValue), other.scale);
+    }
+
+    /**
+     * Умножает сумму на целое число без округления, например цену на количество.
+     *
+     * @param multiplier множитель
+     * @return произведение с тем же масштабом
+     * @throws ArithmeticException при переполнении
+     */
+    public Money multiply(long multiplier) {
+        return new Money(Math.multiplyExact(unscaledValue, multiplier), scale);
+    }
+
+    /**
+     * Умножает сумму на множитель и приводит результат к указанному масштабу: округляет по правилу HALF_UP,
+     * если масштаб произведения больше, и дополняет нулями, если меньше.
+     * Если произведение в указанном масштабе не помещается в {@code long},
+     * незначащие нули дробной части отбрасываются, как в {@link #of(BigDecimal)}.
+     *
+     * @param multiplier  множитель
+     * @param resultScale масштаб результата
+     * @return округленное произведение
+     * @throws ArithmeticException если произведение нельзя представить суммой
+     */
+    public Money multiply(Money multiplier, int resultScale) {
+        checkScale(resultScale);
+        final long high = Math.multiplyHigh(unscaledValue, multiplier.unscaledValue);
+        final long low = unscaledValue * multiplier.unscaledValue;
+        final int productScale = scale + multiplier.scale;
+        if (high != (low >> 63) || !canRescale(low, productScale, resultScale)) {
+            return Money.of(toBigDecimal().multiply(multiplier.toBigDecimal())
+                    .setScale(resultScale, RoundingMode.HALF_UP));
+        }
+        return rescale(low, productScale, resultScale);
+    }
+
+    /**
+     * Умножает значение на эту сумму как на множитель и округляет результат по правилу HALF_UP
+     * до указанного масштаба. В отличие от {@code Money.of(value).multiply(this, resultScale).toBigDecimal()}
+     * не создает промежуточных сумм: для значений до {@link #MAX_SCALE} знаков с ненулевым масштабом
+     * дополнительно выделяется только количество минимальных единиц значения.
+     *
+     * @param value       значение, например цена товара
+     * @param resultScale масштаб результата
+     * @return округленное произведение
+     */
+    public BigDecimal applyTo(BigDecimal value, int resultScale) {
+        checkScale(resultScale);
+        if (isCompact(value)) {
+            final long valueUnscaled = unscaledLong(value);
+            final long high = Math.multiplyHigh(valueUnscaled, unscaledValue);
+            final long low = valueUnscaled * unscaledValue;
+            final int productScale = value.scale() + scale;
+            if (high == (low >> 63) && canRescale(low, productScale, resultScale)) {
+                return BigDecimal.valueOf(rescaleUnscaled(low, productScale, resultScale), resultScale);
+            }
+        }
+        return value.multiply(toBigDecimal()).setScale(resultScale, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Меняет масштаб суммы с округлением по правилу HALF_UP.
+     *
+     * @param newScale новый масштаб
+     * @return сумма с новым масштабом
+     * @throws ArithmeticException при переполнении
+     */
+    public Money setScale(int newScale) {
+        checkScale(newScale);
+        return rescale(unscaledValue, scale, newScale);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        if (scale == other.scale) {
+            return Long.compare(unscaledValue, other.unscaledValue);
+        }
+        return toBigDecimal().compareTo(other.toBigDecimal());
+    }
+
+    /**
+     * Сравнивает суммы по значению без учета масштаба, как {@link BigDecimal#compareTo}.
+     *
+     * @param other сравниваемый объект
+     * @return true, если суммы равны по значению
+     */
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof Money money && compareTo(money) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return toBigDecimal().stripTrailingZeros().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+
+    /**
+     * Приводит количество минимальных единиц к большему масштабу без округления.
+     *
+     * @param targetScale больший масштаб
+     * @return количество минимальных единиц в новом масштабе
+     * @throws ArithmeticException при переполнении
+     */
+    private long upscale(int targetScale) {
+        return Math.multiplyExact(unscaledValue, POWERS_OF_TEN[targetScale - scale]);
+    }
+
+    /**
+     * Приводит количество минимальных единиц к новому масштабу с округлением по правилу HALF_UP.
+     *
+     * @param value     количество минимальных единиц
+     * @param fromScale исходный масштаб
+     * @param toScale   новый масштаб
+     * @return сумма в новом масштабе
+     * @throws ArithmeticException при переполнении
+     */
+    private static Money rescale(long value, int fromScale, int toScale) {
+        return new Money(rescaleUnscaled(value, fromScale, toScale), toScale);
+    }
+
+    /**
+     * Приводит количество минимальных единиц к новому масштабу с округлением по правилу HALF_UP.
+     *
+     * @param value     количество минимальных единиц
+     * @param fromScale исходный масштаб
+     * @param toScale   новый масштаб
+     * @return количество минимальных единиц в новом масштабе
+     * @throws ArithmeticException при переполнении
+     */
+    private static long rescaleUnscaled(long value, int fromScale, int toScale) {
+        if (fromScale == toScale) {
+            return value;
+        }
+        if (fromScale < toScale) {
+            return Math.multiplyExact(value, POWERS_OF_TEN[toScale - fromScale]);
+        }
+        final long divisor = POWERS_OF_TEN[fromScale - toScale];
+        final long quotient = value / divisor;
+        final long remainder = Math.abs(value % divisor);
+        final boolean roundAwayFromZero = remainder >= divisor - remainder;
+        return roundAwayFromZero ? quotient + Long.signum(value) : quotient;
+    }
+
+    /**
+     * Проверяет, что количество минимальных единиц можно привести к новому масштабу в {@code long}:
+     * при уменьшении масштаба делитель помещается в таблицу степеней, при увеличении нет переполнения.
+     *
+     * @param value     количество минимальных единиц
+     * @param fromScale исходный масштаб
+     * @param toScale   новый масштаб
+     * @return true, если {@link #rescaleUnscaled(long, int, int)} выполнится без переполнения
+     */
+    private static boolean canRescale(long value, int fromScale, int toScale) {
+        if (fromScale >= toScale) {
+            return fromScale - toScale <= MAX_SCALE;
+        }
+        final long limit = Long.MAX_VALUE / POWERS_OF_TEN[toScale - fromScale];
+        return value <= limit && value >= -limit;
+    }
+
+    /**
+     * Проверяет, что значение можно перевести в сумму без нормализации: масштаб поддерживается,
+     * а количество минимальных единиц меньше {@code 10^}{@value #MAX_SCALE} и помещается в {@code long}.
+     *
+     * @param value значение
+     * @return true, если значение можно перевести через {@link #unscaledLong(BigDecimal)}
+     */
+    private static boolean isCompact(BigDecimal value) {
+        return value.scale() >= 0 && value.scale() <= MAX_SCALE && value.precision() <= MAX_SCALE;
+    }
+
+    /**
+     * Получает количество минимальных единиц значения. Для нулевого масштаба хранимый {@code long}
+     * возвращается без выделения памяти, иначе через {@link BigDecimal#unscaledValue()}.
+     *
+     * @param value значение, для которого {@link #isCompact(BigDecimal)} вернул true
+     * @return количество минимальных единиц
+     */
+    private static long unscaledLong(BigDecimal value) {
+        return value.scale() == 0 ? value.longValueExact() : value.unscaledValue().longValueExact();
+    }
+
+    /**
+     * Проверяет, что масштаб поддерживается.
+     *
+     * @param scale масштаб
+     */
+    private static void checkScale(int scale) {
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new ArithmeticException("Scale must be between 0 and " + MAX_SCALE + ": " + scale);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.mediasoft.warehouse.partitioner;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Разбивает таблицу товаров на непересекающиеся диапазоны идентификаторов
+ * для параллельной обработки в партиционированном шаге Spring Batch.
+ * Пространство UUID делится на равные части по старшим 64 битам,
+ * что соответствует беззнаковому порядку сравнения UUID в базе данных.
+ */
+public class ProductIdRangePartitioner implements Partitioner {
+    /**
+     * Ключ нижней границы диапазона (включительно) в контексте шага.
+     */
+    public static final String MIN_ID_KEY = "minId";
+
+    /**
+     * Ключ верхней границы диапазона (включительно) в контексте шага.
+     */
+    public static final String MAX_ID_KEY = "maxId";
+
+    /**
+     * Ключ порядкового номера партиции в контексте шага.
+     */
+    public static final String PARTITION_INDEX_KEY = "partitionIndex";
+
+    private static final BigInteger KEY_SPACE = BigInteger.ONE.shiftLeft(64);
+
+    /**
+     * Создает контексты выполнения для каждой партиции.
+     *
+     * @param gridSize количество партиций
+     * @return контексты выполнения партиций, упорядоченные по диапазонам идентификаторов
+     */
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        if (gridSize < 1) {
+            throw new IllegalArgumentException("Grid size must be positive: " + gridSize);
+        }
+        final BigInteger step = KEY_SPACE.divide(BigInteger.valueOf(gridSize));
+        final Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+        for (int i = 0; i < gridSize; i++) {
+            final UUID minId = new UUID(step.multiply(BigInteger.valueOf(i)).longValue(), 0L);
+            final UUID maxId = i == gridSize - 1
+                    ? new UUID(-1L, -1L)
+                    : new UUID(step.multiply(BigInteger.valueOf(i + 1)).subtract(BigInteger.ONE).longValue(), -1L);
+
+            final ExecutionContext context = new ExecutionContext();
+            context.putString(MIN_ID_KEY, minId.toString());
+            context.putString(MAX_ID_KEY, maxId.toString());
+            context.putInt(PARTITION_INDEX_KEY, i);
+            partitions.put(partitionName(i), context);
+        }
+        return partitions;
+    }
+
+    /**
+     * Возвращает имя партиции по ее порядковому номеру.
+     *
+     * @param index порядковый номер партиции
+     * @return имя партиции
+     */
+    public static String partitionName(int index) {
+        return String.format("partition%04d", index);
+    }
+}
@@ -1,6 +1,8 @@
 package com.mediasoft.warehouse.processor;
 
 import com.mediasoft.warehouse.model.Product;
+import com.mediasoft.warehouse.money.Money;
+import jakarta.annotation.PostConstruct;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.beans.factory.annotation.Value;
 
@@ -11,8 +13,20 @@ import java.math.RoundingMode;
  * Процессор элементов для обработки продуктов.
  */
 public class ProductItemProcessor implements ItemProcessor<Product, Product> {
+    private static final int PRICE_SCALE = 2;
+
     @Value("#{new java.math.BigDecimal(\"${app.scheduling.priceIncreasePercentage:10}\")}")
     private BigDecimal percent;
+    private Money priceFactor;
+
+    /**
+     * Вычисляет множитель цены один раз, а не для каждого продукта.
+     */
+    @PostConstruct
+    public void init() {
+        BigDecimal percentage = percent.divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP);
+        priceFactor = Money.of(BigDecimal.ONE.add(percentage));
+    }
 
     /**
      * Обработка продукта, увеличение его цены на заданный процент.
@@ -22,12 +36,7 @@ public class ProductItemProcessor implements ItemProcessor<Product, Product> {
      */
     @Override
     public Product process(Product product) {
-        BigDecimal currentPrice = product.getPrice();
-        BigDecimal percentage = percent.divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP);
-        BigDecimal increase = currentPrice.multiply(percentage);
-        BigDecimal newPrice = currentPrice.add(increase);
-        product.setPrice(newPrice);
+        product.setPrice(priceFactor.applyTo(product.getPrice(), PRICE_SCALE));
         return product;
     }
 }
-
@@ -0,0 +1,46 @@
+package com.mediasoft.warehouse.repository;
+
+import com.mediasoft.warehouse.model.PriceEpoch;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Репозиторий для {@link PriceEpoch}.
+ */
+@Repository
+public interface PriceEpochRepository extends JpaRepository<PriceEpoch, Long> {
+    /**
+     * Получить текущую (последнюю) эпоху цен.
+     *
+     * @return Последняя эпоха цен, если она есть.
+     */
+    Optional<PriceEpoch> findFirstByOrderByIdDesc();
+
+    /**
+     * Получить текущую эпоху цен с блокировкой на запись.
+     *
+     * @return Последняя эпоха цен, если она есть.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e " +
+            "FROM PriceEpoch e " +
+            "WHERE e.id = (SELECT MAX(e2.id) FROM PriceEpoch e2)")
+    Optional<PriceEpoch> findLatestForUpdate();
+
+    /**
+     * Получить эпоху цен с блокировкой на чтение, которая не дает зафиксировать уплотнение и новые эпохи.
+     *
+     * @param id Идентификатор эпохи.
+     * @return Эпоха цен, если она еще существует.
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT e " +
+            "FROM PriceEpoch e " +
+            "WHERE e.id = :id")
+    Optional<PriceEpoch> findByIdForShare(Long id);
+}
@@ -1,32 +1,91 @@
 package com.mediasoft.warehouse.repository;
 
+import com.mediasoft.warehouse.dto.ViewProductDto;
 import com.mediasoft.warehouse.model.Product;
+import com.mediasoft.warehouse.search.plan.FilterPlan;
+import com.mediasoft.warehouse.service.PriceEpochProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 /**
  * Репозиторий для {@link Product}.
  */
 @Repository
-public interface ProductRepository extends JpaRepository<Product, UUID>, JpaSpecificationExecutor<Product> {
+public interface ProductRepository extends JpaRepository<Product, UUID>, JpaSpecificationExecutor<Product>,
+        ProductSliceRepository {
     /**
-     * Получить страницу товаров с фильтрами по имени, артикулу или описанию.
+     * Получить страницу товаров, название, артикул или описание которых в нижнем регистре
+     * соответствуют шаблону LIKE.
      *
-     * @param name        Строка для поиска в названии товара.
-     * @param article     Строка для поиска в артикуле товара.
-     * @param description Строка для поиска в описании товара.
-     * @param pageable    Информация о пагинации.
+     * @param pattern  Шаблон LIKE в нижнем регистре с экранированием символом {@code \}.
+     * @param pageable Информация о пагинации.
      * @return Страница товаров, удовлетворяющих критериям поиска.
      */
-    Page<Product> findDistinctByNameContainingOrArticleContainingOrDescriptionContaining(String name,
-                                                                                         String article,
-                                                                                         String description,
-                                                                                         Pageable pageable);
+    @Query("SELECT p FROM Product p " +
+            "WHERE LOWER(p.name) LIKE :pattern ESCAPE '\\' " +
+            "OR LOWER(p.article) LIKE :pattern ESCAPE '\\' " +
+            "OR LOWER(p.description) LIKE :pattern ESCAPE '\\'")
+    Page<Product> searchByPattern(String pattern, Pageable pageable);
+
+    /**
+     * Получить часть товаров, название, артикул или описание которых в нижнем регистре
+     * соответствуют шаблону LIKE, без запроса общего количества.
+     *
+     * @param pattern  Шаблон LIKE в нижнем регистре с экранированием символом {@code \}.
+     * @param pageable Информация о пагинации.
+     * @return Часть товаров, удовлетворяющих критериям поиска.
+     */
+    @Query("SELECT p FROM Product p " +
+            "WHERE LOWER(p.name) LIKE :pattern ESCAPE '\\' " +
+            "OR LOWER(p.article) LIKE :pattern ESCAPE '\\' " +
+            "OR LOWER(p.description) LIKE :pattern ESCAPE '\\'")
+    Slice<Product> sliceByPattern(String pattern, Pageable pageable);
+
+    /**
+     * Получить страницу товаров, название, артикул или описание которых соответствуют шаблону ILIKE,
+     * упорядоченную по триграммному сходству со строкой поиска. Требует расширения PostgreSQL {@code pg_trgm}.
+     *
+     * @param search   Строка поиска для ранжирования.
+     * @param pattern  Шаблон ILIKE с экранированием символом {@code \}.
+     * @param pageable Информация о пагинации.
+     * @return Страница товаров, удовлетворяющих критериям поиска.
+     */
+    @Query(value = "SELECT * FROM product p " +
+            "WHERE p.name ILIKE :pattern OR p.article ILIKE :pattern OR p.description ILIKE :pattern " +
+            "ORDER BY GREATEST(similarity(p.name, :search), similarity(p.article, :search), " +
+            "word_similarity(:search, p.description)) DESC, p.id",
+            countQuery = "SELECT count(*) FROM product p " +
+                    "WHERE p.name ILIKE :pattern OR p.article ILIKE :pattern OR p.description ILIKE :pattern",
+            nativeQuery = true)
+    Page<Product> searchByTrigram(String search, String pattern, Pageable pageable);
+
+    /**
+     * Получить часть товаров, название, артикул или описание которых соответствуют шаблону ILIKE,
+     * упорядоченную по триграммному сходству со строкой поиска, без запроса общего количества.
+     *
+     * @param search   Строка поиска для ранжирования.
+     * @param pattern  Шаблон ILIKE с экранированием символом {@code \}.
+     * @param pageable Информация о пагинации.
+     * @return Часть товаров, удовлетворяющих критериям поиска.
+     */
+    @Query(value = "SELECT * FROM product p " +
+            "WHERE p.name ILIKE :pattern OR p.article ILIKE :pattern OR p.description ILIKE :pattern " +
+            "ORDER BY GREATEST(similarity(p.name, :search), similarity(p.article, :search), " +
+            "word_similarity(:search, p.description)) DESC, p.id",
+            nativeQuery = true)
+    Slice<Product> sliceByTrigram(String search, String pattern, Pageable pageable);
 
     /**
      * Получить информацию о том, существует ли товар с указанным артикулом.
@@ -35,4 +94,46 @@ public interface ProductRepository extends JpaRepository<Product, UUID>, JpaSpec
      * @return Флаг, указывающий существует ли товар с указанным артикулом.
      */
     boolean existsByArticle(String article);
+
+    /**
+     * Получить артикулы из списка, которые уже заняты товарами.
+     *
+     * @param articles Артикулы для проверки.
+     * @return Артикулы, для которых существуют товары.
+     */
+    @Query("SELECT p.article FROM Product p WHERE p.article IN :articles")
+    Set<String> findExistingArticles(Collection<String> articles);
+
+    /**
+     * Получить DTO товаров с указанными идентификаторами без загрузки сущностей.
+     * Цена умножается на множитель и округляется в бд.
+     *
+     * @param ids         Идентификаторы товаров.
+     * @param priceFactor Множитель цены.
+     * @return DTO найденных товаров в произвольном порядке.
+     */
+    @Query("SELECT new com.mediasoft.warehouse.dto.ViewProductDto(p.id, p.name, p.article, p.description, " +
+            "p.category, ROUND(p.price * " + FilterPlan.PRICE_FACTOR_EXPRESSION + ", 2), p.quantity, " +
+            "p.lastQuantityChangeDate, " +
+            "p.createdDate, p.isAvailable) FROM Product p WHERE p.id IN :ids")
+    List<ViewProductDto> findViewsByIds(Collection<UUID> ids, BigDecimal priceFactor);
+
+    /**
+     * Умножить цены всех товаров на указанный множитель.
+     *
+     * @param multiplier Множитель цены.
+     * @return Количество измененных товаров.
+     */
+    @Modifying
+    @Query("UPDATE Product p SET p.price = ROUND(p.price * :multiplier, " + PriceEpochProvider.PRICE_SCALE + ")")
+    int multiplyPrices(BigDecimal multiplier);
+
+    /**
+     * Выполнить запрос без чтения таблиц. В транзакции с уровнем изоляции REPEATABLE READ
+     * первый запрос фиксирует снимок данных, который видят все последующие запросы транзакции.
+     *
+     * @return Единица.
+     */
+    @Query(value = "SELECT 1", nativeQuery = true)
+    int startSnapshot();
 }
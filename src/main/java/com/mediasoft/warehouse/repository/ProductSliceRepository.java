@@ -0,0 +1,99 @@
+package com.mediasoft.warehouse.repository;
+
+import com.mediasoft.warehouse.dto.ViewProductDto;
+import com.mediasoft.warehouse.model.Product;
+import com.mediasoft.warehouse.search.plan.BoundFilterPlan;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Дополнительные методы репозитория {@link ProductRepository} для выборки товаров без подсчета
+ * и по скомпилированным планам фильтров.
+ */
+public interface ProductSliceRepository {
+    /**
+     * Получить часть товаров, удовлетворяющих спецификации, без запроса общего количества.
+     * Запрашивается на один товар больше размера страницы, чтобы определить, есть ли следующая часть.
+     *
+     * @param specification Спецификация товаров.
+     * @param pageable      Информация о пагинации и сортировке.
+     * @return Часть товаров, удовлетворяющих спецификации.
+     */
+    Slice<Product> findSlice(Specification<Product> specification, Pageable pageable);
+
+    /**
+     * Получить страницу товаров по плану фильтрации. Количество не подсчитывается отдельным запросом,
+     * если страница неполная и общее количество определяется по ней.
+     *
+     * @param plan     План фильтрации со значениями параметров.
+     * @param pageable Информация о пагинации и сортировке.
+     * @return Страница товаров, удовлетворяющих фильтрам.
+     */
+    Page<Product> findAll(BoundFilterPlan plan, Pageable pageable);
+
+    /**
+     * Получить часть товаров по плану фильтрации без запроса общего количества.
+     *
+     * @param plan     План фильтрации со значениями параметров.
+     * @param pageable Информация о пагинации и сортировке.
+     * @return Часть товаров, удовлетворяющих фильтрам.
+     */
+    Slice<Product> findSlice(BoundFilterPlan plan, Pageable pageable);
+
+    /**
+     * Получить страницу DTO товаров по плану фильтрации без загрузки сущностей.
+     * Количество не подсчитывается отдельным запросом, если страница неполная.
+     *
+     * @param plan        План фильтрации со значениями параметров.
+     * @param pageable    Информация о пагинации и сортировке.
+     * @param priceFactor Множитель, на который умножается цена товара при выборке.
+     * @return Страница DTO товаров, удовлетворяющих фильтрам.
+     */
+    Page<ViewProductDto> findViews(BoundFilterPlan plan, Pageable pageable, BigDecimal priceFactor);
+
+    /**
+     * Получить часть DTO товаров по плану фильтрации без загрузки сущностей и без запроса общего количества.
+     *
+     * @param plan        План фильтрации со значениями параметров.
+     * @param pageable    Информация о пагинации и сортировке.
+     * @param priceFactor Множитель, на который умножается цена товара при выборке.
+     * @return Часть DTO товаров, удовлетворяющих фильтрам.
+     */
+    Slice<ViewProductDto> findViewSlice(BoundFilterPlan plan, Pageable pageable, BigDecimal priceFactor);
+
+    /**
+     * Получить поток DTO товаров по плану фильтрации без сортировки.
+     * Строки читаются однонаправленным курсором бд порциями заданного размера, поэтому
+     * поток нужно читать и закрывать внутри транзакции.
+     *
+     * @param plan        План фильтрации со значениями параметров.
+     * @param priceFactor Множитель, на который умножается цена товара при выборке.
+     * @param fetchSize   Количество строк, получаемых из бд за одно обращение.
+     * @return Поток DTO товаров, удовлетворяющих фильтрам.
+     */
+    Stream<ViewProductDto> streamViews(BoundFilterPlan plan, BigDecimal priceFactor, int fetchSize);
+
+    /**
+     * Подсчитать товары по плану фильтрации одним запросом с группировкой по категории,
+     * доступности и ценовому диапазону.
+     *
+     * @param plan             План фильтрации со значениями параметров.
+     * @param bucketExpression Выражение JPQL номера ценового диапазона, содержащее только литералы.
+     * @return Строки из категории, доступности, номера диапазона и количества товаров.
+     */
+    List<Object[]> countFacets(BoundFilterPlan plan, String bucketExpression);
+
+    /**
+     * Подсчитать количество товаров по плану фильтрации.
+     *
+     * @param plan План фильтрации со значениями параметров.
+     * @return Количество товаров, удовлетворяющих фильтрам.
+     */
+    long count(BoundFilterPlan plan);
+}
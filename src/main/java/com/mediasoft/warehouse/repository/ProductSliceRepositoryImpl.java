@@ -0,0 +1,150 @@
+package com.mediasoft.warehouse.repository;
+
+import com.mediasoft.warehouse.dto.ViewProductDto;
+import com.mediasoft.warehouse.model.Product;
+import com.mediasoft.warehouse.search.plan.BoundFilterPlan;
+import com.mediasoft.warehouse.search.plan.FilterPlan;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Реализация {@link ProductSliceRepository} на основе Criteria API и запросов JPQL планов фильтрации.
+ */
+@RequiredArgsConstructor
+public class ProductSliceRepositoryImpl implements ProductSliceRepository {
+    private final EntityManager entityManager;
+
+    @Override
+    public Slice<Product> findSlice(Specification<Product> specification, Pageable pageable) {
+        final CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Product> query = criteriaBuilder.createQuery(Product.class);
+        final Root<Product> root = query.from(Product.class);
+        final Predicate predicate = specification.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(root).orderBy(QueryUtils.toOrders(pageable.getSort(), root, criteriaBuilder));
+
+        final List<Product> products = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+        final boolean hasNext = products.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? products.subList(0, pageable.getPageSize()) : products, pageable, hasNext);
+    }
+
+    @Override
+    public Page<Product> findAll(BoundFilterPlan plan, Pageable pageable) {
+        final TypedQuery<Product> query = bind(
+                entityManager.createQuery(plan.plan().selectQuery(pageable.getSort()), Product.class), plan);
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(query.getResultList());
+        }
+        final List<Product> products = query
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+        return PageableExecutionUtils.getPage(products, pageable, () -> count(plan));
+    }
+
+    @Override
+    public Slice<Product> findSlice(BoundFilterPlan plan, Pageable pageable) {
+        final List<Product> products = bind(
+                entityManager.createQuery(plan.plan().selectQuery(pageable.getSort()), Product.class), plan)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+        final boolean hasNext = products.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? products.subList(0, pageable.getPageSize()) : products, pageable, hasNext);
+    }
+
+    @Override
+    public Page<ViewProductDto> findViews(BoundFilterPlan plan, Pageable pageable, BigDecimal priceFactor) {
+        final TypedQuery<ViewProductDto> query = viewQuery(plan, pageable.getSort(), priceFactor);
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(query.getResultList());
+        }
+        final List<ViewProductDto> views = query
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+        return PageableExecutionUtils.getPage(views, pageable, () -> count(plan));
+    }
+
+    @Override
+    public Slice<ViewProductDto> findViewSlice(BoundFilterPlan plan, Pageable pageable, BigDecimal priceFactor) {
+        final List<ViewProductDto> views = viewQuery(plan, pageable.getSort(), priceFactor)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+        final boolean hasNext = views.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? views.subList(0, pageable.getPageSize()) : views, pageable, hasNext);
+    }
+
+    @Override
+    public Stream<ViewProductDto> streamViews(BoundFilterPlan plan, BigDecimal priceFactor, int fetchSize) {
+        return viewQuery(plan, Sort.unsorted(), priceFactor)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    @Override
+    public List<Object[]> countFacets(BoundFilterPlan plan, String bucketExpression) {
+        return bind(entityManager.createQuery(plan.plan().facetQuery(bucketExpression), Object[].class), plan)
+                .getResultList();
+    }
+
+    @Override
+    public long count(BoundFilterPlan plan) {
+        return bind(entityManager.createQuery(plan.plan().countQuery(), Long.class), plan).getSingleResult();
+    }
+
+    /**
+     * Создает запрос выборки DTO товаров по плану фильтрации.
+     *
+     * @param plan        план фильтрации со значениями параметров
+     * @param sort        сортировка
+     * @param priceFactor множитель цены
+     * @return запрос с установленными параметрами
+     */
+    private TypedQuery<ViewProductDto> viewQuery(BoundFilterPlan plan, Sort sort, BigDecimal priceFactor) {
+        return bind(entityManager.createQuery(plan.plan().viewQuery(sort), ViewProductDto.class), plan)
+                .setParameter(FilterPlan.PRICE_FACTOR_PARAMETER, priceFactor);
+    }
+
+    /**
+     * Устанавливает значения параметров плана фильтрации в запрос.
+     *
+     * @param query запрос
+     * @param plan  план фильтрации со значениями параметров
+     * @param <T>   тип результата запроса
+     * @return запрос с установленными параметрами
+     */
+    private static <T> TypedQuery<T> bind(TypedQuery<T> query, BoundFilterPlan plan) {
+        final List<Object> parameters = plan.parameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            query.setParameter("p" + i, parameters.get(i));
+        }
+        return query;
+    }
+}
@@ -0,0 +1,87 @@
+package com.mediasoft.warehouse.scheduling;
+
+import com.mediasoft.warehouse.annotation.LeaderOnly;
+import com.mediasoft.warehouse.annotation.MeasureExecutionTime;
+import com.mediasoft.warehouse.model.PriceEpoch;
+import com.mediasoft.warehouse.money.Money;
+import com.mediasoft.warehouse.repository.PriceEpochRepository;
+import com.mediasoft.warehouse.service.LeaderLeaseManager;
+import com.mediasoft.warehouse.service.PriceEpochProvider;
+import com.mediasoft.warehouse.telemetry.PricingRun;
+import com.mediasoft.warehouse.telemetry.PricingRunRecorder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+
+/**
+ * Запланированная задача для увеличения цен товаров в режиме ленивых эпох.
+ * Вместо перезаписи цены каждого товара добавляет новую эпоху с накопленным множителем,
+ * поэтому время работы не зависит от размера каталога.
+ * Когда накопленный множитель превышает {@code app.scheduling.epoch.compaction.max-multiplier},
+ * он сразу переносится в базовые цены товаров, чтобы не переполнить столбец множителя
+ * и не потерять точность базовых цен.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnExpression(value = "#{'${app.scheduling.mode:none}'.equals('epoch')}")
+@Profile("!dev")
+@Slf4j
+public class EpochPriceScheduler implements PriceScheduler {
+    private static final int MULTIPLIER_SCALE = 10;
+
+    private final PriceEpochRepository priceEpochRepository;
+    private final PriceEpochProvider priceEpochProvider;
+    private final PriceEpochCompactor priceEpochCompactor;
+    private final PricingRunRecorder pricingRunRecorder;
+    private final LeaderLeaseManager leaderLeaseManager;
+    @Value("#{new java.math.BigDecimal(\"${app.scheduling.priceIncreasePercentage:10}\")}")
+    private BigDecimal percent;
+    @Value("#{new java.math.BigDecimal(\"${app.scheduling.epoch.compaction.max-multiplier:100}\")}")
+    private BigDecimal maxMultiplier;
+
+    /**
+     * Метод запускается периодически с фиксированной задержкой
+     * и добавляет новую эпоху цен.
+     */
+    @Scheduled(fixedDelayString = "${app.scheduling.period}",
+            initialDelayString = "${app.scheduling.initial-delay:0}")
+    @LeaderOnly(LeaderLeaseManager.PRICING_LEASE)
+    @MeasureExecutionTime
+    @Transactional
+    public void scheduleFixedDelayTask() {
+        final PricingRun run = pricingRunRecorder.start("epoch");
+        try {
+            final BigDecimal currentMultiplier = priceEpochRepository.findLatestForUpdate()
+                    .map(PriceEpoch::getMultiplier)
+                    .orElse(BigDecimal.ONE);
+            final BigDecimal newMultiplier = Money.of(currentMultiplier)
+                    .multiply(getPriceFactor(percent), MULTIPLIER_SCALE)
+                    .toBigDecimal();
+            if (newMultiplier.compareTo(PriceEpochProvider.MAX_MULTIPLIER) >= 0) {
+                throw new IllegalStateException("Price epoch multiplier " + newMultiplier + " exceeds "
+                        + PriceEpochProvider.MAX_MULTIPLIER.toPlainString()
+                        + ", lower app.scheduling.epoch.compaction.max-multiplier");
+            }
+            if (newMultiplier.compareTo(maxMultiplier) > 0) {
+                run.addRows(priceEpochCompactor.compact(newMultiplier, "epoch"));
+            } else {
+                priceEpochRepository.save(new PriceEpoch(newMultiplier));
+                priceEpochProvider.refreshAfterCommit();
+                run.addRows(1);
+                log.info("New price epoch with multiplier {}", newMultiplier);
+            }
+            leaderLeaseManager.checkLeadership(LeaderLeaseManager.PRICING_LEASE);
+            run.success();
+        } catch (RuntimeException exception) {
+            run.failure(exception);
+            throw exception;
+        }
+    }
+}
@@ -1,6 +1,16 @@
 package com.mediasoft.warehouse.scheduling;
 
+import com.mediasoft.warehouse.annotation.LeaderOnly;
 import com.mediasoft.warehouse.annotation.MeasureExecutionTime;
+import com.mediasoft.warehouse.export.ProductSnapshotExporter;
+import com.mediasoft.warehouse.export.SnapshotSession;
+import com.mediasoft.warehouse.export.SnapshotWriter;
+import com.mediasoft.warehouse.money.Money;
+import com.mediasoft.warehouse.service.LeaderLeaseManager;
+import com.mediasoft.warehouse.sizing.AdaptiveBatchSizer;
+import com.mediasoft.warehouse.sizing.AdaptiveBatchSizers;
+import com.mediasoft.warehouse.telemetry.PricingRun;
+import com.mediasoft.warehouse.telemetry.PricingRunRecorder;
 import jakarta.persistence.EntityManagerFactory;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,13 +23,15 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.sql.DataSource;
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 /**
@@ -32,85 +44,309 @@ import java.util.UUID;
 @Profile("!dev")
 @Slf4j
 public class OptimizedSchedulerWithPreparedStatements implements PriceScheduler {
+    private static final String CHECKPOINT_NAME = "prepared-statements";
+    private static final String KEYSET_SIZER_NAME = "prepared-statements-keyset";
+    private static final String UPDATE_QUERY = "UPDATE product SET price = ? WHERE id = ?";
+    private static final String SELECT_FIRST_CHUNK_QUERY = "SELECT id, price FROM product ORDER BY id LIMIT ? FOR UPDATE";
+    private static final String SELECT_NEXT_CHUNK_QUERY =
+            "SELECT id, price FROM product WHERE id > ? ORDER BY id LIMIT ? FOR UPDATE";
+    private static final String SELECT_CHECKPOINT_QUERY =
+            "SELECT last_id FROM price_update_checkpoint WHERE scheduler = ?";
+    private static final String INSERT_CHECKPOINT_QUERY =
+            "INSERT INTO price_update_checkpoint (scheduler, last_id, updated_at) VALUES (?, NULL, ?)";
+    private static final String UPDATE_CHECKPOINT_QUERY =
+            "UPDATE price_update_checkpoint SET last_id = ?, updated_at = ? WHERE scheduler = ?";
+
     private final DataSource dataSource;
     @Value("#{new java.math.BigDecimal(\"${app.scheduling.priceIncreasePercentage:10}\")}")
     private BigDecimal percent;
-    private static final int BATCH_SIZE = 100000;
+    @Value("${app.scheduling.optimization.keyset.enabled:false}")
+    private boolean keysetEnabled;
     private final EntityManagerFactory entityManagerFactory;
+    private final ProductSnapshotExporter productSnapshotExporter;
+    private final SnapshotWriter snapshotWriter;
+    private final PricingRunRecorder pricingRunRecorder;
+    private final LeaderLeaseManager leaderLeaseManager;
+    private final AdaptiveBatchSizers adaptiveBatchSizers;
 
     /**
      * Метод запускается периодически с фиксированной задержкой
      * для обновления цен товаров с использованием PreparedStatements.
      */
-    @Scheduled(fixedDelayString = "${app.scheduling.period}")
+    @Scheduled(fixedDelayString = "${app.scheduling.period}",
+            initialDelayString = "${app.scheduling.initial-delay:0}")
+    @LeaderOnly(LeaderLeaseManager.PRICING_LEASE)
     @MeasureExecutionTime
     @Transactional
     public void scheduleFixedDelayTask() {
         log.info("Start.");
         final Session session = entityManagerFactory.createEntityManager().unwrap(Session.class);
-        try (session) {
+        try (session; PricingRun run = pricingRunRecorder.start(
+                keysetEnabled ? "prepared-statements-keyset" : "prepared-statements")) {
             session.doWork(connection -> {
-                try (BufferedWriter writer = new BufferedWriter(new FileWriter("products.txt"));
-                     connection
-                ) {
-                    connection.setAutoCommit(false);
-                    String selectQuery = "SELECT * FROM products FOR UPDATE";
-                    String updateQuery = "UPDATE products SET price = ? WHERE id = ?";
-
-                    Statement selectStatement = connection.createStatement();
-                    PreparedStatement updateStatement = connection.prepareStatement(updateQuery);
-
-                    ResultSet resultSet = selectStatement.executeQuery(selectQuery);
-                    int columnCount = resultSet.getMetaData().getColumnCount();
-                    int count = 0;
-                    while (resultSet.next()) {
-                        UUID id = (UUID) resultSet.getObject("id");
-
-                        String row = buildRowString(resultSet, columnCount);
-                        writer.write(row);
-                        writer.newLine();
-
-                        updateStatement.setBigDecimal(1,
-                                getNewPrice(resultSet.getBigDecimal("price"), percent));
-                        updateStatement.setObject(2, id);
-                        updateStatement.addBatch();
-
-                        count++;
-                        if (count % BATCH_SIZE == 0) {
-                            updateStatement.executeBatch();
-                        }
+                if (keysetEnabled) {
+                    updatePricesByChunks(connection, run);
+                } else {
+                    updateAllPrices(connection, run);
+                }
+            });
+        }
+    }
+
+    /**
+     * Обновляет цены всех товаров в одной транзакции, блокируя всю таблицу до ее завершения.
+     *
+     * @param connection соединение с бд
+     * @param run        запуск, в котором учитываются показатели
+     * @throws SQLException если произошла ошибка доступа к бд
+     */
+    private void updateAllPrices(Connection connection, PricingRun run) throws SQLException {
+        try (connection; SnapshotSession snapshot = snapshotWriter.open()) {
+            connection.setAutoCommit(false);
+            final long transactionStart = System.nanoTime();
+            String selectQuery = "SELECT id, price FROM product FOR UPDATE";
+
+            final AdaptiveBatchSizer batchSizer = adaptiveBatchSizers.get(CHECKPOINT_NAME);
+            Statement selectStatement = connection.createStatement();
+            selectStatement.setFetchSize(batchSizer.getFetchSize());
+            PreparedStatement updateStatement = connection.prepareStatement(UPDATE_QUERY);
+
+            final Money priceFactor = getPriceFactor(percent);
+            ResultSet resultSet = selectStatement.executeQuery(selectQuery);
+            int count = 0;
+            int pending = 0;
+            while (resultSet.next()) {
+                UUID id = (UUID) resultSet.getObject("id");
+
+                updateStatement.setBigDecimal(1,
+                        getNewPrice(resultSet.getBigDecimal("price"), priceFactor));
+                updateStatement.setObject(2, id);
+                updateStatement.addBatch();
+
+                count++;
+                pending++;
+                if (pending >= batchSizer.getBatchSize()) {
+                    batchSizer.record(pending, executeBatch(updateStatement, run));
+                    pending = 0;
+                    resultSet.setFetchSize(batchSizer.getFetchSize());
+                }
+            }
+            if (pending > 0) {
+                batchSizer.record(pending, executeBatch(updateStatement, run));
+            }
+            batchSizer.logSettledSize(CHECKPOINT_NAME);
+            run.addRows(count);
+            productSnapshotExporter.export(connection, snapshot);
+            leaderLeaseManager.checkLeadership(connection, LeaderLeaseManager.PRICING_LEASE);
+            connection.commit();
+            run.recordTransaction(System.nanoTime() - transactionStart);
+            snapshot.commit();
+            run.addExportBytes(snapshot.getBytes());
+            run.success();
+        } catch (Exception exception) {
+            rollback(connection);
+            run.failure(exception);
+            log.error("The following exception was received", exception);
+        }
+    }
+
+    /**
+     * Обновляет цены товаров порциями, упорядоченными по идентификатору.
+     * Каждая порция блокируется и фиксируется в отдельной транзакции вместе с контрольной точкой,
+     * поэтому прерванный запуск продолжается с последней зафиксированной порции.
+     * Размер порции подбирается регулятором по длительности обновления предыдущих порций.
+     * После обработки всех порций выгружается снимок таблицы без блокировки строк.
+     *
+     * @param connection соединение с бд
+     * @param run        запуск, в котором учитываются показатели
+     * @throws SQLException если произошла ошибка доступа к бд
+     */
+    private void updatePricesByChunks(Connection connection, PricingRun run) throws SQLException {
+        try (connection) {
+            connection.setAutoCommit(false);
+            UUID lastId = loadCheckpoint(connection);
+            if (lastId != null) {
+                log.info("Resuming interrupted price update after product {}", lastId);
+            }
+
+            final Money priceFactor = getPriceFactor(percent);
+            final AdaptiveBatchSizer batchSizer = adaptiveBatchSizers.get(KEYSET_SIZER_NAME);
+            try (PreparedStatement selectFirstChunk = connection.prepareStatement(SELECT_FIRST_CHUNK_QUERY);
+                 PreparedStatement selectNextChunk = connection.prepareStatement(SELECT_NEXT_CHUNK_QUERY);
+                 PreparedStatement updateStatement = connection.prepareStatement(UPDATE_QUERY);
+                 PreparedStatement checkpointStatement = connection.prepareStatement(UPDATE_CHECKPOINT_QUERY)
+            ) {
+                int processed = 0;
+                while (true) {
+                    final long transactionStart = System.nanoTime();
+                    final PreparedStatement selectStatement = lastId == null ? selectFirstChunk : selectNextChunk;
+                    final int chunkSize = batchSizer.getBatchSize();
+                    final ChunkResult chunk = updateChunk(selectStatement, lastId, chunkSize, batchSizer,
+                            updateStatement, priceFactor, run);
+                    if (chunk.size() == 0) {
+                        break;
                     }
-                    updateStatement.executeBatch();
+                    saveCheckpoint(checkpointStatement, chunk.lastId());
+                    leaderLeaseManager.checkLeadership(connection, LeaderLeaseManager.PRICING_LEASE);
                     connection.commit();
-                } catch (Exception exception) {
-                    try {
-                        connection.rollback();
-                    } catch (SQLException sqlException) {
-                        log.error("Failed to rollback transaction", sqlException);
+                    run.recordTransaction(System.nanoTime() - transactionStart);
+
+                    processed += chunk.size();
+                    run.addRows(chunk.size());
+                    lastId = chunk.lastId();
+                    if (chunk.size() < chunkSize) {
+                        break;
                     }
-                    log.error("The following exception was received", exception);
                 }
-            });
+
+                saveCheckpoint(checkpointStatement, null);
+                leaderLeaseManager.checkLeadership(connection, LeaderLeaseManager.PRICING_LEASE);
+                connection.commit();
+                batchSizer.logSettledSize(KEYSET_SIZER_NAME);
+                log.info("Price update finished, {} products processed in this run", processed);
+
+                exportSnapshot(connection, run);
+                run.success();
+            } catch (Exception exception) {
+                rollback(connection);
+                run.failure(exception);
+                log.error("The following exception was received, the run will resume from the last checkpoint",
+                        exception);
+            }
+        }
+    }
+
+    /**
+     * Выгружает снимок таблицы товаров после завершения обновления цен.
+     *
+     * @param connection соединение с бд
+     * @param run        запуск, в котором учитываются показатели
+     * @throws SQLException если произошла ошибка доступа к бд
+     * @throws IOException  если произошла ошибка записи снимка
+     */
+    private void exportSnapshot(Connection connection, PricingRun run) throws SQLException, IOException {
+        try (SnapshotSession snapshot = snapshotWriter.open()) {
+            productSnapshotExporter.export(connection, snapshot);
+            connection.commit();
+            snapshot.commit();
+            run.addExportBytes(snapshot.getBytes());
         }
     }
 
     /**
-     * Строит строку из указанного ResultSet с разделением запятыми.
+     * Выполняет накопленный пакет обновлений и учитывает его длительность.
+     *
+     * @param updateStatement запрос обновления цены с накопленным пакетом
+     * @param run             запуск, в котором учитываются показатели
+     * @return длительность выполнения пакета в наносекундах
+     * @throws SQLException если произошла ошибка доступа к бд
+     */
+    private long executeBatch(PreparedStatement updateStatement, PricingRun run) throws SQLException {
+        final long start = System.nanoTime();
+        updateStatement.executeBatch();
+        final long nanos = System.nanoTime() - start;
+        run.recordBatch(nanos);
+        return nanos;
+    }
+
+    /**
+     * Блокирует и обновляет одну порцию товаров, следующую за указанным идентификатором.
      *
-     * @param resultSet   ResultSet, содержащий данные для строки.
-     * @param columnCount Количество столбцов в ResultSet.
-     * @return Строка с данными, где значения разделены запятыми.
+     * @param selectStatement запрос выборки порции
+     * @param lastId          идентификатор последнего обработанного товара или null для первой порции
+     * @param chunkSize       размер порции
+     * @param batchSizer      регулятор размера порции, учитывающий длительность обновления
+     * @param updateStatement запрос обновления цены
+     * @param priceFactor     множитель цены
+     * @param run             запуск, в котором учитываются показатели
+     * @return количество обновленных товаров и идентификатор последнего из них
      * @throws SQLException если произошла ошибка доступа к бд
      */
-    private String buildRowString(ResultSet resultSet, int columnCount) throws SQLException {
-        StringBuilder row = new StringBuilder();
-        for (int i = 1; i <= columnCount; i++) {
-            if (i == columnCount) {
-                row.append(resultSet.getString(i));
-            } else {
-                row.append(resultSet.getString(i)).append(", ");
+    private ChunkResult updateChunk(PreparedStatement selectStatement, UUID lastId, int chunkSize,
+                                    AdaptiveBatchSizer batchSizer, PreparedStatement updateStatement,
+                                    Money priceFactor, PricingRun run) throws SQLException {
+        int parameterIndex = 1;
+        if (lastId != null) {
+            selectStatement.setObject(parameterIndex++, lastId);
+        }
+        selectStatement.setInt(parameterIndex, chunkSize);
+        selectStatement.setFetchSize(batchSizer.getFetchSize());
+
+        UUID chunkLastId = null;
+        int size = 0;
+        try (ResultSet resultSet = selectStatement.executeQuery()) {
+            while (resultSet.next()) {
+                chunkLastId = (UUID) resultSet.getObject("id");
+                updateStatement.setBigDecimal(1, getNewPrice(resultSet.getBigDecimal("price"), priceFactor));
+                updateStatement.setObject(2, chunkLastId);
+                updateStatement.addBatch();
+                size++;
+            }
+        }
+        if (size > 0) {
+            batchSizer.record(size, executeBatch(updateStatement, run));
+        }
+        return new ChunkResult(size, chunkLastId);
+    }
+
+    /**
+     * Загружает контрольную точку планировщика, создавая ее при первом запуске.
+     *
+     * @param connection соединение с бд
+     * @return идентификатор последнего обработанного товара прерванного запуска или null
+     * @throws SQLException если произошла ошибка доступа к бд
+     */
+    private UUID loadCheckpoint(Connection connection) throws SQLException {
+        try (PreparedStatement selectStatement = connection.prepareStatement(SELECT_CHECKPOINT_QUERY)) {
+            selectStatement.setString(1, CHECKPOINT_NAME);
+            try (ResultSet resultSet = selectStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    return (UUID) resultSet.getObject("last_id");
+                }
             }
         }
-        return row.toString();
+        try (PreparedStatement insertStatement = connection.prepareStatement(INSERT_CHECKPOINT_QUERY)) {
+            insertStatement.setString(1, CHECKPOINT_NAME);
+            insertStatement.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+            insertStatement.executeUpdate();
+        }
+        connection.commit();
+        return null;
+    }
+
+    /**
+     * Сохраняет контрольную точку в текущей транзакции.
+     *
+     * @param checkpointStatement запрос обновления контрольной точки
+     * @param lastId              идентификатор последнего обработанного товара или null по завершении запуска
+     * @throws SQLException если произошла ошибка доступа к бд
+     */
+    private void saveCheckpoint(PreparedStatement checkpointStatement, UUID lastId) throws SQLException {
+        checkpointStatement.setObject(1, lastId);
+        checkpointStatement.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+        checkpointStatement.setString(3, CHECKPOINT_NAME);
+        checkpointStatement.executeUpdate();
+    }
+
+    /**
+     * Откатывает текущую транзакцию соединения.
+     *
+     * @param connection соединение с бд
+     */
+    private void rollback(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException sqlException) {
+            log.error("Failed to rollback transaction", sqlException);
+        }
+    }
+
+    /**
+     * Результат обработки одной порции товаров.
+     *
+     * @param size   количество обновленных товаров
+     * @param lastId идентификатор последнего обновленного товара
+     */
+    private record ChunkResult(int size, UUID lastId) {
     }
-}
\ No newline at end of file
+}
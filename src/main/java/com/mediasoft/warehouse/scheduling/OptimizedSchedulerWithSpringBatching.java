@@ -1,20 +1,41 @@
 package com.mediasoft.warehouse.scheduling;
 
+import com.mediasoft.warehouse.annotation.LeaderOnly;
 import com.mediasoft.warehouse.annotation.MeasureExecutionTime;
+import com.mediasoft.warehouse.service.LeaderLeaseManager;
+import com.mediasoft.warehouse.telemetry.PricingRun;
+import com.mediasoft.warehouse.telemetry.PricingRunRecorder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
 import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobExecutionException;
+import org.springframework.batch.core.JobInstance;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
 import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.context.annotation.Profile;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
 /**
  * Запланированная задача для обновления цен товаров с использованием Spring Batching.
+ * Если предыдущий запуск задания завершился ошибкой или был остановлен, он перезапускается
+ * с последней зафиксированной порции. Пока предыдущий запуск выполняется, новый не начинается.
+ * Запуск, который не продвигался дольше {@code app.scheduling.optimization.stale-execution-timeout},
+ * считается брошенным (например, после аварийной остановки приложения), помечается как завершенный ошибкой
+ * и перезапускается.
  */
 @Component
 @RequiredArgsConstructor
@@ -23,25 +44,128 @@ import org.springframework.stereotype.Component;
 @Profile("!dev")
 @Slf4j
 public class OptimizedSchedulerWithSpringBatching implements PriceScheduler {
+    /**
+     * Название планировщика в показателях запусков.
+     */
+    public static final String SCHEDULER_NAME = "spring-batch";
+    /**
+     * Ключ размера выгруженного снимка в байтах в контексте шага выгрузки.
+     */
+    public static final String SNAPSHOT_BYTES_KEY = "snapshot.bytes";
+
     private final JobLauncher jobLauncher;
+    private final JobExplorer jobExplorer;
+    private final JobRepository jobRepository;
     private final Job importUserJob;
+    private final PricingRunRecorder pricingRunRecorder;
+    @Value("${app.scheduling.optimization.stale-execution-timeout:600000}")
+    private long staleExecutionTimeout;
 
     /**
      * Метод запускается периодически с фиксированной задержкой
      * для обновления цен товаров с использованием Spring Batching.
      */
-    @Scheduled(fixedDelayString = "${app.scheduling.period}")
+    @Scheduled(fixedDelayString = "${app.scheduling.period}",
+            initialDelayString = "${app.scheduling.initial-delay:0}")
+    @LeaderOnly(LeaderLeaseManager.PRICING_LEASE)
     @MeasureExecutionTime
     public void scheduleFixedDelayTask() {
+        final JobExecution lastExecution = findLastExecution();
+        if (lastExecution != null && lastExecution.isRunning() && !abandonIfStale(lastExecution)) {
+            log.warn("Job execution {} is still running, skipping this run.", lastExecution.getId());
+            return;
+        }
+
+        final PricingRun run = pricingRunRecorder.start(SCHEDULER_NAME);
         try {
             log.info("Start.");
-            JobParameters jobParameters = new JobParametersBuilder()
-                    .addString("JobID", String.valueOf(System.currentTimeMillis()))
-                    .toJobParameters();
-            jobLauncher.run(importUserJob, jobParameters);
-            log.info("Batch job successfully triggered.");
+            final JobParameters jobParameters;
+            if (lastExecution != null && isRestartable(lastExecution)) {
+                log.info("Restarting job execution {} that finished with status {}",
+                        lastExecution.getId(), lastExecution.getStatus());
+                jobParameters = lastExecution.getJobParameters();
+            } else {
+                jobParameters = new JobParametersBuilder(jobExplorer)
+                        .getNextJobParameters(importUserJob)
+                        .toJobParameters();
+            }
+            JobExecution jobExecution = jobLauncher.run(importUserJob, jobParameters);
+            // Шаги партиций (имя вида worker:partition) уже учтены в управляющем шаге
+            run.addRows(jobExecution.getStepExecutions().stream()
+                    .filter(stepExecution -> !stepExecution.getStepName().contains(":"))
+                    .mapToLong(StepExecution::getWriteCount)
+                    .sum());
+            run.addExportBytes(jobExecution.getStepExecutions().stream()
+                    .mapToLong(stepExecution -> stepExecution.getExecutionContext().getLong(SNAPSHOT_BYTES_KEY, 0))
+                    .sum());
+            if (jobExecution.getStatus() == BatchStatus.COMPLETED) {
+                run.success();
+            } else {
+                run.failure(new IllegalStateException("Batch job finished with status " + jobExecution.getStatus()));
+            }
+            log.info("Batch job finished with status {}.", jobExecution.getStatus());
         } catch (JobExecutionException e) {
+            run.failure(e);
             log.error("Error triggering batch job: {}", e.getMessage());
         }
     }
+
+    /**
+     * Находит последний запуск задания.
+     *
+     * @return последний запуск задания или null, если задание еще не запускалось
+     */
+    private JobExecution findLastExecution() {
+        final JobInstance lastInstance = jobExplorer.getLastJobInstance(importUserJob.getName());
+        if (lastInstance == null) {
+            return null;
+        }
+        final JobExecution lastExecution = jobExplorer.getLastJobExecution(lastInstance);
+        return lastExecution == null ? null : jobExplorer.getJobExecution(lastExecution.getId());
+    }
+
+    /**
+     * Проверяет, можно ли перезапустить завершившийся запуск задания.
+     *
+     * @param jobExecution запуск задания
+     * @return true, если запуск завершился ошибкой или был остановлен
+     */
+    private boolean isRestartable(JobExecution jobExecution) {
+        return jobExecution.getStatus() == BatchStatus.FAILED || jobExecution.getStatus() == BatchStatus.STOPPED;
+    }
+
+    /**
+     * Помечает выполняющийся запуск задания и его шаги как завершенные ошибкой,
+     * если они не продвигались дольше допустимого времени.
+     *
+     * @param jobExecution выполняющийся запуск задания
+     * @return true, если запуск признан брошенным и может быть перезапущен
+     */
+    private boolean abandonIfStale(JobExecution jobExecution) {
+        final LocalDateTime lastUpdated = jobExecution.getStepExecutions().stream()
+                .map(StepExecution::getLastUpdated)
+                .filter(Objects::nonNull)
+                .reduce(jobExecution.getLastUpdated(), (first, second) ->
+                        first == null || second.isAfter(first) ? second : first);
+        final LocalDateTime now = LocalDateTime.now();
+        if (lastUpdated != null && lastUpdated.isAfter(now.minus(Duration.ofMillis(staleExecutionTimeout)))) {
+            return false;
+        }
+
+        log.warn("Job execution {} made no progress since {}, marking it as failed", jobExecution.getId(), lastUpdated);
+        for (StepExecution stepExecution : jobExecution.getStepExecutions()) {
+            if (stepExecution.getStatus().isRunning()) {
+                stepExecution.setStatus(BatchStatus.FAILED);
+                stepExecution.setExitStatus(ExitStatus.FAILED);
+                stepExecution.setEndTime(now);
+                jobRepository.update(stepExecution);
+            }
+        }
+        jobExecution.setStatus(BatchStatus.FAILED);
+        jobExecution.setExitStatus(ExitStatus.FAILED.addExitDescription("Abandoned after no progress since "
+                + lastUpdated));
+        jobExecution.setEndTime(now);
+        jobRepository.update(jobExecution);
+        return true;
+    }
 }
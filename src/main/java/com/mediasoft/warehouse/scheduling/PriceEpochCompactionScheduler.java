@@ -0,0 +1,59 @@
+package com.mediasoft.warehouse.scheduling;
+
+import com.mediasoft.warehouse.annotation.LeaderOnly;
+import com.mediasoft.warehouse.annotation.MeasureExecutionTime;
+import com.mediasoft.warehouse.model.PriceEpoch;
+import com.mediasoft.warehouse.repository.PriceEpochRepository;
+import com.mediasoft.warehouse.service.LeaderLeaseManager;
+import com.mediasoft.warehouse.service.PriceEpochProvider;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+
+/**
+ * Запланированная задача для уплотнения эпох цен: переносит накопленный множитель
+ * в базовые цены товаров и начинает новую эпоху с единичным множителем.
+ * Уплотнение блокирует текущую эпоху, поэтому не пересекается с транзакциями, сохраняющими цены
+ * через {@link PriceEpochProvider#lockMultiplier()}, а новая эпоха получает большую версию, и такие транзакции
+ * не применяют старый множитель к уплотненным ценам. Закэшированный множитель для отображения цен
+ * другие экземпляры приложения обновляют в течение {@code app.scheduling.epoch.refresh-period},
+ * поэтому уплотнение рекомендуется запускать в период низкой нагрузки.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnExpression(value = "#{'${app.scheduling.mode:none}'.equals('epoch') and " +
+        "${app.scheduling.epoch.compaction.enabled:false}}")
+@Profile("!dev")
+@Slf4j
+public class PriceEpochCompactionScheduler {
+    private final PriceEpochRepository priceEpochRepository;
+    private final PriceEpochCompactor priceEpochCompactor;
+    private final LeaderLeaseManager leaderLeaseManager;
+
+    /**
+     * Метод запускается периодически с фиксированной задержкой
+     * и переносит множитель текущей эпохи в базовые цены товаров.
+     */
+    @Scheduled(fixedDelayString = "${app.scheduling.epoch.compaction.period}",
+            initialDelayString = "${app.scheduling.epoch.compaction.period}")
+    @LeaderOnly(LeaderLeaseManager.COMPACTION_LEASE)
+    @MeasureExecutionTime
+    @Transactional
+    public void compactEpochs() {
+        final BigDecimal multiplier = priceEpochRepository.findLatestForUpdate()
+                .map(PriceEpoch::getMultiplier)
+                .orElse(BigDecimal.ONE);
+        if (multiplier.compareTo(BigDecimal.ONE) == 0) {
+            log.info("Nothing to compact.");
+            return;
+        }
+        priceEpochCompactor.compact(multiplier, "compaction");
+        leaderLeaseManager.checkLeadership(LeaderLeaseManager.COMPACTION_LEASE);
+    }
+}
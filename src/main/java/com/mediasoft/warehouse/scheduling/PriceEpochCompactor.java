@@ -0,0 +1,53 @@
+package com.mediasoft.warehouse.scheduling;
+
+import com.mediasoft.warehouse.model.PriceEpoch;
+import com.mediasoft.warehouse.repository.PriceEpochRepository;
+import com.mediasoft.warehouse.repository.ProductRepository;
+import com.mediasoft.warehouse.service.PriceEpochProvider;
+import com.mediasoft.warehouse.service.PricesChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+
+/**
+ * Компонент для уплотнения эпох цен: переносит множитель в базовые цены товаров
+ * и начинает новую эпоху с единичным множителем.
+ * Используется планировщиком уплотнения и планировщиком эпох, когда множитель достигает
+ * порога {@code app.scheduling.epoch.compaction.max-multiplier}.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnExpression(value = "#{'${app.scheduling.mode:none}'.equals('epoch')}")
+@Slf4j
+public class PriceEpochCompactor {
+    private final PriceEpochRepository priceEpochRepository;
+    private final ProductRepository productRepository;
+    private final PriceEpochProvider priceEpochProvider;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Переносит множитель в базовые цены товаров и заменяет все эпохи эпохой с единичным множителем.
+     * Вызывающая транзакция должна удерживать блокировку последней эпохи,
+     * полученную через {@link PriceEpochRepository#findLatestForUpdate()}.
+     *
+     * @param multiplier Множитель, который переносится в базовые цены.
+     * @param source     Источник уплотнения для событий и журнала.
+     * @return Количество измененных товаров.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int compact(BigDecimal multiplier, String source) {
+        final int updated = productRepository.multiplyPrices(multiplier);
+        priceEpochRepository.deleteAllInBatch();
+        priceEpochRepository.save(new PriceEpoch(BigDecimal.ONE));
+        priceEpochProvider.refreshAfterCommit();
+        eventPublisher.publishEvent(new PricesChangedEvent(source));
+        log.info("Compacted price epochs with multiplier {} into {} products", multiplier, updated);
+        return updated;
+    }
+}
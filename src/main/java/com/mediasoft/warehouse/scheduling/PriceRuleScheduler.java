@@ -0,0 +1,104 @@
+package com.mediasoft.warehouse.scheduling;
+
+import com.mediasoft.warehouse.annotation.LeaderOnly;
+import com.mediasoft.warehouse.annotation.MeasureExecutionTime;
+import com.mediasoft.warehouse.export.ProductSnapshotExporter;
+import com.mediasoft.warehouse.export.SnapshotSession;
+import com.mediasoft.warehouse.export.SnapshotWriter;
+import com.mediasoft.warehouse.model.PriceRule;
+import com.mediasoft.warehouse.service.LeaderLeaseManager;
+import com.mediasoft.warehouse.telemetry.PricingRun;
+import com.mediasoft.warehouse.telemetry.PricingRunRecorder;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Запланированная задача для обновления цен товаров по правилам {@link PriceRule}.
+ * Цены всех товаров изменяются одним запросом: процент для каждого товара выбирается
+ * коррелированным подзапросом к таблице правил по категории и диапазону цены,
+ * а при отсутствии подходящего правила используется общий процент.
+ * Затем в той же транзакции выгружается снимок таблицы товаров.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnExpression(value = "#{'${app.scheduling.mode:none}'.equals('rules')}")
+@Profile("!dev")
+@Slf4j
+public class PriceRuleScheduler {
+    private static final String UPDATE_QUERY = "UPDATE product p SET price = ROUND(p.price * (1 + COALESCE(" +
+            "(SELECT r.percent FROM price_rule r " +
+            "WHERE r.category = p.category " +
+            "AND (r.min_price IS NULL OR p.price >= r.min_price) " +
+            "AND (r.max_price IS NULL OR p.price < r.max_price) " +
+            "ORDER BY r.priority DESC, r.id DESC LIMIT 1), ?) / 100), 2)";
+
+    @Value("#{new java.math.BigDecimal(\"${app.scheduling.priceIncreasePercentage:10}\")}")
+    private BigDecimal defaultPercent;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ProductSnapshotExporter productSnapshotExporter;
+    private final SnapshotWriter snapshotWriter;
+    private final PricingRunRecorder pricingRunRecorder;
+    private final LeaderLeaseManager leaderLeaseManager;
+
+    /**
+     * Метод запускается периодически с фиксированной задержкой
+     * для обновления цен товаров по правилам.
+     */
+    @Scheduled(fixedDelayString = "${app.scheduling.period}",
+            initialDelayString = "${app.scheduling.initial-delay:0}")
+    @LeaderOnly(LeaderLeaseManager.PRICING_LEASE)
+    @MeasureExecutionTime
+    @Transactional
+    public void applyPriceRules() {
+        log.info("Start.");
+
+        final Session session = entityManagerFactory.createEntityManager().unwrap(Session.class);
+        try (session; PricingRun run = pricingRunRecorder.start("rules")) {
+            session.doWork(connection -> {
+                try (connection) {
+                    try (SnapshotSession snapshot = snapshotWriter.open()) {
+                        connection.setAutoCommit(false);
+                        final long transactionStart = System.nanoTime();
+                        try (PreparedStatement updateStatement = connection.prepareStatement(UPDATE_QUERY)) {
+                            updateStatement.setBigDecimal(1, defaultPercent);
+                            final long batchStart = System.nanoTime();
+                            run.addRows(updateStatement.executeUpdate());
+                            run.recordBatch(System.nanoTime() - batchStart);
+                        }
+
+                        productSnapshotExporter.export(connection, snapshot);
+
+                        leaderLeaseManager.checkLeadership(connection, LeaderLeaseManager.PRICING_LEASE);
+                        connection.commit();
+                        run.recordTransaction(System.nanoTime() - transactionStart);
+                        snapshot.commit();
+                        run.addExportBytes(snapshot.getBytes());
+                        run.success();
+                    } catch (Exception e) {
+                        run.failure(e);
+                        try {
+                            connection.rollback();
+                        } catch (SQLException rollbackException) {
+                            e.addSuppressed(rollbackException);
+                        }
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        }
+
+        log.info("End.");
+    }
+}
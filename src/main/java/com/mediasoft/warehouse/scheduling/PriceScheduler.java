@@ -1,5 +1,7 @@
 package com.mediasoft.warehouse.scheduling;
 
+import com.mediasoft.warehouse.money.Money;
+
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 
@@ -7,21 +9,36 @@ import java.math.RoundingMode;
  * Интерфейс для планировщика увеличения цен.
  */
 public interface PriceScheduler {
+    /**
+     * Масштаб цены товара.
+     */
+    int PRICE_SCALE = 2;
+
     /**
      * Основной метод планировщика, который будет отрабатывать по таймеру.
      */
     void scheduleFixedDelayTask();
 
     /**
-     * Метод для получения новой цены товара в зависимости от указанного процента
+     * Метод для получения множителя цены по проценту увеличения.
+     * Вычисляется один раз за запуск, а не для каждого товара.
      *
-     * @param oldPrice Предыдущая цена товара.
-     * @param percent  Процент, на который цена товара увеличится.
-     * @return Новая цена товара.
+     * @param percent Процент, на который цена товара увеличится.
+     * @return Множитель цены, равный {@code 1 + percent / 100}.
      */
-    default BigDecimal getNewPrice(BigDecimal oldPrice, BigDecimal percent) {
+    default Money getPriceFactor(BigDecimal percent) {
         BigDecimal percentage = percent.divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP);
-        BigDecimal increase = oldPrice.multiply(percentage);
-        return oldPrice.add(increase);
+        return Money.of(BigDecimal.ONE.add(percentage));
+    }
+
+    /**
+     * Метод для получения новой цены товара по заранее вычисленному множителю.
+     *
+     * @param oldPrice    Предыдущая цена товара.
+     * @param priceFactor Множитель цены, полученный из {@link #getPriceFactor(BigDecimal)}.
+     * @return Новая цена товара, округленная до копеек.
+     */
+    default BigDecimal getNewPrice(BigDecimal oldPrice, Money priceFactor) {
+        return priceFactor.applyTo(oldPrice, PRICE_SCALE);
     }
 }
@@ -1,8 +1,13 @@
 package com.mediasoft.warehouse.scheduling;
 
+import com.mediasoft.warehouse.annotation.LeaderOnly;
 import com.mediasoft.warehouse.annotation.MeasureExecutionTime;
 import com.mediasoft.warehouse.model.Product;
+import com.mediasoft.warehouse.money.Money;
 import com.mediasoft.warehouse.repository.ProductRepository;
+import com.mediasoft.warehouse.service.LeaderLeaseManager;
+import com.mediasoft.warehouse.telemetry.PricingRun;
+import com.mediasoft.warehouse.telemetry.PricingRunRecorder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -25,6 +30,8 @@ import java.util.List;
 @Slf4j
 public class SimpleScheduler implements PriceScheduler {
     private final ProductRepository productRepository;
+    private final PricingRunRecorder pricingRunRecorder;
+    private final LeaderLeaseManager leaderLeaseManager;
     @Value("#{new java.math.BigDecimal(\"${app.scheduling.priceIncreasePercentage:10}\")}")
     private BigDecimal percent;
 
@@ -32,12 +39,27 @@ public class SimpleScheduler implements PriceScheduler {
      * Метод запускается периодически с фиксированной задержкой
      * для обновления цен товаров.
      */
-    @Scheduled(fixedDelayString = "${app.scheduling.period}")
+    @Scheduled(fixedDelayString = "${app.scheduling.period}",
+            initialDelayString = "${app.scheduling.initial-delay:0}")
+    @LeaderOnly(LeaderLeaseManager.PRICING_LEASE)
     @MeasureExecutionTime
     @Transactional
     public void scheduleFixedDelayTask() {
-        final List<Product> productList = productRepository.findAll();
-        productList.forEach(product -> product.setPrice(getNewPrice(product.getPrice(), percent)));
-        productRepository.saveAll(productList);
+        final PricingRun run = pricingRunRecorder.start("simple");
+        try {
+            final Money priceFactor = getPriceFactor(percent);
+            final List<Product> productList = productRepository.findAll();
+            productList.forEach(product -> product.setPrice(getNewPrice(product.getPrice(), priceFactor)));
+            final long batchStart = System.nanoTime();
+            productRepository.saveAll(productList);
+            productRepository.flush();
+            run.recordBatch(System.nanoTime() - batchStart);
+            run.addRows(productList.size());
+            leaderLeaseManager.checkLeadership(LeaderLeaseManager.PRICING_LEASE);
+            run.success();
+        } catch (RuntimeException exception) {
+            run.failure(exception);
+            throw exception;
+        }
     }
 }
\ No newline at end of file
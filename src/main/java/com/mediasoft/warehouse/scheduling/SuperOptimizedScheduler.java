@@ -1,6 +1,14 @@
 package com.mediasoft.warehouse.scheduling;
 
+import com.mediasoft.warehouse.annotation.LeaderOnly;
 import com.mediasoft.warehouse.annotation.MeasureExecutionTime;
+import com.mediasoft.warehouse.export.ProductSnapshotExporter;
+import com.mediasoft.warehouse.export.SnapshotSession;
+import com.mediasoft.warehouse.export.SnapshotWriter;
+import com.mediasoft.warehouse.service.LeaderLeaseManager;
+import com.mediasoft.warehouse.service.PriceEpochProvider;
+import com.mediasoft.warehouse.telemetry.PricingRun;
+import com.mediasoft.warehouse.telemetry.PricingRunRecorder;
 import jakarta.persistence.EntityManagerFactory;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -12,12 +20,8 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.math.BigDecimal;
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 
 /**
  * Запланированная задача для обновления цен товаров с использованием оптимизации по максимуму.
@@ -28,39 +32,50 @@ import java.sql.SQLException;
 @ConditionalOnExpression(value = "#{'${app.scheduling.mode:none}'.equals('super')}")
 @Slf4j
 public class SuperOptimizedScheduler {
-    private static final String QUERY = "UPDATE products SET price = price * (1 + ?/100) RETURNING *";
+    private static final String QUERY =
+            "UPDATE product SET price = ROUND(price * (1 + ?/100), " + PriceEpochProvider.PRICE_SCALE + ")";
     @Value("#{new java.math.BigDecimal(\"${app.scheduling.priceIncreasePercentage:10}\")}")
     private BigDecimal priceIncreasePercentage;
     private final EntityManagerFactory entityManagerFactory;
+    private final ProductSnapshotExporter productSnapshotExporter;
+    private final SnapshotWriter snapshotWriter;
+    private final PricingRunRecorder pricingRunRecorder;
+    private final LeaderLeaseManager leaderLeaseManager;
 
     /**
      * Метод запускается периодически с фиксированной задержкой
      * для обновления цен товаров с использованием оптимизации по максимуму.
      */
-    @Scheduled(fixedDelayString = "${app.scheduling.period}")
+    @Scheduled(fixedDelayString = "${app.scheduling.period}",
+            initialDelayString = "${app.scheduling.initial-delay:0}")
+    @LeaderOnly(LeaderLeaseManager.PRICING_LEASE)
     @MeasureExecutionTime
     @Transactional
     public void increaseProductPrice() {
         log.info("Start SUPER Optimized Scheduler");
 
         final Session session = entityManagerFactory.createEntityManager().unwrap(Session.class);
-        try (session) {
+        try (session; PricingRun run = pricingRunRecorder.start("super")) {
             session.doWork(connection -> {
-                try (
-                        final BufferedWriter fileWriter = new BufferedWriter(new FileWriter("products.txt"));
-                        connection
-                ) {
+                try (connection; SnapshotSession snapshot = snapshotWriter.open()) {
                     connection.setAutoCommit(false);
+                    final long transactionStart = System.nanoTime();
                     final PreparedStatement preparedStatement = connection.prepareStatement(QUERY);
                     preparedStatement.setBigDecimal(1, priceIncreasePercentage);
+                    final long batchStart = System.nanoTime();
+                    run.addRows(preparedStatement.executeUpdate());
+                    run.recordBatch(System.nanoTime() - batchStart);
 
-                    final ResultSet resultSet = preparedStatement.executeQuery();
-                    while (resultSet.next()) {
-                        fileWriter.write(buildString(resultSet));
-                    }
+                    productSnapshotExporter.export(connection, snapshot);
 
+                    leaderLeaseManager.checkLeadership(connection, LeaderLeaseManager.PRICING_LEASE);
                     connection.commit();
+                    run.recordTransaction(System.nanoTime() - transactionStart);
+                    snapshot.commit();
+                    run.addExportBytes(snapshot.getBytes());
+                    run.success();
                 } catch (Exception e) {
+                    run.failure(e);
                     connection.rollback();
                     throw new RuntimeException(e);
                 }
@@ -69,19 +84,4 @@ public class SuperOptimizedScheduler {
 
         log.info("End Super Optimized Scheduler");
     }
-
-    /**
-     * Строит строку из указанного ResultSet с разделением пробелом.
-     *
-     * @param resultSet ResultSet, содержащий данные для строки.
-     * @return Строка с данными, где значения разделены пробелами.
-     * @throws SQLException если произошла ошибка доступа к бд
-     */
-    private String buildString(final ResultSet resultSet) throws SQLException {
-        return resultSet.getString("id") + " " +
-                resultSet.getString("name") + " " +
-                resultSet.getString("description") + " " +
-                resultSet.getString("price") + " " +
-                resultSet.getString("article");
-    }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.mediasoft.warehouse.search;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.mediasoft.warehouse.model.Product;
@@ -7,12 +8,17 @@ import com.mediasoft.warehouse.model.enums.FieldName;
 import com.mediasoft.warehouse.model.enums.OperationType;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.data.jpa.domain.Specification;
 
+import java.util.List;
+import java.util.Objects;
+
 /**
  * Абстрактный класс для фильтрации товаров.
  * Определяет общие атрибуты и методы для всех типов фильтров.
@@ -53,11 +59,16 @@ public abstract class AbstractProductFilter<T> {
     protected OperationType operation;
 
     /**
-     * Параметр поиска.
+     * Параметр поиска для операций "=", ">=", "<=" и "~".
      */
-    @NotNull
     protected T searchParam;
 
+    /**
+     * Параметры поиска для операций "in" (список значений) и "between" (нижняя и верхняя границы включительно).
+     */
+    @Size(max = 1000)
+    protected List<T> searchParams;
+
     /**
      * Метод, возвращающий спецификацию для операции "~".
      *
@@ -85,4 +96,55 @@ public abstract class AbstractProductFilter<T> {
      * @return спецификация для операции "<="
      */
     abstract public Specification<Product> lessThanOrEqualsOperation();
+
+    /**
+     * Метод, возвращающий спецификацию для операции "in".
+     *
+     * @return спецификация для операции "in"
+     */
+    public Specification<Product> inOperation() {
+        return (root, query, criteriaBuilder) -> root.get(field.getAttribute()).in(searchParams);
+    }
+
+    /**
+     * Метод, возвращающий спецификацию для операции "between".
+     *
+     * @return спецификация для операции "between"
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Specification<Product> betweenOperation() {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.between(root.<Comparable>get(field.getAttribute()),
+                (Comparable) searchParams.get(0), (Comparable) searchParams.get(1));
+    }
+
+    /**
+     * Проверяет, что параметры поиска заданы в соответствии с операцией: непустой список значений
+     * для операции "in", две границы для операции "between" и одно значение для остальных операций.
+     *
+     * @return true, если параметры поиска заданы
+     */
+    @JsonIgnore
+    @AssertTrue
+    public boolean isSearchParamPresent() {
+        if (operation == null) {
+            return true;
+        }
+        return switch (operation) {
+            case IN -> searchParams != null && !searchParams.isEmpty()
+                    && searchParams.stream().noneMatch(Objects::isNull);
+            case BETWEEN -> searchParams != null && searchParams.size() == 2
+                    && searchParams.stream().noneMatch(Objects::isNull);
+            default -> searchParam != null;
+        };
+    }
+
+    /**
+     * Возвращает строковый ключ фильтра, одинаковый для фильтров с одинаковыми полем, операцией и параметром.
+     *
+     * @return ключ фильтра
+     */
+    public String toKey() {
+        return field + " " + operation.getCode() + " "
+                + (operation.isMultiValued() ? Objects.toString(searchParams) : searchParam);
+    }
 }
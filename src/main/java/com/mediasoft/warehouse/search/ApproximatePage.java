@@ -0,0 +1,58 @@
+package com.mediasoft.warehouse.search;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Страница с приблизительным общим количеством элементов.
+ * Наличие следующей страницы известно точно и не зависит от приблизительного количества.
+ *
+ * @param <T> тип элементов страницы
+ */
+public class ApproximatePage<T> extends PageImpl<T> {
+    private static final long serialVersionUID = 1L;
+
+    private final boolean hasNext;
+
+    /**
+     * Конструктор для создания страницы.
+     *
+     * @param content        элементы страницы
+     * @param pageable       информация о пагинации
+     * @param estimatedTotal приблизительное общее количество элементов
+     * @param hasNext        есть ли следующая страница
+     */
+    public ApproximatePage(List<T> content, Pageable pageable, long estimatedTotal, boolean hasNext) {
+        super(content, pageable,
+                Math.max(estimatedTotal, pageable.getOffset() + content.size() + (hasNext ? 1 : 0)));
+        this.hasNext = hasNext;
+    }
+
+    /**
+     * Признак того, что общее количество элементов приблизительное.
+     *
+     * @return всегда true
+     */
+    public boolean isApproximate() {
+        return true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    @Override
+    public boolean isLast() {
+        return !hasNext;
+    }
+
+    @Override
+    public <U> Page<U> map(Function<? super T, ? extends U> converter) {
+        return new ApproximatePage<>(getConvertedContent(converter), getPageable(), getTotalElements(), hasNext);
+    }
+}
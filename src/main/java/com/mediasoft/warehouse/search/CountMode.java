@@ -0,0 +1,19 @@
+package com.mediasoft.warehouse.search;
+
+/**
+ * Способ подсчета общего количества товаров для страницы результатов.
+ */
+public enum CountMode {
+    /**
+     * Точный подсчет отдельным запросом.
+     */
+    EXACT,
+    /**
+     * Без подсчета: возвращается только признак наличия следующей страницы.
+     */
+    NONE,
+    /**
+     * Приблизительное количество из статистики планировщика PostgreSQL или периодически обновляемого кэша.
+     */
+    APPROXIMATE
+}
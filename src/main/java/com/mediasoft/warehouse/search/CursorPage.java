@@ -0,0 +1,42 @@
+package com.mediasoft.warehouse.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Страница результатов постраничного чтения по курсору.
+ *
+ * @param <T> тип элементов страницы
+ */
+@Getter
+@AllArgsConstructor
+public class CursorPage<T> {
+    /**
+     * Элементы страницы.
+     */
+    private final List<T> content;
+
+    /**
+     * Курсор следующей страницы или null, если страница последняя.
+     */
+    private final String nextCursor;
+
+    /**
+     * Общее количество элементов или null, если подсчет не запрашивался.
+     */
+    private final Long totalElements;
+
+    /**
+     * Преобразует элементы страницы.
+     *
+     * @param mapper функция преобразования элемента
+     * @param <R>    тип преобразованных элементов
+     * @return страница с преобразованными элементами
+     */
+    public <R> CursorPage<R> map(Function<? super T, ? extends R> mapper) {
+        return new CursorPage<>(content.stream().<R>map(mapper).toList(), nextCursor, totalElements);
+    }
+}
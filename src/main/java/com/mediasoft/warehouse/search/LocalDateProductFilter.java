@@ -54,6 +54,6 @@ public class LocalDateProductFilter extends AbstractProductFilter<LocalDate> {
     @Override
     public Specification<Product> lessThanOrEqualsOperation() {
         return (root, query, criteriaBuilder) ->
-                criteriaBuilder.greaterThanOrEqualTo(root.get("createdDate"), searchParam);
+                criteriaBuilder.lessThanOrEqualTo(root.get("createdDate"), searchParam);
     }
 }
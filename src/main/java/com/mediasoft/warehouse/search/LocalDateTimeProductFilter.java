@@ -3,7 +3,6 @@ package com.mediasoft.warehouse.search;
 import com.mediasoft.warehouse.model.Product;
 import org.springframework.data.jpa.domain.Specification;
 
-import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 /**
@@ -32,8 +31,12 @@ public class LocalDateTimeProductFilter extends AbstractProductFilter<LocalDateT
      */
     @Override
     public Specification<Product> equalsOperation() {
-        return (root, query, criteriaBuilder) ->
-                criteriaBuilder.equal(root.get("lastQuantityChangeDate").as(LocalDate.class), searchParam);
+        return (root, query, criteriaBuilder) -> {
+            LocalDateTime dayStart = searchParam.toLocalDate().atStartOfDay();
+            return criteriaBuilder.and(
+                    criteriaBuilder.greaterThanOrEqualTo(root.get("lastQuantityChangeDate"), dayStart),
+                    criteriaBuilder.lessThan(root.get("lastQuantityChangeDate"), dayStart.plusDays(1)));
+        };
     }
 
     /**
@@ -0,0 +1,165 @@
+package com.mediasoft.warehouse.search;
+
+import com.mediasoft.warehouse.model.Product;
+import com.mediasoft.warehouse.model.enums.FieldName;
+import com.mediasoft.warehouse.model.enums.ProductCategory;
+import jakarta.persistence.criteria.Expression;
+import lombok.Getter;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Курсор постраничного чтения товаров по ключу сортировки.
+ * Хранит поле и направление сортировки, значение поля и идентификатор последнего товара страницы.
+ * Следующая страница выбирается условием {@code (поле, id) > (значение, последний id)}
+ * вместо пропуска строк, поэтому время чтения не зависит от номера страницы.
+ * Для клиента курсор непрозрачен и передается строкой в Base64.
+ */
+@Getter
+public class ProductCursor {
+    private static final String SEPARATOR = ":";
+
+    /**
+     * Поле сортировки.
+     */
+    private final FieldName field;
+
+    /**
+     * Направление сортировки.
+     */
+    private final Sort.Direction direction;
+
+    /**
+     * Идентификатор последнего товара страницы.
+     */
+    private final UUID id;
+
+    /**
+     * Значение поля сортировки последнего товара страницы.
+     */
+    private final Comparable<?> value;
+
+    /**
+     * Конструктор для создания курсора.
+     *
+     * @param field     поле сортировки
+     * @param direction направление сортировки
+     * @param id        идентификатор последнего товара страницы
+     * @param value     значение поля сортировки последнего товара страницы
+     */
+    public ProductCursor(FieldName field, Sort.Direction direction, UUID id, Comparable<?> value) {
+        this.field = field;
+        this.direction = direction;
+        this.id = id;
+        this.value = value;
+    }
+
+    /**
+     * Создает курсор, указывающий на товар.
+     *
+     * @param product   последний товар страницы
+     * @param field     поле сортировки
+     * @param direction направление сортировки
+     * @return курсор
+     */
+    public static ProductCursor of(Product product, FieldName field, Sort.Direction direction) {
+        final Comparable<?> value = switch (field) {
+            case ID -> product.getId();
+            case NAME -> product.getName();
+            case ARTICLE -> product.getArticle();
+            case DESCRIPTION -> product.getDescription();
+            case CATEGORY -> product.getCategory();
+            case PRICE -> product.getPrice();
+            case QUANTITY -> product.getQuantity();
+            case LAST_QUANTITY_CHANGE_DATE -> product.getLastQuantityChangeDate();
+            case CREATED_DATE -> product.getCreatedDate();
+        };
+        return new ProductCursor(field, direction, product.getId(), value);
+    }
+
+    /**
+     * Получает порядок сортировки товаров, соответствующий полю и направлению сортировки.
+     * Идентификатор товара добавляется последним ключом, чтобы порядок был однозначным.
+     *
+     * @param field     поле сортировки
+     * @param direction направление сортировки
+     * @return порядок сортировки
+     */
+    public static Sort sort(FieldName field, Sort.Direction direction) {
+        if (field == FieldName.ID) {
+            return Sort.by(direction, FieldName.ID.getAttribute());
+        }
+        return Sort.by(direction, field.getAttribute()).and(Sort.by(direction, FieldName.ID.getAttribute()));
+    }
+
+    /**
+     * Получает спецификацию товаров, следующих за курсором в порядке сортировки.
+     *
+     * @return спецификация товаров после курсора
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Specification<Product> after() {
+        return (root, query, criteriaBuilder) -> {
+            final Expression<UUID> idPath = root.get(FieldName.ID.getAttribute());
+            final boolean ascending = direction.isAscending();
+            if (field == FieldName.ID) {
+                return ascending ? criteriaBuilder.greaterThan(idPath, id) : criteriaBuilder.lessThan(idPath, id);
+            }
+            final Expression<Comparable> path = root.get(field.getAttribute());
+            final Comparable comparableValue = value;
+            return criteriaBuilder.or(
+                    ascending
+                            ? criteriaBuilder.greaterThan(path, comparableValue)
+                            : criteriaBuilder.lessThan(path, comparableValue),
+                    criteriaBuilder.and(
+                            criteriaBuilder.equal(path, comparableValue),
+                            ascending ? criteriaBuilder.greaterThan(idPath, id) : criteriaBuilder.lessThan(idPath, id)));
+        };
+    }
+
+    /**
+     * Кодирует курсор в строку для передачи клиенту.
+     *
+     * @return курсор в Base64
+     */
+    public String encode() {
+        final String raw = String.join(SEPARATOR, field.name(), direction.name(), id.toString(),
+                field == FieldName.CATEGORY ? ((ProductCategory) value).name() : value.toString());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Декодирует курсор, полученный от клиента.
+     *
+     * @param cursor курсор в Base64
+     * @return курсор
+     * @throws IllegalArgumentException если курсор поврежден
+     */
+    public static ProductCursor decode(String cursor) {
+        try {
+            final String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            final String[] parts = raw.split(SEPARATOR, 4);
+            final FieldName field = FieldName.valueOf(parts[0]);
+            final String value = parts[3];
+            final Comparable<?> parsedValue = switch (field) {
+                case ID -> UUID.fromString(value);
+                case NAME, ARTICLE, DESCRIPTION -> value;
+                case CATEGORY -> ProductCategory.valueOf(value);
+                case PRICE -> new BigDecimal(value);
+                case QUANTITY -> Long.valueOf(value);
+                case LAST_QUANTITY_CHANGE_DATE -> LocalDateTime.parse(value);
+                case CREATED_DATE -> LocalDate.parse(value);
+            };
+            return new ProductCursor(field, Sort.Direction.valueOf(parts[1]), UUID.fromString(parts[2]), parsedValue);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.mediasoft.warehouse.search;
 
 import com.mediasoft.warehouse.error.exception.CompareWithStringException;
 import com.mediasoft.warehouse.model.Product;
+import com.mediasoft.warehouse.model.enums.ProductCategory;
 import org.springframework.data.jpa.domain.Specification;
 
 /**
@@ -65,4 +66,33 @@ public class StringProductFilter extends AbstractProductFilter<String> {
             default -> throw new CompareWithStringException(field.name());
         };
     }
-}
\ No newline at end of file
+
+    /**
+     * Возвращает спецификацию для операции "in". Для категории значения преобразуются в {@link ProductCategory}.
+     *
+     * @return спецификация для операции "in"
+     */
+    @Override
+    public Specification<Product> inOperation() {
+        return switch (field) {
+            case NAME, ARTICLE, DESCRIPTION -> super.inOperation();
+            case CATEGORY -> (root, query, criteriaBuilder) -> root.get(field.getAttribute())
+                    .in(searchParams.stream().map(ProductCategory::valueOf).toList());
+            default -> throw new CompareWithStringException(field.name());
+        };
+    }
+
+    /**
+     * Возвращает спецификацию для операции "between".
+     *
+     * @return спецификация для операции "between"
+     */
+    @Override
+    public Specification<Product> betweenOperation() {
+        return switch (field) {
+            case NAME, ARTICLE, DESCRIPTION -> super.betweenOperation();
+            case CATEGORY -> throw new IllegalArgumentException("Can't apply between to " + field.name());
+            default -> throw new CompareWithStringException(field.name());
+        };
+    }
+}
@@ -0,0 +1,287 @@
+package com.mediasoft.warehouse.search.engine;
+
+import com.mediasoft.warehouse.model.Product;
+import com.mediasoft.warehouse.repository.ProductRepository;
+import com.mediasoft.warehouse.service.ProductChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Поисковый механизм на основе триграммного индекса {@link NgramIndex} в памяти приложения.
+ * <p>
+ * Индекс строится после запуска приложения потоковым чтением таблицы товаров и затем обновляется
+ * по событиям {@link ProductChangedEvent} после фиксации транзакций. События, пришедшие во время построения,
+ * применяются после него. Поиск находит идентификаторы в индексе, а товары страницы загружаются
+ * одним запросом по идентификаторам.
+ * <p>
+ * Когда в индексе накапливается много удаленных документов, новый индекс строится в отдельном потоке
+ * без блокировки, а поиск и изменения продолжают работать со старым. События, пришедшие во время перестроения,
+ * применяются к новому индексу перед заменой ссылки на него.
+ * <p>
+ * Пока индекс не построен или если его оценочный размер превысил {@code app.search.memory.max-heap-bytes},
+ * поиск выполняется запросом {@code LIKE} к бд. Индекс отражает только изменения через {@code ProductService},
+ * поэтому изменения названий, артикулов и описаний в обход сервиса требуют перезапуска приложения.
+ */
+@Component
+@ConditionalOnExpression(value = "#{'${app.search.engine:like}'.equals('memory')}")
+@Slf4j
+public class InMemoryProductSearchEngine implements ProductSearchEngine {
+    private static final String SELECT_QUERY = "SELECT id, name, article, description FROM product";
+
+    private final ProductRepository productRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long maxHeapBytes;
+    private final int fetchSize;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private NgramIndex index;
+    private List<ProductChangedEvent> pendingEvents;
+    private List<ProductChangedEvent> compactionEvents;
+
+    /**
+     * Конструктор для создания поискового механизма.
+     *
+     * @param productRepository  репозиторий товаров
+     * @param jdbcTemplate       шаблон для выполнения запросов к бд
+     * @param transactionManager менеджер транзакций для потокового чтения таблицы товаров
+     * @param maxHeapBytes       максимальный оценочный размер индекса в байтах
+     * @param fetchSize          размер выборки строк за одно обращение к бд при построении индекса
+     */
+    public InMemoryProductSearchEngine(ProductRepository productRepository,
+                                       JdbcTemplate jdbcTemplate,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${app.search.memory.max-heap-bytes:536870912}") long maxHeapBytes,
+                                       @Value("${app.search.memory.fetch-size:10000}") int fetchSize) {
+        this.productRepository = productRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.maxHeapBytes = maxHeapBytes;
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public Page<Product> search(String search, Pageable pageable) {
+        final List<UUID> ids;
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return productRepository.searchByPattern(
+                        ProductSearchEngine.toContainsPattern(search.toLowerCase(Locale.ROOT)), pageable);
+            }
+            ids = index.search(search);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        final int from = (int) Math.min(pageable.getOffset(), ids.size());
+        final List<UUID> pageIds = ids.subList(from, Math.min(from + pageable.getPageSize(), ids.size()));
+        final Map<UUID, Integer> positions = new HashMap<>();
+        for (int i = 0; i < pageIds.size(); i++) {
+            positions.put(pageIds.get(i), i);
+        }
+        final List<Product> products = new ArrayList<>(productRepository.findAllById(pageIds));
+        products.sort(Comparator.comparing(product -> positions.get(product.getId())));
+        return new PageImpl<>(products, pageable, ids.size());
+    }
+
+    @Override
+    public Slice<Product> searchSlice(String search, Pageable pageable) {
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return productRepository.sliceByPattern(
+                        ProductSearchEngine.toContainsPattern(search.toLowerCase(Locale.ROOT)), pageable);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // Поиск в памяти находит все совпадения, поэтому подсчет не требует дополнительных затрат
+        final Page<Product> page = search(search, pageable);
+        return new SliceImpl<>(page.getContent(), pageable, page.hasNext());
+    }
+
+    /**
+     * Запускает построение индекса в отдельном потоке после запуска приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBuild() {
+        lock.writeLock().lock();
+        try {
+            pendingEvents = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        final Thread thread = new Thread(this::build, "ngram-index-build");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Применяет изменение товара к индексу после фиксации транзакции.
+     *
+     * @param event событие изменения товара
+     */
+    @TransactionalEventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (pendingEvents != null) {
+                pendingEvents.add(event);
+            } else if (index != null) {
+                apply(index, event);
+                if (compactionEvents != null) {
+                    compactionEvents.add(event);
+                } else if (index.needsCompaction()) {
+                    startCompaction();
+                }
+                checkHeapBudget();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Строит индекс потоковым чтением таблицы товаров и применяет события, пришедшие во время построения.
+     */
+    private void build() {
+        final long start = System.nanoTime();
+        final NgramIndex builtIndex = new NgramIndex();
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(SELECT_QUERY);
+                statement.setFetchSize(fetchSize);
+                return statement;
+            }, resultSet -> {
+                builtIndex.put(resultSet.getObject("id", UUID.class), resultSet.getString("name"),
+                        resultSet.getString("article"), resultSet.getString("description"));
+                if (builtIndex.size() % fetchSize == 0 && builtIndex.estimateBytes() > maxHeapBytes) {
+                    throw new IllegalStateException("Search index exceeds "
+                            + maxHeapBytes + " bytes after " + builtIndex.size() + " products");
+                }
+            }));
+        } catch (RuntimeException e) {
+            log.warn("Failed to build search index, falling back to database search: {}", e.getMessage());
+            lock.writeLock().lock();
+            try {
+                pendingEvents = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            pendingEvents.forEach(event -> apply(builtIndex, event));
+            pendingEvents = null;
+            index = builtIndex;
+            checkHeapBudget();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Search index built for {} products in {} ms, estimated size {} bytes", builtIndex.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), builtIndex.estimateBytes());
+    }
+
+    /**
+     * Запускает перестроение индекса в отдельном потоке. Вызывается под блокировкой записи.
+     */
+    private void startCompaction() {
+        final NgramIndex source = index;
+        final NgramIndex.Compaction compaction = source.prepareCompaction();
+        compactionEvents = new ArrayList<>();
+        final Thread thread = new Thread(() -> compact(source, compaction), "ngram-index-compaction");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Строит перестроенный индекс без блокировки и заменяет им исходный, если тот еще используется.
+     *
+     * @param source     исходный индекс
+     * @param compaction перестроение по живым документам исходного индекса
+     */
+    private void compact(NgramIndex source, NgramIndex.Compaction compaction) {
+        final long start = System.nanoTime();
+        final NgramIndex compacted;
+        try {
+            compacted = compaction.run();
+        } catch (RuntimeException e) {
+            log.warn("Failed to compact search index: {}", e.getMessage());
+            lock.writeLock().lock();
+            try {
+                compactionEvents = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (index == source) {
+                compactionEvents.forEach(event -> apply(compacted, event));
+                index = compacted;
+                checkHeapBudget();
+            }
+            compactionEvents = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Search index compacted to {} products in {} ms", compacted.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Применяет изменение товара к индексу.
+     *
+     * @param target индекс
+     * @param event  событие изменения товара
+     */
+    private static void apply(NgramIndex target, ProductChangedEvent event) {
+        if (event.isDeleted()) {
+            target.remove(event.productId());
+        } else {
+            target.put(event.productId(), event.name(), event.article(), event.description());
+        }
+    }
+
+    /**
+     * Отключает индекс, если его оценочный размер превысил допустимый. Вызывается под блокировкой записи.
+     */
+    private void checkHeapBudget() {
+        if (index != null && index.estimateBytes() > maxHeapBytes) {
+            log.warn("Search index exceeds {} bytes with {} products, falling back to database search",
+                    maxHeapBytes, index.size());
+            index = null;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.mediasoft.warehouse.search.engine;
+
+import com.mediasoft.warehouse.model.Product;
+import com.mediasoft.warehouse.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Поисковый механизм на основе {@code LIKE} без индексов. Используется на H2 (профиль dev и тесты),
+ * где нет расширения {@code pg_trgm}. Товары ищутся одним запросом без {@code DISTINCT}.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnExpression(value = "#{'${app.search.engine:like}'.equals('like')}")
+public class LikeProductSearchEngine implements ProductSearchEngine {
+    private final ProductRepository productRepository;
+
+    @Override
+    public Page<Product> search(String search, Pageable pageable) {
+        return productRepository.searchByPattern(
+                ProductSearchEngine.toContainsPattern(search.toLowerCase(Locale.ROOT)), pageable);
+    }
+
+    @Override
+    public Slice<Product> searchSlice(String search, Pageable pageable) {
+        return productRepository.sliceByPattern(
+                ProductSearchEngine.toContainsPattern(search.toLowerCase(Locale.ROOT)), pageable);
+    }
+}
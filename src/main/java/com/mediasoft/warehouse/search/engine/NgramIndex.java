@@ -0,0 +1,537 @@
+package com.mediasoft.warehouse.search.engine;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Инвертированный триграммный индекс для поиска товаров по подстроке без учета регистра.
+ * <p>
+ * Каждому товару назначается внутренний номер документа. Для каждой триграммы хранится список номеров
+ * документов, закодированный разностями переменной длины в массиве байтов, поэтому большинство записей
+ * занимает один байт. Номера назначаются по возрастанию, и изменение товара добавляет его как новый документ,
+ * а старый помечается удаленным, поэтому списки только дописываются в конец.
+ * <p>
+ * Триграммы и товары находятся через хэш-таблицы с открытой адресацией на примитивных массивах:
+ * таблица триграмм хранит ключи и списки в параллельных массивах, а таблица товаров хранит только номера
+ * документов, по которым сверяются половины идентификатора. Поэтому на запись не создается ни объектов-оберток,
+ * ни узлов хэш-таблицы.
+ * <p>
+ * Текст документа хранится в UTF-8 в нижнем регистре, чтобы отбросить ложные совпадения триграмм
+ * проверкой вхождения строки поиска. Строки короче триграммы проверяются по всем документам.
+ * <p>
+ * Когда удаленных документов становится больше четверти, {@link #needsCompaction()} сообщает о необходимости
+ * перестроения. Перестроение разделено на быстрое копирование ссылок на живые документы
+ * {@link #prepareCompaction()} и построение нового индекса {@link Compaction#run()}, которое не обращается
+ * к исходному индексу и может выполняться без блокировки.
+ * <p>
+ * Экземпляр не потокобезопасен.
+ */
+public class NgramIndex {
+    private static final int GRAM = 3;
+    private static final char SEPARATOR = '\0';
+    private static final int MIN_COMPACTION_DELETES = 1024;
+    private static final int INITIAL_CAPACITY = 16;
+    // Ключ, ссылка на список и три счетчика в параллельных массивах таблицы триграмм
+    private static final long GRAM_SLOT_BYTES = 28;
+    // Заголовок массива списка триграммы
+    private static final long ARRAY_HEADER_BYTES = 16;
+    // Ссылка на текст, заголовок массива текста и две половины идентификатора
+    private static final long DOCUMENT_OVERHEAD_BYTES = 48;
+
+    private long[] gramKeys = new long[INITIAL_CAPACITY];
+    private byte[][] postingData = new byte[INITIAL_CAPACITY][];
+    private int[] postingLengths = new int[INITIAL_CAPACITY];
+    private int[] postingCounts = new int[INITIAL_CAPACITY];
+    private int[] postingLast = new int[INITIAL_CAPACITY];
+    private int gramCount;
+
+    // Номер документа, увеличенный на единицу; ноль обозначает пустую ячейку
+    private int[] documentSlots = new int[INITIAL_CAPACITY];
+    private long[] mostSignificantBits = new long[INITIAL_CAPACITY];
+    private long[] leastSignificantBits = new long[INITIAL_CAPACITY];
+    private byte[][] texts = new byte[INITIAL_CAPACITY][];
+    private final BitSet deleted = new BitSet();
+    private int documentCount;
+    private int liveCount;
+    private int deletedCount;
+    private long textBytes;
+    private long postingBytes;
+
+    /**
+     * Добавляет товар в индекс или заменяет ранее добавленный.
+     *
+     * @param id     идентификатор товара
+     * @param fields индексируемые поля товара
+     */
+    public void put(UUID id, String... fields) {
+        final StringBuilder text = new StringBuilder();
+        for (String field : fields) {
+            if (field != null) {
+                if (text.length() > 0) {
+                    text.append(SEPARATOR);
+                }
+                text.append(field.toLowerCase(Locale.ROOT));
+            }
+        }
+        final String lowerCase = text.toString();
+        markDeleted(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        addDocument(id.getMostSignificantBits(), id.getLeastSignificantBits(),
+                lowerCase.getBytes(StandardCharsets.UTF_8), lowerCase);
+    }
+
+    /**
+     * Удаляет товар из индекса.
+     *
+     * @param id идентификатор товара
+     */
+    public void remove(UUID id) {
+        markDeleted(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    /**
+     * Находит товары, поля которых содержат строку поиска без учета регистра.
+     *
+     * @param search строка поиска
+     * @return идентификаторы найденных товаров в порядке их добавления в индекс
+     */
+    public List<UUID> search(String search) {
+        final String query = search.toLowerCase(Locale.ROOT);
+        final byte[] pattern = query.getBytes(StandardCharsets.UTF_8);
+        final int[] candidates = findCandidates(query);
+
+        final List<UUID> result = new ArrayList<>();
+        for (int document : candidates) {
+            if (!deleted.get(document) && contains(texts[document], pattern)) {
+                result.add(new UUID(mostSignificantBits[document], leastSignificantBits[document]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Получает количество товаров в индексе.
+     *
+     * @return количество товаров
+     */
+    public int size() {
+        return liveCount;
+    }
+
+    /**
+     * Оценивает объем памяти кучи, занимаемый индексом.
+     *
+     * @return оценка объема памяти в байтах
+     */
+    public long estimateBytes() {
+        return textBytes + postingBytes
+                + (long) texts.length * DOCUMENT_OVERHEAD_BYTES
+                + (long) documentSlots.length * Integer.BYTES
+                + (long) gramKeys.length * GRAM_SLOT_BYTES
+                + (long) gramCount * ARRAY_HEADER_BYTES;
+    }
+
+    /**
+     * Проверяет, накопилось ли столько удаленных документов, что индекс стоит перестроить.
+     *
+     * @return true, если индекс требует перестроения
+     */
+    public boolean needsCompaction() {
+        return deletedCount >= MIN_COMPACTION_DELETES && deletedCount * 4 >= documentCount;
+    }
+
+    /**
+     * Копирует ссылки на живые документы для перестроения индекса. Тексты документов не изменяются
+     * после добавления, поэтому перестроение может выполняться параллельно с дальнейшими изменениями индекса.
+     *
+     * @return перестроение индекса по текущим живым документам
+     */
+    public Compaction prepareCompaction() {
+        final long[] liveMostSignificantBits = new long[liveCount];
+        final long[] liveLeastSignificantBits = new long[liveCount];
+        final byte[][] liveTexts = new byte[liveCount][];
+        int count = 0;
+        for (int document = 0; document < documentCount; document++) {
+            if (texts[document] != null) {
+                liveMostSignificantBits[count] = mostSignificantBits[document];
+                liveLeastSignificantBits[count] = leastSignificantBits[document];
+                liveTexts[count] = texts[document];
+                count++;
+            }
+        }
+        return new Compaction(liveMostSignificantBits, liveLeastSignificantBits, liveTexts);
+    }
+
+    /**
+     * Находит документы, содержащие все триграммы строки поиска.
+     *
+     * @param query строка поиска в нижнем регистре
+     * @return возрастающие номера документов-кандидатов
+     */
+    private int[] findCandidates(String query) {
+        final long[] grams = grams(query);
+        if (grams.length == 0) {
+            final int[] all = new int[documentCount];
+            Arrays.setAll(all, document -> document);
+            return all;
+        }
+
+        final int[] slots = new int[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            slots[i] = gramSlot(grams[i]);
+            if (postingData[slots[i]] == null) {
+                return new int[0];
+            }
+        }
+        // Пересечение начинается с самого короткого списка
+        for (int i = 1; i < slots.length; i++) {
+            final int slot = slots[i];
+            int j = i - 1;
+            while (j >= 0 && postingCounts[slots[j]] > postingCounts[slot]) {
+                slots[j + 1] = slots[j];
+                j--;
+            }
+            slots[j + 1] = slot;
+        }
+
+        int[] candidates = decode(slots[0]);
+        for (int i = 1; i < slots.length && candidates.length > 0; i++) {
+            candidates = intersect(candidates, decode(slots[i]));
+        }
+        return candidates;
+    }
+
+    /**
+     * Добавляет документ в конец индекса.
+     *
+     * @param mostSignificantBit  старшая половина идентификатора товара
+     * @param leastSignificantBit младшая половина идентификатора товара
+     * @param bytes               текст документа в нижнем регистре в UTF-8
+     * @param text                текст документа в нижнем регистре
+     */
+    private void addDocument(long mostSignificantBit, long leastSignificantBit, byte[] bytes, String text) {
+        if (documentCount == texts.length) {
+            final int capacity = texts.length * 2;
+            mostSignificantBits = Arrays.copyOf(mostSignificantBits, capacity);
+            leastSignificantBits = Arrays.copyOf(leastSignificantBits, capacity);
+            texts = Arrays.copyOf(texts, capacity);
+        }
+        final int document = documentCount++;
+        mostSignificantBits[document] = mostSignificantBit;
+        leastSignificantBits[document] = leastSignificantBit;
+        texts[document] = bytes;
+        textBytes += bytes.length;
+
+        if ((liveCount + 1) * 2 > documentSlots.length) {
+            resizeDocuments();
+        }
+        documentSlots[documentSlot(mostSignificantBit, leastSignificantBit)] = document + 1;
+        liveCount++;
+
+        for (long gram : grams(text)) {
+            addPosting(gram, document);
+        }
+    }
+
+    /**
+     * Помечает документ товара удаленным.
+     *
+     * @param mostSignificantBit  старшая половина идентификатора товара
+     * @param leastSignificantBit младшая половина идентификатора товара
+     */
+    private void markDeleted(long mostSignificantBit, long leastSignificantBit) {
+        final int slot = documentSlot(mostSignificantBit, leastSignificantBit);
+        if (documentSlots[slot] == 0) {
+            return;
+        }
+        final int document = documentSlots[slot] - 1;
+        removeDocumentSlot(slot);
+        liveCount--;
+        deleted.set(document);
+        deletedCount++;
+        textBytes -= texts[document].length;
+        texts[document] = null;
+    }
+
+    /**
+     * Находит ячейку таблицы товаров, занятую товаром, или пустую ячейку для его добавления.
+     *
+     * @param mostSignificantBit  старшая половина идентификатора товара
+     * @param leastSignificantBit младшая половина идентификатора товара
+     * @return номер ячейки
+     */
+    private int documentSlot(long mostSignificantBit, long leastSignificantBit) {
+        final int mask = documentSlots.length - 1;
+        int slot = mix(mostSignificantBit ^ leastSignificantBit) & mask;
+        while (documentSlots[slot] != 0) {
+            final int document = documentSlots[slot] - 1;
+            if (mostSignificantBits[document] == mostSignificantBit
+                    && leastSignificantBits[document] == leastSignificantBit) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Освобождает ячейку таблицы товаров, сдвигая назад следующие за ней записи той же цепочки.
+     *
+     * @param slot номер освобождаемой ячейки
+     */
+    private void removeDocumentSlot(int slot) {
+        final int mask = documentSlots.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (documentSlots[next] != 0) {
+            final int document = documentSlots[next] - 1;
+            final int home = mix(mostSignificantBits[document] ^ leastSignificantBits[document]) & mask;
+            // Запись переносится, если освобожденная ячейка лежит между ее исходной и текущей позициями
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                documentSlots[hole] = documentSlots[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        documentSlots[hole] = 0;
+    }
+
+    /**
+     * Удваивает таблицу товаров.
+     */
+    private void resizeDocuments() {
+        final int[] oldSlots = documentSlots;
+        documentSlots = new int[oldSlots.length * 2];
+        for (int value : oldSlots) {
+            if (value != 0) {
+                final int document = value - 1;
+                documentSlots[documentSlot(mostSignificantBits[document], leastSignificantBits[document])] = value;
+            }
+        }
+    }
+
+    /**
+     * Находит ячейку таблицы триграмм, занятую триграммой, или пустую ячейку для ее добавления.
+     *
+     * @param gram ключ триграммы
+     * @return номер ячейки
+     */
+    private int gramSlot(long gram) {
+        final int mask = gramKeys.length - 1;
+        int slot = mix(gram) & mask;
+        while (postingData[slot] != null && gramKeys[slot] != gram) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Дописывает номер документа, больший всех ранее добавленных, в список триграммы.
+     *
+     * @param gram     ключ триграммы
+     * @param document номер документа
+     */
+    private void addPosting(long gram, int document) {
+        int slot = gramSlot(gram);
+        if (postingData[slot] == null) {
+            if ((gramCount + 1) * 2 > gramKeys.length) {
+                resizeGrams();
+                slot = gramSlot(gram);
+            }
+            gramKeys[slot] = gram;
+            postingData[slot] = new byte[4];
+            postingLast[slot] = -1;
+            postingBytes += 4;
+            gramCount++;
+        }
+
+        byte[] data = postingData[slot];
+        int length = postingLengths[slot];
+        if (length + 5 > data.length) {
+            postingBytes -= data.length;
+            data = Arrays.copyOf(data, Math.max(data.length * 3 / 2, length + 5));
+            postingData[slot] = data;
+            postingBytes += data.length;
+        }
+        int delta = document - postingLast[slot];
+        while ((delta & ~0x7F) != 0) {
+            data[length++] = (byte) ((delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+        data[length++] = (byte) delta;
+        postingLengths[slot] = length;
+        postingLast[slot] = document;
+        postingCounts[slot]++;
+    }
+
+    /**
+     * Удваивает таблицу триграмм.
+     */
+    private void resizeGrams() {
+        final long[] oldKeys = gramKeys;
+        final byte[][] oldData = postingData;
+        final int[] oldLengths = postingLengths;
+        final int[] oldCounts = postingCounts;
+        final int[] oldLast = postingLast;
+
+        final int capacity = oldKeys.length * 2;
+        gramKeys = new long[capacity];
+        postingData = new byte[capacity][];
+        postingLengths = new int[capacity];
+        postingCounts = new int[capacity];
+        postingLast = new int[capacity];
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            if (oldData[oldSlot] != null) {
+                final int slot = gramSlot(oldKeys[oldSlot]);
+                gramKeys[slot] = oldKeys[oldSlot];
+                postingData[slot] = oldData[oldSlot];
+                postingLengths[slot] = oldLengths[oldSlot];
+                postingCounts[slot] = oldCounts[oldSlot];
+                postingLast[slot] = oldLast[oldSlot];
+            }
+        }
+    }
+
+    /**
+     * Декодирует номера документов списка триграммы.
+     *
+     * @param slot номер ячейки триграммы
+     * @return возрастающий массив номеров документов
+     */
+    private int[] decode(int slot) {
+        final byte[] data = postingData[slot];
+        final int[] documents = new int[postingCounts[slot]];
+        int position = 0;
+        int document = -1;
+        for (int i = 0; i < documents.length; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = data[position++];
+                delta |= (current & 0x7F) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+            document += delta;
+            documents[i] = document;
+        }
+        return documents;
+    }
+
+    /**
+     * Выделяет различные триграммы строки, не пересекающие границы полей.
+     *
+     * @param text строка
+     * @return возрастающие ключи триграмм
+     */
+    private static long[] grams(String text) {
+        final long[] grams = new long[Math.max(0, text.length() - GRAM + 1)];
+        int count = 0;
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            final char first = text.charAt(i);
+            final char second = text.charAt(i + 1);
+            final char third = text.charAt(i + 2);
+            if (first != SEPARATOR && second != SEPARATOR && third != SEPARATOR) {
+                grams[count++] = ((long) first << 32) | ((long) second << 16) | third;
+            }
+        }
+        Arrays.sort(grams, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || grams[distinct - 1] != grams[i]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    /**
+     * Перемешивает биты ключа для хэш-таблиц.
+     *
+     * @param value ключ
+     * @return хэш ключа
+     */
+    private static int mix(long value) {
+        final long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Пересекает возрастающие массивы номеров документов.
+     *
+     * @param first  первый массив
+     * @param second второй массив
+     * @return возрастающий массив общих номеров
+     */
+    private static int[] intersect(int[] first, int[] second) {
+        final int[] result = new int[Math.min(first.length, second.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Проверяет вхождение последовательности байтов в текст документа.
+     *
+     * @param text    текст документа в UTF-8
+     * @param pattern строка поиска в UTF-8
+     * @return true, если текст содержит строку поиска
+     */
+    private static boolean contains(byte[] text, byte[] pattern) {
+        outer:
+        for (int i = 0; i + pattern.length <= text.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (text[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Перестроение индекса по живым документам, скопированным из исходного индекса.
+     */
+    public static final class Compaction {
+        private final long[] mostSignificantBits;
+        private final long[] leastSignificantBits;
+        private final byte[][] texts;
+
+        private Compaction(long[] mostSignificantBits, long[] leastSignificantBits, byte[][] texts) {
+            this.mostSignificantBits = mostSignificantBits;
+            this.leastSignificantBits = leastSignificantBits;
+            this.texts = texts;
+        }
+
+        /**
+         * Строит новый индекс с перенумерацией документов без удаленных.
+         *
+         * @return перестроенный индекс
+         */
+        public NgramIndex run() {
+            final NgramIndex compacted = new NgramIndex();
+            for (int i = 0; i < texts.length; i++) {
+                compacted.addDocument(mostSignificantBits[i], leastSignificantBits[i], texts[i],
+                        new String(texts[i], StandardCharsets.UTF_8));
+            }
+            return compacted;
+        }
+    }
+}
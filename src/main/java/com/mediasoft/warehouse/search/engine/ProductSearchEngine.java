@@ -0,0 +1,40 @@
+package com.mediasoft.warehouse.search.engine;
+
+import com.mediasoft.warehouse.model.Product;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+/**
+ * Поисковый механизм товаров по подстроке в названии, артикуле или описании.
+ * Реализация выбирается параметром {@code app.search.engine}.
+ */
+public interface ProductSearchEngine {
+    /**
+     * Найти товары, название, артикул или описание которых содержит строку поиска без учета регистра.
+     *
+     * @param search   Строка поиска.
+     * @param pageable Информация о пагинации.
+     * @return Страница найденных товаров.
+     */
+    Page<Product> search(String search, Pageable pageable);
+
+    /**
+     * Найти товары так же, как {@link #search(String, Pageable)}, но без подсчета общего количества.
+     *
+     * @param search   Строка поиска.
+     * @param pageable Информация о пагинации.
+     * @return Часть найденных товаров с признаком наличия следующей части.
+     */
+    Slice<Product> searchSlice(String search, Pageable pageable);
+
+    /**
+     * Преобразует строку поиска в шаблон LIKE, экранируя специальные символы.
+     *
+     * @param search Строка поиска.
+     * @return Шаблон вида {@code %search%} с экранированными символами {@code \}, {@code %} и {@code _}.
+     */
+    static String toContainsPattern(String search) {
+        return "%" + search.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+}
@@ -0,0 +1,37 @@
+package com.mediasoft.warehouse.search.engine;
+
+import com.mediasoft.warehouse.model.Product;
+import com.mediasoft.warehouse.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+/**
+ * Поисковый механизм на основе триграммных GIN-индексов PostgreSQL ({@code pg_trgm}).
+ * Условия {@code ILIKE} по названию, артикулу и описанию выполняются через объединение
+ * сканирований индексов вместо последовательного чтения таблицы,
+ * а результаты упорядочиваются по триграммному сходству со строкой поиска.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnExpression(value = "#{'${app.search.engine:like}'.equals('trigram')}")
+public class TrigramProductSearchEngine implements ProductSearchEngine {
+    private final ProductRepository productRepository;
+
+    @Override
+    public Page<Product> search(String search, Pageable pageable) {
+        // Порядок задается сходством в запросе, поэтому сортировка из pageable не используется
+        return productRepository.searchByTrigram(search, ProductSearchEngine.toContainsPattern(search),
+                PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()));
+    }
+
+    @Override
+    public Slice<Product> searchSlice(String search, Pageable pageable) {
+        return productRepository.sliceByTrigram(search, ProductSearchEngine.toContainsPattern(search),
+                PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()));
+    }
+}
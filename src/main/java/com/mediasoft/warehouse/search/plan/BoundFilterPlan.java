@@ -0,0 +1,12 @@
+package com.mediasoft.warehouse.search.plan;
+
+import java.util.List;
+
+/**
+ * План фильтрации товаров со значениями параметров конкретного запроса.
+ *
+ * @param plan       скомпилированный план
+ * @param parameters значения параметров {@code :p0, :p1, ...} в порядке номеров
+ */
+public record BoundFilterPlan(FilterPlan plan, List<Object> parameters) {
+}
@@ -0,0 +1,113 @@
+package com.mediasoft.warehouse.search.plan;
+
+import com.mediasoft.warehouse.dto.ViewProductDto;
+import com.mediasoft.warehouse.model.enums.FieldName;
+import org.springframework.data.domain.Sort;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Скомпилированный план фильтрации товаров для одной формы запроса: набора полей и операций фильтров.
+ * Условие содержит только именованные параметры {@code :p0, :p1, ...}, поэтому текст запроса одинаков
+ * для всех запросов одной формы. Hibernate разбирает такой запрос один раз и берет его из кэша планов,
+ * а драйвер бд получает один и тот же SQL и может повторно использовать подготовленный запрос.
+ *
+ * @param shape       форма запроса
+ * @param whereClause условие JPQL или пустая строка, если фильтров нет
+ * @param indexed     может ли бд использовать индекс хотя бы для одного условия
+ */
+public record FilterPlan(String shape, String whereClause, boolean indexed) {
+    /**
+     * Имя параметра множителя цены в запросе выборки DTO.
+     */
+    public static final String PRICE_FACTOR_PARAMETER = "priceFactor";
+    /**
+     * Выражение JPQL множителя цены с явным типом. Без приведения Hibernate передает в SQL тип параметра
+     * с неразрешенными точностью и масштабом ({@code numeric($p,$s)}), который не принимает H2.
+     */
+    public static final String PRICE_FACTOR_EXPRESSION = "CAST(:" + PRICE_FACTOR_PARAMETER + " AS BigDecimal(38, 10))";
+    private static final int PRICE_SCALE = 2;
+    private static final Set<String> SORTABLE_ATTRIBUTES = Arrays.stream(FieldName.values())
+            .map(FieldName::getAttribute)
+            .collect(Collectors.toUnmodifiableSet());
+
+    /**
+     * Возвращает запрос JPQL выборки товаров с заданной сортировкой.
+     *
+     * @param sort сортировка
+     * @return запрос выборки
+     * @throws IllegalArgumentException если сортировка задана по неизвестному полю
+     */
+    public String selectQuery(Sort sort) {
+        return query("SELECT p", sort);
+    }
+
+    /**
+     * Возвращает запрос JPQL выборки {@link ViewProductDto} с заданной сортировкой.
+     * Выбираются только поля DTO, а цена умножается на параметр {@value #PRICE_FACTOR_PARAMETER}
+     * и округляется в бд, поэтому сущности товаров не создаются и не попадают в контекст постоянства.
+     *
+     * @param sort сортировка
+     * @return запрос выборки DTO
+     * @throws IllegalArgumentException если сортировка задана по неизвестному полю
+     */
+    public String viewQuery(Sort sort) {
+        return query("SELECT new " + ViewProductDto.class.getName() + "(p.id, p.name, p.article, p.description, "
+                + "p.category, ROUND(p.price * " + PRICE_FACTOR_EXPRESSION + ", " + PRICE_SCALE + "), p.quantity, "
+                + "p.lastQuantityChangeDate, p.createdDate, p.isAvailable)", sort);
+    }
+
+    /**
+     * Возвращает запрос JPQL подсчета товаров, сгруппированных по категории, доступности и номеру ценового
+     * диапазона. Выражение номера диапазона повторяется в разделе GROUP BY, поэтому оно должно содержать
+     * только литералы, а не параметры.
+     *
+     * @param bucketExpression выражение JPQL номера ценового диапазона товара {@code p}
+     * @return запрос подсчета, возвращающий категорию, доступность, номер диапазона и количество
+     */
+    public String facetQuery(String bucketExpression) {
+        return "SELECT p.category, p.isAvailable, " + bucketExpression + ", count(p) FROM Product p" + where()
+                + " GROUP BY p.category, p.isAvailable, " + bucketExpression;
+    }
+
+    /**
+     * Возвращает запрос JPQL подсчета товаров.
+     *
+     * @return запрос подсчета
+     */
+    public String countQuery() {
+        return "SELECT count(p) FROM Product p" + where();
+    }
+
+    /**
+     * Собирает запрос JPQL выборки товаров.
+     *
+     * @param select раздел SELECT
+     * @param sort   сортировка
+     * @return запрос выборки
+     * @throws IllegalArgumentException если сортировка задана по неизвестному полю
+     */
+    private String query(String select, Sort sort) {
+        final StringBuilder query = new StringBuilder(select).append(" FROM Product p").append(where());
+        String separator = " ORDER BY ";
+        for (Sort.Order order : sort) {
+            if (!SORTABLE_ATTRIBUTES.contains(order.getProperty())) {
+                throw new IllegalArgumentException("Can't sort products by " + order.getProperty());
+            }
+            query.append(separator).append("p.").append(order.getProperty()).append(' ').append(order.getDirection());
+            separator = ", ";
+        }
+        return query.toString();
+    }
+
+    /**
+     * Возвращает раздел WHERE запроса.
+     *
+     * @return раздел WHERE или пустая строка
+     */
+    private String where() {
+        return whereClause.isEmpty() ? "" : " WHERE " + whereClause;
+    }
+}
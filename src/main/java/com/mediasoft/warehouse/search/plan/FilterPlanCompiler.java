@@ -0,0 +1,361 @@
+package com.mediasoft.warehouse.search.plan;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mediasoft.warehouse.error.exception.CompareWithStringException;
+import com.mediasoft.warehouse.model.enums.FieldName;
+import com.mediasoft.warehouse.model.enums.OperationType;
+import com.mediasoft.warehouse.model.enums.ProductCategory;
+import com.mediasoft.warehouse.search.AbstractProductFilter;
+import com.mediasoft.warehouse.search.StringProductFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Компилятор списка фильтров товаров в план запроса {@link FilterPlan}.
+ * <p>
+ * Фильтры упорядочиваются по полю и операции, поэтому списки, отличающиеся только порядком фильтров,
+ * имеют одну форму. План строится один раз для каждой формы и хранится в кэше, а для запроса
+ * вычисляются только значения параметров. Условия совпадают с условиями спецификаций фильтров.
+ * <p>
+ * Если {@code app.search.filter.reject-unindexed} включен, непустые наборы фильтров, ни одно условие
+ * которых не может использовать индекс, отклоняются вместо полного чтения таблицы.
+ * Условия {@code LIKE} по названию, артикулу и описанию считаются индексируемыми только при триграммных
+ * индексах ({@code app.search.engine: trigram}).
+ * <p>
+ * Список значений операции "in" передается одним параметром, поэтому план не зависит от количества значений.
+ * <p>
+ * Фильтры по цене могут задаваться в валюте, отличной от хранимой. Тогда их значения делятся на множитель цены
+ * при вычислении параметров, а условие сравнивает столбец цены без вычислений и может использовать индекс.
+ */
+@Component
+public class FilterPlanCompiler {
+    private static final int PRICE_FACTOR_SCALE = 10;
+    private static final Comparator<AbstractProductFilter<?>> CANONICAL_ORDER =
+            Comparator.<AbstractProductFilter<?>, FieldName>comparing(AbstractProductFilter::getField)
+                    .thenComparing(AbstractProductFilter::getOperation);
+
+    private final boolean rejectUnindexed;
+    private final boolean trigramIndexes;
+    private final Cache<String, FilterPlan> plans;
+
+    /**
+     * Конструктор для создания компилятора.
+     *
+     * @param rejectUnindexed отклонять ли наборы фильтров, которые не могут использовать индекс
+     * @param trigramIndexes  есть ли триграммные индексы по названию, артикулу и описанию
+     * @param planCacheSize   максимальное количество хранимых планов
+     */
+    public FilterPlanCompiler(@Value("${app.search.filter.reject-unindexed:false}") boolean rejectUnindexed,
+                              @Value("#{'${app.search.engine:like}'.equals('trigram')}") boolean trigramIndexes,
+                              @Value("${app.search.filter.plan-cache-size:500}") long planCacheSize) {
+        this.rejectUnindexed = rejectUnindexed;
+        this.trigramIndexes = trigramIndexes;
+        this.plans = Caffeine.newBuilder().maximumSize(planCacheSize).build();
+    }
+
+    /**
+     * Компилирует список фильтров в план запроса со значениями параметров.
+     * Значения фильтров по цене сравниваются с ценами в бд без пересчета.
+     *
+     * @param filters список фильтров товаров
+     * @return план запроса со значениями параметров
+     * @throws IllegalArgumentException   если набор фильтров не может использовать индекс и такие наборы
+     *                                    отклоняются, или если параметр фильтра не соответствует полю
+     * @throws CompareWithStringException если строковый фильтр задан для нестрокового поля
+     */
+    public BoundFilterPlan compile(List<AbstractProductFilter<?>> filters) {
+        return compile(filters, BigDecimal.ONE);
+    }
+
+    /**
+     * Компилирует список фильтров в план запроса со значениями параметров.
+     *
+     * @param filters     список фильтров товаров
+     * @param priceFactor множитель, переводящий цену в бд в цену, в которой заданы фильтры по цене
+     * @return план запроса со значениями параметров
+     * @throws IllegalArgumentException   если набор фильтров не может использовать индекс и такие наборы
+     *                                    отклоняются, или если параметр фильтра не соответствует полю
+     * @throws CompareWithStringException если строковый фильтр задан для нестрокового поля
+     */
+    public BoundFilterPlan compile(List<AbstractProductFilter<?>> filters, BigDecimal priceFactor) {
+        final List<AbstractProductFilter<?>> normalized = filters.stream().sorted(CANONICAL_ORDER).toList();
+        final String shape = normalized.stream()
+                .map(filter -> filter.getField() + " " + filter.getOperation().getCode())
+                .collect(Collectors.joining(", "));
+        final FilterPlan plan = plans.get(shape, key -> build(key, normalized));
+        if (rejectUnindexed && !plan.indexed()) {
+            throw new IllegalArgumentException("Filter combination [" + shape + "] can't use an index");
+        }
+
+        final List<Object> parameters = new ArrayList<>();
+        for (AbstractProductFilter<?> filter : normalized) {
+            bind(filter, priceFactor, parameters);
+        }
+        return new BoundFilterPlan(plan, parameters);
+    }
+
+    /**
+     * Строит план для формы запроса.
+     *
+     * @param shape   форма запроса
+     * @param filters упорядоченный список фильтров
+     * @return план запроса
+     */
+    private FilterPlan build(String shape, List<AbstractProductFilter<?>> filters) {
+        final int[] nextParameter = {0};
+        final Supplier<String> parameter = () -> ":p" + nextParameter[0]++;
+        final List<String> clauses = new ArrayList<>();
+        boolean indexed = filters.isEmpty();
+        for (AbstractProductFilter<?> filter : filters) {
+            clauses.add(clause(filter.getField(), filter.getOperation(), parameter));
+            indexed |= isIndexed(filter.getField(), filter.getOperation());
+        }
+        return new FilterPlan(shape, String.join(" AND ", clauses), indexed);
+    }
+
+    /**
+     * Возвращает условие JPQL для поля и операции.
+     *
+     * @param field     поле
+     * @param operation операция
+     * @param parameter источник имен параметров
+     * @return условие JPQL
+     */
+    private static String clause(FieldName field, OperationType operation, Supplier<String> parameter) {
+        final String path = "p." + field.getAttribute();
+        if (operation == OperationType.IN) {
+            return path + " IN " + parameter.get();
+        }
+        if (operation == OperationType.BETWEEN) {
+            return path + " BETWEEN " + parameter.get() + " AND " + parameter.get();
+        }
+        return switch (field) {
+            case NAME, ARTICLE, DESCRIPTION -> path + (operation == OperationType.EQUAL ? " = " : " LIKE ")
+                    + parameter.get();
+            case ID, CATEGORY -> operation == OperationType.EQUAL
+                    ? path + " = " + parameter.get()
+                    : "CAST(" + path + " AS String) LIKE " + parameter.get();
+            case PRICE, QUANTITY, LAST_QUANTITY_CHANGE_DATE, CREATED_DATE -> switch (operation) {
+                case LIKE -> path + " BETWEEN " + parameter.get() + " AND " + parameter.get();
+                case GRATER_THAN_OR_EQ -> path + " >= " + parameter.get();
+                case LESS_THAN_OR_EQ -> path + " <= " + parameter.get();
+                case EQUAL -> field == FieldName.LAST_QUANTITY_CHANGE_DATE
+                        ? "(" + path + " >= " + parameter.get() + " AND " + path + " < " + parameter.get() + ")"
+                        : path + " = " + parameter.get();
+                case IN, BETWEEN -> throw new IllegalStateException("Unexpected operation " + operation);
+            };
+        };
+    }
+
+    /**
+     * Проверяет, может ли условие по полю и операции использовать индекс.
+     *
+     * @param field     поле
+     * @param operation операция
+     * @return true, если для условия есть подходящий индекс
+     */
+    private boolean isIndexed(FieldName field, OperationType operation) {
+        if (operation.isMultiValued()) {
+            return field != FieldName.DESCRIPTION;
+        }
+        return switch (field) {
+            case ID, CATEGORY -> operation == OperationType.EQUAL;
+            case NAME, ARTICLE -> operation == OperationType.EQUAL || trigramIndexes;
+            case DESCRIPTION -> operation != OperationType.EQUAL && trigramIndexes;
+            case PRICE, QUANTITY, LAST_QUANTITY_CHANGE_DATE, CREATED_DATE -> true;
+        };
+    }
+
+    /**
+     * Вычисляет значения параметров условия фильтра в порядке их появления в условии.
+     *
+     * @param filter      фильтр
+     * @param priceFactor множитель цены
+     * @param parameters  список значений параметров, в который добавляются значения
+     */
+    private static void bind(AbstractProductFilter<?> filter, BigDecimal priceFactor, List<Object> parameters) {
+        final OperationType operation = filter.getOperation();
+        if (operation.isMultiValued()) {
+            bindValues(filter, priceFactor, parameters);
+            return;
+        }
+        switch (filter.getField()) {
+            case NAME, ARTICLE, DESCRIPTION -> {
+                final String value = searchParam(filter, String.class);
+                parameters.add(operation == OperationType.EQUAL ? value : pattern(operation, value));
+            }
+            case CATEGORY -> {
+                final String value = searchParam(filter, String.class);
+                parameters.add(operation == OperationType.EQUAL
+                        ? ProductCategory.valueOf(value)
+                        : pattern(operation, value));
+            }
+            case ID -> {
+                final UUID value = searchParam(filter, UUID.class);
+                parameters.add(operation == OperationType.EQUAL ? value : pattern(operation, value.toString()));
+            }
+            case PRICE -> {
+                final BigDecimal value = toStoredPrice(searchParam(filter, BigDecimal.class), priceFactor);
+                if (operation == OperationType.LIKE) {
+                    final BigDecimal tenPercent = value.multiply(BigDecimal.valueOf(0.1));
+                    parameters.add(value.subtract(tenPercent));
+                    parameters.add(value.add(tenPercent));
+                } else {
+                    parameters.add(value);
+                }
+            }
+            case QUANTITY -> {
+                final Long value = searchParam(filter, Long.class);
+                if (operation == OperationType.LIKE) {
+                    final long tenPercent = (long) (value * 0.1);
+                    parameters.add(value - tenPercent);
+                    parameters.add(value + tenPercent);
+                } else {
+                    parameters.add(value);
+                }
+            }
+            case LAST_QUANTITY_CHANGE_DATE -> {
+                final LocalDateTime value = searchParam(filter, LocalDateTime.class);
+                if (operation == OperationType.LIKE) {
+                    parameters.add(value.minusDays(3));
+                    parameters.add(value.plusDays(3));
+                } else if (operation == OperationType.EQUAL) {
+                    final LocalDateTime dayStart = value.toLocalDate().atStartOfDay();
+                    parameters.add(dayStart);
+                    parameters.add(dayStart.plusDays(1));
+                } else {
+                    parameters.add(value);
+                }
+            }
+            case CREATED_DATE -> {
+                final LocalDate value = searchParam(filter, LocalDate.class);
+                if (operation == OperationType.LIKE) {
+                    parameters.add(value.minusDays(3));
+                    parameters.add(value.plusDays(3));
+                } else {
+                    parameters.add(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Вычисляет значения параметров условия фильтра с операцией "in" или "between".
+     * Список значений операции "in" передается одним параметром.
+     *
+     * @param filter      фильтр
+     * @param priceFactor множитель цены
+     * @param parameters  список значений параметров, в который добавляются значения
+     */
+    private static void bindValues(AbstractProductFilter<?> filter, BigDecimal priceFactor, List<Object> parameters) {
+        final FieldName field = filter.getField();
+        final Class<?> type = switch (field) {
+            case NAME, ARTICLE, DESCRIPTION, CATEGORY -> String.class;
+            case ID -> UUID.class;
+            case PRICE -> BigDecimal.class;
+            case QUANTITY -> Long.class;
+            case LAST_QUANTITY_CHANGE_DATE -> LocalDateTime.class;
+            case CREATED_DATE -> LocalDate.class;
+        };
+        List<?> values = searchParams(filter, type);
+        if (field == FieldName.PRICE) {
+            values = values.stream().map(value -> toStoredPrice((BigDecimal) value, priceFactor)).toList();
+        }
+        if (filter.getOperation() == OperationType.IN) {
+            parameters.add(field == FieldName.CATEGORY
+                    ? values.stream().map(value -> ProductCategory.valueOf((String) value)).toList()
+                    : values);
+        } else {
+            if (field == FieldName.CATEGORY) {
+                throw new IllegalArgumentException("Can't apply between to " + field.name());
+            }
+            parameters.add(values.get(0));
+            parameters.add(values.get(1));
+        }
+    }
+
+    /**
+     * Переводит цену из фильтра в цену, хранимую в бд.
+     *
+     * @param price       цена из фильтра
+     * @param priceFactor множитель цены
+     * @return цена в бд, соответствующая цене из фильтра
+     */
+    public static BigDecimal toStoredPrice(BigDecimal price, BigDecimal priceFactor) {
+        if (priceFactor.compareTo(BigDecimal.ONE) == 0) {
+            return price;
+        }
+        return price.divide(priceFactor, PRICE_FACTOR_SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Возвращает шаблон LIKE для строковой операции.
+     *
+     * @param operation операция
+     * @param value     строка поиска
+     * @return шаблон: вхождение, начало или окончание строки
+     */
+    private static String pattern(OperationType operation, String value) {
+        return switch (operation) {
+            case GRATER_THAN_OR_EQ -> value + "%";
+            case LESS_THAN_OR_EQ -> "%" + value;
+            default -> "%" + value + "%";
+        };
+    }
+
+    /**
+     * Возвращает параметр поиска фильтра, проверяя его тип.
+     *
+     * @param filter фильтр
+     * @param type   ожидаемый тип параметра поиска для поля фильтра
+     * @param <T>    ожидаемый тип
+     * @return параметр поиска
+     */
+    private static <T> T searchParam(AbstractProductFilter<?> filter, Class<T> type) {
+        if (!type.isInstance(filter.getSearchParam())) {
+            if (filter instanceof StringProductFilter) {
+                throw new CompareWithStringException(filter.getField().name());
+            }
+            throw new IllegalArgumentException("Can't compare " + filter.getField().name()
+                    + " to " + filter.getSearchParam());
+        }
+        return type.cast(filter.getSearchParam());
+    }
+
+    /**
+     * Возвращает параметры поиска фильтра с операцией "in" или "between", проверяя их количество и тип.
+     *
+     * @param filter фильтр
+     * @param type   ожидаемый тип параметров поиска для поля фильтра
+     * @param <T>    ожидаемый тип
+     * @return параметры поиска
+     */
+    private static <T> List<T> searchParams(AbstractProductFilter<?> filter, Class<T> type) {
+        final List<?> values = filter.getSearchParams();
+        if (!filter.isSearchParamPresent()) {
+            throw new IllegalArgumentException("Invalid " + filter.getOperation().getCode() + " values for "
+                    + filter.getField().name() + ": " + values);
+        }
+        for (Object value : values) {
+            if (!type.isInstance(value)) {
+                if (filter instanceof StringProductFilter) {
+                    throw new CompareWithStringException(filter.getField().name());
+                }
+                throw new IllegalArgumentException("Can't compare " + filter.getField().name() + " to " + value);
+            }
+        }
+        return values.stream().map(type::cast).toList();
+    }
+}
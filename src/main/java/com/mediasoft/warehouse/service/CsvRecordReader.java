@@ -0,0 +1,126 @@
+package com.mediasoft.warehouse.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Построчное чтение записей CSV по RFC 4180: значения в кавычках могут содержать запятые,
+ * переводы строк и удвоенные кавычки. Строки разделяются символами {@code \n} или {@code \r\n}.
+ * Записи читаются по одной, поэтому объем памяти не зависит от размера файла.
+ */
+public class CsvRecordReader {
+    private final Reader reader;
+    private int next = -2;
+    private int line = 1;
+    private int recordLine;
+
+    /**
+     * Конструктор для создания читателя.
+     *
+     * @param reader источник символов, рекомендуется буферизованный
+     */
+    public CsvRecordReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Читает следующую запись.
+     *
+     * @return значения полей записи или null, если записей больше нет
+     * @throws IOException              если произошла ошибка чтения
+     * @throws IllegalArgumentException если значение в кавычках не закрыто или после закрывающей кавычки
+     *                                  нет разделителя
+     */
+    public List<String> read() throws IOException {
+        int c = peek();
+        if (c == -1) {
+            return null;
+        }
+        recordLine = line;
+        final List<String> fields = new ArrayList<>();
+        final StringBuilder field = new StringBuilder();
+        while (true) {
+            c = take();
+            if (c == '"' && field.isEmpty()) {
+                readQuoted(field);
+                c = take();
+                if (c != ',' && c != '\n' && c != '\r' && c != -1) {
+                    throw new IllegalArgumentException("Unexpected character after closing quote: " + (char) c);
+                }
+            }
+            if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == '\r' || c == -1) {
+                if (c == '\r' && peek() == '\n') {
+                    take();
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * Получает номер строки, с которой начинается последняя запись, чтение которой начато.
+     *
+     * @return номер строки, начиная с единицы, или 0, если чтение записей не начато
+     */
+    public int getRecordLine() {
+        return recordLine;
+    }
+
+    /**
+     * Читает значение в кавычках после открывающей кавычки до закрывающей.
+     *
+     * @param field значение, в которое добавляются символы
+     * @throws IOException если произошла ошибка чтения
+     */
+    private void readQuoted(StringBuilder field) throws IOException {
+        while (true) {
+            final int c = take();
+            if (c == -1) {
+                throw new IllegalArgumentException("Unterminated quoted value");
+            }
+            if (c == '"') {
+                if (peek() != '"') {
+                    return;
+                }
+                take();
+            }
+            field.append((char) c);
+        }
+    }
+
+    /**
+     * Возвращает следующий символ, не читая его.
+     *
+     * @return символ или -1 в конце данных
+     * @throws IOException если произошла ошибка чтения
+     */
+    private int peek() throws IOException {
+        if (next == -2) {
+            next = reader.read();
+        }
+        return next;
+    }
+
+    /**
+     * Читает следующий символ.
+     *
+     * @return символ или -1 в конце данных
+     * @throws IOException если произошла ошибка чтения
+     */
+    private int take() throws IOException {
+        final int c = peek();
+        next = -2;
+        if (c == '\n' || c == '\r' && peek() != '\n') {
+            line++;
+        }
+        return c;
+    }
+}
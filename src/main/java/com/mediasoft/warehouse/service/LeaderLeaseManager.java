@@ -0,0 +1,271 @@
+package com.mediasoft.warehouse.service;
+
+import com.mediasoft.warehouse.error.exception.LeadershipLostException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Менеджер аренд лидерства, хранящихся в таблице {@code scheduler_lease}.
+ * Аренду захватывает экземпляр, первым обнаруживший ее отсутствие или истечение,
+ * и продлевает ее при каждом запуске и периодически во время выполнения задачи.
+ * При смене владельца токен ограждения увеличивается, а перед фиксацией изменений
+ * задача блокирует строку аренды и проверяет, что токен не изменился,
+ * поэтому бывший лидер, потерявший аренду во время работы, не может зафиксировать изменения.
+ * Запросы используют только переносимый SQL и работают как в H2, так и в PostgreSQL.
+ * Время истечения вычисляется по часам экземпляра, поэтому расхождение часов узлов
+ * должно быть существенно меньше длительности аренды.
+ */
+@Component
+@Slf4j
+public class LeaderLeaseManager {
+    /**
+     * Аренда запланированных задач обновления цен. Общая для всех режимов,
+     * поэтому узлы с разными режимами также не обновляют цены одновременно.
+     */
+    public static final String PRICING_LEASE = "pricing";
+    /**
+     * Аренда уплотнения эпох цен.
+     */
+    public static final String COMPACTION_LEASE = "price-epoch-compaction";
+
+    private static final String RENEW_QUERY = "UPDATE scheduler_lease SET expires_at = ?, heartbeat_at = ? " +
+            "WHERE name = ? AND owner = ? AND fencing_token = ?";
+    private static final String TAKE_OVER_QUERY = "UPDATE scheduler_lease " +
+            "SET owner = ?, fencing_token = fencing_token + 1, expires_at = ?, heartbeat_at = ? " +
+            "WHERE name = ? AND expires_at < ?";
+    private static final String INSERT_QUERY = "INSERT INTO scheduler_lease " +
+            "(name, owner, fencing_token, expires_at, heartbeat_at) VALUES (?, ?, 1, ?, ?)";
+    private static final String SELECT_TOKEN_QUERY =
+            "SELECT fencing_token FROM scheduler_lease WHERE name = ? AND owner = ?";
+    private static final String LOCK_QUERY =
+            "SELECT fencing_token FROM scheduler_lease WHERE name = ? AND owner = ? FOR UPDATE";
+    private static final String RELEASE_QUERY = "UPDATE scheduler_lease SET expires_at = ? " +
+            "WHERE name = ? AND owner = ? AND fencing_token = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final String nodeId;
+    private final Duration leaseDuration;
+    private final long heartbeatPeriod;
+    private final Map<String, Long> heldTokens = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "lease-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Конструктор для создания менеджера аренд.
+     *
+     * @param jdbcTemplate    шаблон для выполнения запросов к бд
+     * @param enabled         включено ли распределенное выполнение задач
+     * @param nodeId          идентификатор экземпляра приложения или пустая строка для автоматического
+     * @param leaseDuration   длительность аренды в миллисекундах
+     * @param heartbeatPeriod период продления аренды во время выполнения задачи в миллисекундах
+     */
+    public LeaderLeaseManager(JdbcTemplate jdbcTemplate,
+                              @Value("${app.scheduling.leader.enabled:true}") boolean enabled,
+                              @Value("${app.scheduling.leader.node-id:}") String nodeId,
+                              @Value("${app.scheduling.leader.lease-duration:180000}") long leaseDuration,
+                              @Value("${app.scheduling.leader.heartbeat-period:20000}") long heartbeatPeriod) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.nodeId = nodeId.isBlank() ? generateNodeId() : nodeId;
+        this.leaseDuration = Duration.ofMillis(leaseDuration);
+        this.heartbeatPeriod = heartbeatPeriod;
+    }
+
+    /**
+     * Проверяет, включено ли распределенное выполнение задач.
+     *
+     * @return true, если задачи выполняются только владельцем аренды
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Получает идентификатор экземпляра приложения.
+     *
+     * @return идентификатор экземпляра приложения
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Продлевает аренду, если экземпляр уже владеет ею, иначе пытается захватить
+     * отсутствующую или истекшую аренду.
+     *
+     * @param name название аренды
+     * @return токен ограждения или пустое значение, если аренда принадлежит другому экземпляру
+     */
+    public OptionalLong acquire(String name) {
+        final LocalDateTime now = LocalDateTime.now();
+        final Timestamp heartbeatAt = Timestamp.valueOf(now);
+        final Timestamp expiresAt = Timestamp.valueOf(now.plus(leaseDuration));
+
+        final Long heldToken = heldTokens.get(name);
+        if (heldToken != null
+                && jdbcTemplate.update(RENEW_QUERY, expiresAt, heartbeatAt, name, nodeId, heldToken) == 1) {
+            return OptionalLong.of(heldToken);
+        }
+        heldTokens.remove(name);
+
+        if (jdbcTemplate.update(TAKE_OVER_QUERY, nodeId, expiresAt, heartbeatAt, name, heartbeatAt) == 1) {
+            final List<Long> tokens = jdbcTemplate.queryForList(SELECT_TOKEN_QUERY, Long.class, name, nodeId);
+            if (tokens.isEmpty()) {
+                return OptionalLong.empty();
+            }
+            log.info("Node {} took over lease {} with fencing token {}", nodeId, name, tokens.get(0));
+            heldTokens.put(name, tokens.get(0));
+            return OptionalLong.of(tokens.get(0));
+        }
+
+        try {
+            jdbcTemplate.update(INSERT_QUERY, name, nodeId, expiresAt, heartbeatAt);
+        } catch (DuplicateKeyException exception) {
+            return OptionalLong.empty();
+        }
+        log.info("Node {} acquired new lease {}", nodeId, name);
+        heldTokens.put(name, 1L);
+        return OptionalLong.of(1L);
+    }
+
+    /**
+     * Запускает периодическое продление аренды на время выполнения задачи.
+     *
+     * @param name название аренды
+     * @return задача продления, которую нужно отменить по завершении выполнения
+     */
+    public ScheduledFuture<?> startHeartbeat(String name) {
+        return heartbeatExecutor.scheduleAtFixedRate(() -> heartbeat(name),
+                heartbeatPeriod, heartbeatPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Проверяет в текущей транзакции, что экземпляр по-прежнему владеет арендой,
+     * и блокирует строку аренды до конца транзакции, чтобы ее нельзя было захватить до фиксации.
+     * Используется задачами, работающими через транзакции Spring.
+     *
+     * @param name название аренды
+     * @throws LeadershipLostException если аренда перешла к другому экземпляру
+     */
+    public void checkLeadership(String name) {
+        if (!enabled) {
+            return;
+        }
+        final Long heldToken = heldTokens.get(name);
+        final List<Long> tokens = jdbcTemplate.queryForList(LOCK_QUERY, Long.class, name, nodeId);
+        if (heldToken == null || tokens.isEmpty() || !heldToken.equals(tokens.get(0))) {
+            throw new LeadershipLostException(name);
+        }
+    }
+
+    /**
+     * Проверяет в транзакции указанного соединения, что экземпляр по-прежнему владеет арендой,
+     * и блокирует строку аренды до конца транзакции, чтобы ее нельзя было захватить до фиксации.
+     *
+     * @param connection соединение с бд
+     * @param name       название аренды
+     * @throws SQLException            если произошла ошибка доступа к бд
+     * @throws LeadershipLostException если аренда перешла к другому экземпляру
+     */
+    public void checkLeadership(Connection connection, String name) throws SQLException {
+        if (!enabled) {
+            return;
+        }
+        final Long heldToken = heldTokens.get(name);
+        try (PreparedStatement statement = connection.prepareStatement(LOCK_QUERY)) {
+            statement.setString(1, name);
+            statement.setString(2, nodeId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (heldToken == null || !resultSet.next() || heldToken != resultSet.getLong("fencing_token")) {
+                    throw new LeadershipLostException(name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Освобождает удерживаемые аренды при остановке приложения,
+     * чтобы другой экземпляр мог захватить их без ожидания истечения.
+     */
+    @PreDestroy
+    public void releaseAll() {
+        heartbeatExecutor.shutdownNow();
+        final Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        heldTokens.forEach((name, token) -> {
+            try {
+                jdbcTemplate.update(RELEASE_QUERY, now, name, nodeId, token);
+                log.info("Node {} released lease {}", nodeId, name);
+            } catch (DataAccessException exception) {
+                log.warn("Failed to release lease {}", name, exception);
+            }
+        });
+        heldTokens.clear();
+    }
+
+    /**
+     * Продлевает удерживаемую аренду. Если аренда перешла к другому экземпляру,
+     * забывает ее токен, и следующая проверка лидерства завершится ошибкой.
+     *
+     * @param name название аренды
+     */
+    private void heartbeat(String name) {
+        final Long heldToken = heldTokens.get(name);
+        if (heldToken == null) {
+            return;
+        }
+        try {
+            final LocalDateTime now = LocalDateTime.now();
+            final int updated = jdbcTemplate.update(RENEW_QUERY, Timestamp.valueOf(now.plus(leaseDuration)),
+                    Timestamp.valueOf(now), name, nodeId, heldToken);
+            if (updated == 0) {
+                heldTokens.remove(name, heldToken);
+                log.warn("Node {} lost lease {} with fencing token {}", nodeId, name, heldToken);
+            }
+        } catch (DataAccessException exception) {
+            log.warn("Failed to renew lease {}", name, exception);
+        }
+    }
+
+    /**
+     * Формирует идентификатор экземпляра из имени хоста и случайного суффикса.
+     *
+     * @return идентификатор экземпляра
+     */
+    private static String generateNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException exception) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -3,7 +3,6 @@ package com.mediasoft.warehouse.service;
 import com.mediasoft.warehouse.dto.SaveOrderDto;
 import com.mediasoft.warehouse.dto.SaveOrderProductDto;
 import com.mediasoft.warehouse.dto.SaveOrderStatusDto;
-import com.mediasoft.warehouse.dto.SaveProductDto;
 import com.mediasoft.warehouse.dto.ViewCustomerFromOrderDto;
 import com.mediasoft.warehouse.dto.ViewOrderDto;
 import com.mediasoft.warehouse.dto.ViewOrderFromMapDto;
@@ -18,6 +17,7 @@ import com.mediasoft.warehouse.model.OrderProduct;
 import com.mediasoft.warehouse.model.OrderProductKey;
 import com.mediasoft.warehouse.model.Product;
 import com.mediasoft.warehouse.model.enums.OrderStatus;
+import com.mediasoft.warehouse.money.Money;
 import com.mediasoft.warehouse.repository.OrderRepository;
 import com.mediasoft.warehouse.service.account.AccountServiceClient;
 import com.mediasoft.warehouse.service.crm.CrmServiceClient;
@@ -49,6 +49,7 @@ public class OrderServiceImpl implements OrderService {
     private final ProductService productService;
     private final AccountServiceClient accountServiceClient;
     private final CrmServiceClient crmServiceClient;
+    private final PriceEpochProvider priceEpochProvider;
 
     /**
      * Получить заказ по идентификатору.
@@ -66,10 +67,11 @@ public class OrderServiceImpl implements OrderService {
         checkCustomerIdMatchers(order.getCustomer().getId(), customerIdHeader);
 
         List<ViewOrderProductDto> products = orderRepository.findViewOrderProductsByOrderId(orderId);
-        BigDecimal totalPrice = products.stream()
-                .map(product -> product.getFrozenPrice().multiply(BigDecimal.valueOf(product.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        return new ViewOrderDto(orderId, products, totalPrice);
+        Money totalPrice = Money.ZERO;
+        for (ViewOrderProductDto product : products) {
+            totalPrice = totalPrice.add(Money.of(product.getFrozenPrice()).multiply(product.getQuantity()));
+        }
+        return new ViewOrderDto(orderId, products, totalPrice.toBigDecimal());
     }
 
     /**
@@ -105,6 +107,7 @@ public class OrderServiceImpl implements OrderService {
         order.setDeliveryAddress(saveOrderDto.getDeliveryAddress());
         order.setProducts(new ArrayList<>());
         order.setCustomer(customerService.getCustomerById(customerId));
+        final BigDecimal multiplier = priceEpochProvider.lockMultiplier();
 
         Map<UUID, Long> productIdsAndQuantities = saveOrderDto.getProducts().stream()
                 .collect(Collectors.groupingBy(
@@ -123,7 +126,8 @@ public class OrderServiceImpl implements OrderService {
             if (currentProductCapacity < quantity) {
                 throw new NotEnoughProductException(productId, currentProductCapacity, quantity);
             }
-            final OrderProduct newOrderProduct = new OrderProduct(new OrderProductKey(order.getId(), productId), order, product, quantity, product.getPrice());
+            final OrderProduct newOrderProduct = new OrderProduct(new OrderProductKey(order.getId(), productId), order, product, quantity,
+                    priceEpochProvider.toEffectivePrice(product.getPrice(), multiplier));
             order.getProducts().add(newOrderProduct);
             product.setQuantity(currentProductCapacity - quantity);
         });
@@ -147,6 +151,7 @@ public class OrderServiceImpl implements OrderService {
         if (order.getStatus() != OrderStatus.CREATED) {
             throw new IncorrectOrderStatusException(order.getStatus().name());
         }
+        final BigDecimal multiplier = priceEpochProvider.lockMultiplier();
 
         Map<UUID, OrderProduct> orderProductsMap = order.getProducts().stream()
                 .collect(Collectors.toMap(op -> op.getProduct().getId(), Function.identity()));
@@ -171,11 +176,11 @@ public class OrderServiceImpl implements OrderService {
             OrderProduct updatedOrderProduct = orderProduct;
             if (orderProduct == null) {
                 updatedOrderProduct = new OrderProduct(new OrderProductKey(order.getId(), productId),
-                        order, product, quantity, product.getPrice());
+                        order, product, quantity, priceEpochProvider.toEffectivePrice(product.getPrice(), multiplier));
                 order.getProducts().add(updatedOrderProduct);
             } else {
                 updatedOrderProduct.setQuantity(updatedOrderProduct.getQuantity() + quantity);
-                updatedOrderProduct.setFrozenPrice(product.getPrice());
+                updatedOrderProduct.setFrozenPrice(priceEpochProvider.toEffectivePrice(product.getPrice(), multiplier));
             }
             product.setQuantity(currentProductCapacity - quantity);
         });
@@ -209,11 +214,8 @@ public class OrderServiceImpl implements OrderService {
             throw new IncorrectOrderStatusException(order.getStatus().name());
         }
         order.setStatus(OrderStatus.CANCELLED);
-        order.getProducts().forEach(orderProduct -> {
-            Product product = productService.getProductById(orderProduct.getProduct().getId());
-            product.setQuantity(product.getQuantity() + orderProduct.getQuantity());
-            productService.updateProduct(product.getId(), new SaveProductDto(product));
-        });
+        order.getProducts().forEach(orderProduct ->
+                productService.returnProduct(orderProduct.getProduct().getId(), orderProduct.getQuantity()));
         orderRepository.save(order);
     }
 
@@ -0,0 +1,193 @@
+package com.mediasoft.warehouse.service;
+
+import com.mediasoft.warehouse.model.PriceEpoch;
+import com.mediasoft.warehouse.repository.PriceEpochRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Optional;
+
+/**
+ * Поставщик текущего множителя цен в режиме ленивых эпох ({@code app.scheduling.mode: epoch}).
+ * Цена товара в таблице хранится как базовая, а фактическая цена получается
+ * умножением базовой цены на множитель последней эпохи.
+ * Вне режима эпох множитель всегда равен единице и база данных не опрашивается.
+ * <p>
+ * Версией эпохи служит ее идентификатор. Уплотнение меняет базовые цены и начинает эпоху с большей версией,
+ * поэтому закэшированный множитель пригоден только для отображения цен. Транзакции, которые сохраняют
+ * цены товаров или фиксируют их в заказах, получают множитель через {@link #lockMultiplier()}: он блокирует
+ * текущую эпоху до конца транзакции и не дает уплотнению изменить базовые цены между их чтением и записью.
+ * Фактические цены округляются до {@value #PRICE_SCALE} знаков по правилу {@link RoundingMode#HALF_UP},
+ * как и при уплотнении. Базовые цены хранятся с {@value #BASE_PRICE_SCALE} знаками, поэтому пока множитель
+ * меньше {@link #MAX_MULTIPLIER}, фактическая цена, пересчитанная из базовой, совпадает с сохраненной.
+ */
+@Component
+@RequiredArgsConstructor
+public class PriceEpochProvider {
+    /**
+     * Количество знаков после запятой базовых и фактических цен.
+     */
+    public static final int PRICE_SCALE = 2;
+    /**
+     * Количество знаков после запятой базовых цен в режиме эпох.
+     */
+    public static final int BASE_PRICE_SCALE = 10;
+    /**
+     * Верхняя граница множителя эпохи. Ошибка округления базовой цены, умноженная на меньший множитель,
+     * не превышает половины копейки, а сам множитель помещается в столбец {@code price_epoch.multiplier}.
+     */
+    public static final BigDecimal MAX_MULTIPLIER = new BigDecimal("1E8");
+
+    private final PriceEpochRepository priceEpochRepository;
+    @Value("#{'${app.scheduling.mode:none}'.equals('epoch')}")
+    private boolean enabled;
+    @Value("${app.scheduling.epoch.refresh-period:5000}")
+    private long refreshPeriod;
+
+    private volatile Snapshot snapshot = new Snapshot(0L, BigDecimal.ONE, 0L);
+
+    /**
+     * Проверяет, включен ли режим ленивых эпох.
+     *
+     * @return true, если цены хранятся как базовые и требуют применения множителя.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Получает множитель текущей эпохи. Значение кэшируется на период {@code app.scheduling.epoch.refresh-period}
+     * и используется только для отображения цен; для сохранения цен используется {@link #lockMultiplier()}.
+     *
+     * @return Множитель текущей эпохи.
+     */
+    public BigDecimal getMultiplier() {
+        if (!enabled) {
+            return BigDecimal.ONE;
+        }
+        Snapshot current = snapshot;
+        if (System.currentTimeMillis() - current.loadedAt() > refreshPeriod) {
+            current = refresh();
+        }
+        return current.multiplier();
+    }
+
+    /**
+     * Перечитывает множитель текущей эпохи из базы данных.
+     *
+     * @return Закэшированная эпоха после обновления.
+     */
+    public Snapshot refresh() {
+        final Optional<PriceEpoch> latest = priceEpochRepository.findFirstByOrderByIdDesc();
+        return update(latest.map(PriceEpoch::getId).orElse(0L),
+                latest.map(PriceEpoch::getMultiplier).orElse(BigDecimal.ONE));
+    }
+
+    /**
+     * Перечитывает множитель текущей эпохи после фиксации текущей транзакции,
+     * чтобы не закэшировать эпоху, которая может быть откачена.
+     * Вне транзакции множитель перечитывается сразу.
+     */
+    public void refreshAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refresh();
+            }
+        });
+    }
+
+    /**
+     * Получает множитель текущей эпохи из базы данных и блокирует эпоху до конца текущей транзакции.
+     * Пока блокировка удерживается, ни уплотнение, ни новая эпоха не могут быть зафиксированы,
+     * поэтому базовые цены, прочитанные после вызова, согласованы с возвращенным множителем.
+     * Если эпоха сменилась, пока блокировка ожидалась, блокируется новая эпоха.
+     *
+     * @return Множитель заблокированной эпохи.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public BigDecimal lockMultiplier() {
+        if (!enabled) {
+            return BigDecimal.ONE;
+        }
+        while (true) {
+            final Optional<PriceEpoch> latest = priceEpochRepository.findFirstByOrderByIdDesc();
+            if (latest.isEmpty()) {
+                return update(0L, BigDecimal.ONE).multiplier();
+            }
+            final Long version = latest.get().getId();
+            final boolean locked = priceEpochRepository.findByIdForShare(version).isPresent();
+            if (locked && priceEpochRepository.findFirstByOrderByIdDesc()
+                    .map(epoch -> epoch.getId().equals(version))
+                    .orElse(false)) {
+                return update(version, latest.get().getMultiplier()).multiplier();
+            }
+        }
+    }
+
+    /**
+     * Получает фактическую цену товара по его базовой цене.
+     *
+     * @param basePrice  Базовая цена товара из таблицы.
+     * @param multiplier Множитель эпохи, в которой прочитана базовая цена.
+     * @return Фактическая цена товара.
+     */
+    public BigDecimal toEffectivePrice(BigDecimal basePrice, BigDecimal multiplier) {
+        if (!enabled) {
+            return basePrice.setScale(PRICE_SCALE, RoundingMode.HALF_UP);
+        }
+        return basePrice.multiply(multiplier).setScale(PRICE_SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Получает базовую цену товара, которую нужно сохранить, чтобы фактическая цена была равна указанной.
+     *
+     * @param effectivePrice Фактическая цена товара.
+     * @param multiplier     Множитель эпохи, в которой сохраняется базовая цена.
+     * @return Базовая цена товара для сохранения в таблице с {@value #BASE_PRICE_SCALE} знаками
+     * в режиме эпох и с {@value #PRICE_SCALE} знаками вне его.
+     */
+    public BigDecimal toBasePrice(BigDecimal effectivePrice, BigDecimal multiplier) {
+        if (!enabled) {
+            return effectivePrice.setScale(PRICE_SCALE, RoundingMode.HALF_UP);
+        }
+        return effectivePrice.divide(multiplier, BASE_PRICE_SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Кэширует эпоху, если она не старше уже закэшированной.
+     *
+     * @param version    Версия эпохи.
+     * @param multiplier Множитель эпохи.
+     * @return Закэшированная эпоха.
+     */
+    private synchronized Snapshot update(long version, BigDecimal multiplier) {
+        final Snapshot current = snapshot;
+        final Snapshot loaded = version < current.version()
+                ? new Snapshot(current.version(), current.multiplier(), System.currentTimeMillis())
+                : new Snapshot(version, multiplier, System.currentTimeMillis());
+        snapshot = loaded;
+        return loaded;
+    }
+
+    /**
+     * Закэшированная эпоха цен.
+     *
+     * @param version    Версия (идентификатор) эпохи или 0, если эпох нет.
+     * @param multiplier Множитель эпохи.
+     * @param loadedAt   Время чтения эпохи из базы данных.
+     */
+    public record Snapshot(long version, BigDecimal multiplier, long loadedAt) {
+    }
+}
@@ -0,0 +1,9 @@
+package com.mediasoft.warehouse.service;
+
+/**
+ * Событие массового изменения цен товаров запланированной задачей.
+ *
+ * @param source название задачи, изменившей цены
+ */
+public record PricesChangedEvent(String source) {
+}
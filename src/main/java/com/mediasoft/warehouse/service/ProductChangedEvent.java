@@ -0,0 +1,82 @@
+package com.mediasoft.warehouse.service;
+
+import com.mediasoft.warehouse.model.Product;
+import com.mediasoft.warehouse.model.enums.ProductCategory;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Событие изменения товара, публикуемое {@link ProductService} при создании, изменении и удалении товара.
+ *
+ * @param productId   идентификатор товара
+ * @param name        название товара или null, если товар удален
+ * @param article     артикул товара или null, если товар удален
+ * @param description описание товара или null, если товар удален
+ * @param previous    значения фасетов товара до изменения или null, если товар создан
+ * @param current     значения фасетов товара после изменения или null, если товар удален
+ */
+public record ProductChangedEvent(UUID productId, String name, String article, String description,
+                                  Facets previous, Facets current) {
+    /**
+     * Создает событие создания товара.
+     *
+     * @param product сохраненный товар
+     * @return событие
+     */
+    public static ProductChangedEvent saved(Product product) {
+        return saved(null, product);
+    }
+
+    /**
+     * Создает событие создания или изменения товара.
+     *
+     * @param previous значения фасетов товара до изменения или null, если товар создан
+     * @param product  сохраненный товар
+     * @return событие
+     */
+    public static ProductChangedEvent saved(Facets previous, Product product) {
+        return new ProductChangedEvent(product.getId(), product.getName(), product.getArticle(),
+                product.getDescription(), previous, Facets.of(product));
+    }
+
+    /**
+     * Создает событие удаления товара.
+     *
+     * @param productId идентификатор удаленного товара
+     * @param previous  значения фасетов удаленного товара
+     * @return событие
+     */
+    public static ProductChangedEvent deleted(UUID productId, Facets previous) {
+        return new ProductChangedEvent(productId, null, null, null, previous, null);
+    }
+
+    /**
+     * Проверяет, является ли событие удалением товара.
+     *
+     * @return true, если товар удален
+     */
+    public boolean isDeleted() {
+        return name == null;
+    }
+
+    /**
+     * Значения полей товара, по которым считаются фасеты.
+     *
+     * @param category  категория товара
+     * @param available доступность товара
+     * @param price     базовая цена товара
+     */
+    public record Facets(ProductCategory category, boolean available, BigDecimal price) {
+        /**
+         * Получает значения фасетов товара.
+         *
+         * @param product товар с базовой ценой
+         * @return значения фасетов
+         */
+        public static Facets of(Product product) {
+            return new Facets(product.getCategory(), Boolean.TRUE.equals(product.getIsAvailable()),
+                    product.getPrice());
+        }
+    }
+}
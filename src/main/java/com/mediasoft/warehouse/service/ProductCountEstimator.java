@@ -0,0 +1,117 @@
+package com.mediasoft.warehouse.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * Оценщик количества товаров для страниц с приблизительным общим количеством.
+ * <p>
+ * Количество всех товаров в PostgreSQL берется из статистики планировщика ({@code pg_class.reltuples}),
+ * которую обновляют {@code ANALYZE} и автоочистка, поэтому таблица не читается.
+ * В остальных случаях, в том числе для запросов с фильтрами, точное количество подсчитывается один раз
+ * и хранится в кэше по ключу запроса. По истечении {@code app.search.count.refresh-period} следующее обращение
+ * возвращает сохраненное значение и запускает фоновый пересчет.
+ */
+@Component
+@Slf4j
+public class ProductCountEstimator {
+    private static final String TOTAL_KEY = "*";
+    private static final String RELTUPLES_QUERY =
+            "SELECT reltuples::bigint FROM pg_class WHERE oid = 'product'::regclass";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LoadingCache<CountKey, Long> counts;
+    private volatile Boolean postgres;
+
+    /**
+     * Конструктор для создания оценщика.
+     *
+     * @param jdbcTemplate  шаблон для выполнения запросов к бд
+     * @param refreshPeriod период, после которого сохраненное количество пересчитывается, в миллисекундах
+     * @param maxSize       максимальное количество сохраненных запросов
+     */
+    public ProductCountEstimator(JdbcTemplate jdbcTemplate,
+                                 @Value("${app.search.count.refresh-period:60000}") long refreshPeriod,
+                                 @Value("${app.search.count.max-size:1000}") long maxSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(Duration.ofMillis(refreshPeriod))
+                .expireAfterWrite(Duration.ofMillis(refreshPeriod).multipliedBy(10))
+                .build(key -> key.counter().getAsLong());
+    }
+
+    /**
+     * Оценивает количество всех товаров.
+     *
+     * @param exactCount подсчет точного количества, если статистика планировщика недоступна
+     * @return приблизительное количество товаров
+     */
+    public long estimateTotal(LongSupplier exactCount) {
+        if (isPostgres()) {
+            try {
+                final Long reltuples = jdbcTemplate.queryForObject(RELTUPLES_QUERY, Long.class);
+                // До первого ANALYZE статистика отсутствует и reltuples равен -1 или 0
+                if (reltuples != null && reltuples > 0) {
+                    return reltuples;
+                }
+            } catch (DataAccessException e) {
+                log.warn("Failed to read planner statistics for product table: {}", e.getMessage());
+            }
+        }
+        return estimate(TOTAL_KEY, exactCount);
+    }
+
+    /**
+     * Оценивает количество товаров, найденных запросом, по сохраненному результату подсчета.
+     *
+     * @param key        ключ, однозначно определяющий условия запроса
+     * @param exactCount подсчет точного количества
+     * @return приблизительное количество товаров
+     */
+    public long estimate(String key, LongSupplier exactCount) {
+        return counts.get(new CountKey(key, exactCount));
+    }
+
+    /**
+     * Проверяет, работает ли приложение с PostgreSQL. Результат определяется при первом обращении.
+     *
+     * @return true, если бд - PostgreSQL
+     */
+    private boolean isPostgres() {
+        if (postgres == null) {
+            postgres = "PostgreSQL".equals(jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName()));
+        }
+        return postgres;
+    }
+
+    /**
+     * Ключ кэша количества. Сравнивается только по строковому ключу, а подсчет
+     * используется для первоначальной загрузки и фонового пересчета значения.
+     *
+     * @param key     ключ, однозначно определяющий условия запроса
+     * @param counter подсчет точного количества
+     */
+    private record CountKey(String key, LongSupplier counter) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof CountKey countKey && key.equals(countKey.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key);
+        }
+    }
+}
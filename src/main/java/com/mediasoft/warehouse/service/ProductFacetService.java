@@ -0,0 +1,376 @@
+package com.mediasoft.warehouse.service;
+
+import com.mediasoft.warehouse.dto.ViewPriceBucketDto;
+import com.mediasoft.warehouse.dto.ViewProductFacetsDto;
+import com.mediasoft.warehouse.model.enums.ProductCategory;
+import com.mediasoft.warehouse.repository.ProductRepository;
+import com.mediasoft.warehouse.search.AbstractProductFilter;
+import com.mediasoft.warehouse.search.plan.FilterPlanCompiler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Сервис подсчета фасетов товаров: количества товаров по категориям, доступности и ценовым диапазонам.
+ * <p>
+ * Фасеты всех товаров берутся из счетчиков в памяти. Счетчики загружаются одним сгруппированным запросом
+ * при первом обращении и затем изменяются после фиксации каждого создания, изменения и удаления товара.
+ * Массовое изменение цен и смена множителя эпохи перемещают товары между ценовыми диапазонами,
+ * поэтому после них счетчики загружаются заново. Счетчики локальны для экземпляра приложения и
+ * сверяются с бд с периодом {@code app.search.facets.refresh-period}.
+ * <p>
+ * Загрузка счетчиков не теряет и не учитывает дважды изменения, зафиксированные во время нее.
+ * Транзакция, изменяющая товары, удерживает блокировку на чтение {@code commitLock} от подготовки
+ * к фиксации до обработки своих событий. Загрузка под блокировкой на запись фиксирует снимок данных
+ * транзакции REPEATABLE READ и начинает копить события: события транзакций, зафиксированных раньше,
+ * уже применены к старым счетчикам и учтены снимком, а события более поздних транзакций
+ * применяются к новым счетчикам после загрузки.
+ * <p>
+ * Фасеты товаров, удовлетворяющих фильтрам, подсчитываются одним запросом с группировкой
+ * по категории, доступности и ценовому диапазону.
+ */
+@Service
+@Slf4j
+public class ProductFacetService {
+    private static final int MULTIPLIER_SCALE = 10;
+    private static final ProductCategory[] CATEGORIES = ProductCategory.values();
+
+    private final ProductRepository productRepository;
+    private final PriceEpochProvider priceEpochProvider;
+    private final FilterPlanCompiler filterPlanCompiler;
+    private final BigDecimal[] priceBounds;
+    private final TransactionTemplate snapshotTemplate;
+    private final ReentrantReadWriteLock commitLock = new ReentrantReadWriteLock();
+    private final Object pendingEventsMonitor = new Object();
+
+    private volatile Counters counters;
+    private List<ProductChangedEvent> pendingEvents;
+
+    /**
+     * Конструктор для создания сервиса.
+     *
+     * @param productRepository  репозиторий товаров
+     * @param priceEpochProvider поставщик множителя цен
+     * @param filterPlanCompiler компилятор фильтров товаров
+     * @param transactionManager менеджер транзакций для загрузки счетчиков из снимка данных
+     * @param priceBounds        границы ценовых диапазонов в рублях
+     */
+    public ProductFacetService(ProductRepository productRepository, PriceEpochProvider priceEpochProvider,
+                               FilterPlanCompiler filterPlanCompiler, PlatformTransactionManager transactionManager,
+                               @Value("${app.search.facets.price-buckets:100,500,1000,5000,10000}")
+                               BigDecimal[] priceBounds) {
+        this.productRepository = productRepository;
+        this.priceEpochProvider = priceEpochProvider;
+        this.filterPlanCompiler = filterPlanCompiler;
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTemplate.setReadOnly(true);
+        this.priceBounds = priceBounds.clone();
+        Arrays.sort(this.priceBounds);
+    }
+
+    /**
+     * Получает фасеты товаров, удовлетворяющих фильтрам.
+     *
+     * @param filters список фильтров товаров или пустой список для всех товаров
+     * @return количества товаров по категориям, доступности и ценовым диапазонам
+     * @throws IllegalArgumentException если набор фильтров не может использовать индекс и такие наборы отклоняются
+     */
+    @Transactional(readOnly = true)
+    public ViewProductFacetsDto getFacets(List<AbstractProductFilter<?>> filters) {
+        if (filters.isEmpty()) {
+            final Counters current = currentCounters();
+            final long[] cells = new long[current.cells().length()];
+            for (int cell = 0; cell < cells.length; cell++) {
+                cells[cell] = current.cells().get(cell);
+            }
+            return toDto(cells);
+        }
+        final BigDecimal multiplier = priceEpochProvider.getMultiplier();
+        return toDto(load(filters, multiplier, toBaseBounds(multiplier)));
+    }
+
+    /**
+     * Захватывает блокировку фиксации перед фиксацией транзакции, изменившей товар.
+     * Блокировка снимается после завершения транзакции, то есть после обработки ее событий.
+     *
+     * @param event событие изменения товара
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onProductCommitting(ProductChangedEvent event) {
+        if (TransactionSynchronizationManager.hasResource(commitLock)) {
+            return;
+        }
+        commitLock.readLock().lock();
+        TransactionSynchronizationManager.bindResource(commitLock, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResource(commitLock);
+                commitLock.readLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Изменяет счетчики после фиксации изменения товара.
+     * Во время загрузки счетчиков событие также откладывается, чтобы применить его к загруженным счетчикам.
+     *
+     * @param event событие изменения товара
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        final Counters current;
+        synchronized (pendingEventsMonitor) {
+            if (pendingEvents != null) {
+                pendingEvents.add(event);
+            }
+            current = counters;
+        }
+        if (current != null) {
+            apply(current, event);
+        }
+    }
+
+    /**
+     * Загружает счетчики заново после массового изменения цен.
+     * Если событие обрабатывается в транзакции, которая сама удерживает блокировку фиксации,
+     * счетчики сбрасываются и загружаются при следующем обращении.
+     *
+     * @param event событие изменения цен
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPricesChanged(PricesChangedEvent event) {
+        if (counters == null) {
+            return;
+        }
+        if (commitLock.getReadHoldCount() > 0) {
+            counters = null;
+            return;
+        }
+        log.debug("Prices changed by {}, reloading product facet counters", event.source());
+        reload();
+    }
+
+    /**
+     * Сверяет счетчики с бд, чтобы учесть изменения, выполненные другими экземплярами приложения.
+     */
+    @Scheduled(fixedDelayString = "${app.search.facets.refresh-period:300000}",
+            initialDelayString = "${app.search.facets.refresh-period:300000}")
+    public void refresh() {
+        if (counters != null) {
+            reload();
+        }
+    }
+
+    /**
+     * Получает счетчики для текущего множителя цен, загружая их при первом обращении и смене множителя.
+     *
+     * @return счетчики
+     */
+    private Counters currentCounters() {
+        final Counters current = counters;
+        if (current == null || current.multiplier().compareTo(priceEpochProvider.getMultiplier()) != 0) {
+            return reload();
+        }
+        return current;
+    }
+
+    /**
+     * Загружает счетчики всех товаров из снимка данных и применяет к ним события,
+     * зафиксированные после создания снимка.
+     *
+     * @return загруженные счетчики
+     */
+    private synchronized Counters reload() {
+        final BigDecimal multiplier = priceEpochProvider.getMultiplier();
+        final BigDecimal[] baseBounds = toBaseBounds(multiplier);
+        final long[] cells;
+        try {
+            cells = snapshotTemplate.execute(status -> {
+                commitLock.writeLock().lock();
+                try {
+                    productRepository.startSnapshot();
+                    synchronized (pendingEventsMonitor) {
+                        pendingEvents = new ArrayList<>();
+                    }
+                } finally {
+                    commitLock.writeLock().unlock();
+                }
+                return load(List.of(), multiplier, baseBounds);
+            });
+        } catch (RuntimeException e) {
+            synchronized (pendingEventsMonitor) {
+                pendingEvents = null;
+            }
+            throw e;
+        }
+        final Counters loaded = new Counters(multiplier, baseBounds, new AtomicLongArray(cells));
+        synchronized (pendingEventsMonitor) {
+            pendingEvents.forEach(event -> apply(loaded, event));
+            pendingEvents = null;
+            counters = loaded;
+        }
+        return loaded;
+    }
+
+    /**
+     * Подсчитывает товары, удовлетворяющие фильтрам, по ячейкам фасетов.
+     *
+     * @param filters    список фильтров товаров с ценами в рублях
+     * @param multiplier множитель цен
+     * @param baseBounds границы ценовых диапазонов для базовых цен
+     * @return количества товаров по ячейкам
+     */
+    private long[] load(List<AbstractProductFilter<?>> filters, BigDecimal multiplier, BigDecimal[] baseBounds) {
+        final long[] cells = new long[CATEGORIES.length * 2 * (baseBounds.length + 1)];
+        final List<Object[]> rows = productRepository.countFacets(filterPlanCompiler.compile(filters, multiplier),
+                bucketExpression(baseBounds));
+        for (Object[] row : rows) {
+            final int bucket = ((Number) row[2]).intValue();
+            cells[cell((ProductCategory) row[0], Boolean.TRUE.equals(row[1]), bucket, baseBounds.length + 1)] +=
+                    ((Number) row[3]).longValue();
+        }
+        return cells;
+    }
+
+    /**
+     * Переводит границы ценовых диапазонов в базовые цены, хранящиеся в таблице.
+     *
+     * @param multiplier множитель цен
+     * @return границы ценовых диапазонов для базовых цен
+     */
+    private BigDecimal[] toBaseBounds(BigDecimal multiplier) {
+        if (multiplier.compareTo(BigDecimal.ONE) == 0) {
+            return priceBounds;
+        }
+        return Arrays.stream(priceBounds)
+                .map(bound -> bound.divide(multiplier, MULTIPLIER_SCALE, RoundingMode.HALF_UP))
+                .toArray(BigDecimal[]::new);
+    }
+
+    /**
+     * Строит выражение JPQL номера ценового диапазона товара с границами в виде литералов.
+     *
+     * @param baseBounds границы ценовых диапазонов для базовых цен
+     * @return выражение номера ценового диапазона
+     */
+    private static String bucketExpression(BigDecimal[] baseBounds) {
+        final StringBuilder expression = new StringBuilder("CASE");
+        for (int bucket = 0; bucket < baseBounds.length; bucket++) {
+            expression.append(" WHEN p.price < ").append(baseBounds[bucket].toPlainString()).append("BD THEN ")
+                    .append(bucket);
+        }
+        return expression.append(" ELSE ").append(baseBounds.length).append(" END").toString();
+    }
+
+    /**
+     * Применяет изменение товара к счетчикам.
+     *
+     * @param target счетчики
+     * @param event  событие изменения товара
+     */
+    private static void apply(Counters target, ProductChangedEvent event) {
+        if (event.previous() != null) {
+            target.cells().decrementAndGet(cell(event.previous(), target.baseBounds()));
+        }
+        if (event.current() != null) {
+            target.cells().incrementAndGet(cell(event.current(), target.baseBounds()));
+        }
+    }
+
+    /**
+     * Получает номер ячейки фасетов товара.
+     *
+     * @param facets     значения фасетов товара
+     * @param baseBounds границы ценовых диапазонов для базовых цен
+     * @return номер ячейки
+     */
+    private static int cell(ProductChangedEvent.Facets facets, BigDecimal[] baseBounds) {
+        int bucket = baseBounds.length;
+        if (facets.price() != null) {
+            for (int i = 0; i < baseBounds.length; i++) {
+                if (facets.price().compareTo(baseBounds[i]) < 0) {
+                    bucket = i;
+                    break;
+                }
+            }
+        }
+        return cell(facets.category(), facets.available(), bucket, baseBounds.length + 1);
+    }
+
+    /**
+     * Получает номер ячейки фасетов по категории, доступности и ценовому диапазону.
+     *
+     * @param category    категория
+     * @param available   доступность
+     * @param bucket      номер ценового диапазона
+     * @param bucketCount количество ценовых диапазонов
+     * @return номер ячейки
+     */
+    private static int cell(ProductCategory category, boolean available, int bucket, int bucketCount) {
+        return (category.ordinal() * 2 + (available ? 1 : 0)) * bucketCount + bucket;
+    }
+
+    /**
+     * Преобразует количества товаров по ячейкам в DTO фасетов.
+     *
+     * @param cells количества товаров по ячейкам
+     * @return DTO фасетов
+     */
+    private ViewProductFacetsDto toDto(long[] cells) {
+        final int bucketCount = priceBounds.length + 1;
+        final Map<ProductCategory, Long> categories = new EnumMap<>(ProductCategory.class);
+        final Map<Boolean, Long> availability = new LinkedHashMap<>();
+        final long[] buckets = new long[bucketCount];
+        long total = 0;
+        for (ProductCategory category : CATEGORIES) {
+            for (boolean available : new boolean[]{true, false}) {
+                for (int bucket = 0; bucket < bucketCount; bucket++) {
+                    final long count = cells[cell(category, available, bucket, bucketCount)];
+                    categories.merge(category, count, Long::sum);
+                    availability.merge(available, count, Long::sum);
+                    buckets[bucket] += count;
+                    total += count;
+                }
+            }
+        }
+        final List<ViewPriceBucketDto> prices = new ArrayList<>(bucketCount);
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            prices.add(new ViewPriceBucketDto(bucket == 0 ? null : priceBounds[bucket - 1],
+                    bucket == priceBounds.length ? null : priceBounds[bucket], buckets[bucket]));
+        }
+        return new ViewProductFacetsDto(total, categories, availability, prices);
+    }
+
+    /**
+     * Счетчики фасетов всех товаров.
+     *
+     * @param multiplier множитель цен, для которого загружены счетчики
+     * @param baseBounds границы ценовых диапазонов для базовых цен
+     * @param cells      количества товаров по ячейкам
+     */
+    private record Counters(BigDecimal multiplier, BigDecimal[] baseBounds, AtomicLongArray cells) {
+    }
+}
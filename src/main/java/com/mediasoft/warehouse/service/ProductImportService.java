@@ -0,0 +1,492 @@
+package com.mediasoft.warehouse.service;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediasoft.warehouse.dto.SaveProductDto;
+import com.mediasoft.warehouse.dto.ViewImportItemDto;
+import com.mediasoft.warehouse.dto.ViewImportResultDto;
+import com.mediasoft.warehouse.export.ProductSnapshotExporter;
+import com.mediasoft.warehouse.model.Product;
+import com.mediasoft.warehouse.model.enums.ImportStatus;
+import com.mediasoft.warehouse.model.enums.ProductCategory;
+import com.mediasoft.warehouse.repository.ProductRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Сервис массового импорта товаров из потока JSON-массива или CSV.
+ * <p>
+ * Входные данные читаются по одному товару и проверяются так же, как при создании товара через API.
+ * Прошедшие проверку товары собираются в порции по {@code app.import.chunk-size}. Для каждой порции
+ * занятые артикулы проверяются одним запросом, а новые товары вставляются в отдельной транзакции
+ * командой {@code COPY} на PostgreSQL или пакетом JDBC на остальных бд (H2). Если параллельный запрос
+ * успел занять артикул порции, порция проверяется и вставляется повторно.
+ * <p>
+ * Для каждого созданного товара публикуется {@link ProductChangedEvent}, поэтому кэш результатов поиска
+ * и индекс в памяти обновляются так же, как при создании товара через {@link ProductService}.
+ */
+@Service
+@Slf4j
+public class ProductImportService {
+    private static final String COLUMNS = "id, name, article, description, category, price, quantity, "
+            + "last_quantity_change_date, created_date, is_available";
+    private static final String INSERT_QUERY =
+            "INSERT INTO product (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String COPY_QUERY = "COPY product (" + COLUMNS + ") FROM STDIN WITH (FORMAT csv)";
+    private static final List<String> CSV_COLUMNS =
+            List.of("name", "article", "description", "category", "price", "quantity", "isAvailable");
+
+    private final ProductRepository productRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PriceEpochProvider priceEpochProvider;
+    private final Validator validator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    /**
+     * Конструктор для создания сервиса.
+     *
+     * @param productRepository  репозиторий товаров
+     * @param jdbcTemplate       шаблон для выполнения запросов к бд
+     * @param transactionManager менеджер транзакций для вставки порций
+     * @param priceEpochProvider провайдер эпохи цен для перевода цен в базовые
+     * @param validator          валидатор товаров
+     * @param eventPublisher     публикатор событий изменения товаров
+     * @param objectMapper       объект для разбора JSON
+     * @param chunkSize          количество товаров в порции
+     */
+    public ProductImportService(ProductRepository productRepository,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                PriceEpochProvider priceEpochProvider,
+                                Validator validator,
+                                ApplicationEventPublisher eventPublisher,
+                                ObjectMapper objectMapper,
+                                @Value("${app.import.chunk-size:1000}") int chunkSize) {
+        this.productRepository = productRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.priceEpochProvider = priceEpochProvider;
+        this.validator = validator;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Импортирует товары из JSON-массива объектов {@link SaveProductDto}.
+     * <p>
+     * Если формат JSON нарушен внутри массива, товары, прочитанные до ошибки, импортируются, а результат
+     * содержит место ошибки.
+     *
+     * @param inputStream поток с JSON-массивом
+     * @return результат импорта каждого товара
+     * @throws IOException              если произошла ошибка чтения
+     * @throws IllegalArgumentException если данные не начинаются с JSON-массива
+     */
+    public ViewImportResultDto importJson(InputStream inputStream) throws IOException {
+        final ImportRun run = new ImportRun();
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            try {
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new IllegalArgumentException("Expected a JSON array of products");
+                }
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Expected a JSON array of products: " + e.getOriginalMessage());
+            }
+            try {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (parser.currentToken() == null) {
+                        return run.abort(toJsonError(parser.currentLocation(), run, "Unexpected end of JSON array"));
+                    }
+                    final JsonNode node = parser.readValueAsTree();
+                    try {
+                        run.add(objectMapper.treeToValue(node, SaveProductDto.class));
+                    } catch (JsonProcessingException e) {
+                        run.reject(node.isObject() ? node.path("article").asText(null) : null,
+                                e.getOriginalMessage());
+                    }
+                }
+            } catch (JsonProcessingException e) {
+                final JsonLocation location = e.getLocation() != null ? e.getLocation() : parser.currentLocation();
+                return run.abort(toJsonError(location, run, e.getOriginalMessage()));
+            }
+        }
+        return run.finish();
+    }
+
+    /**
+     * Импортирует товары из CSV. Первая строка содержит названия столбцов {@code name, article, description,
+     * category, price, quantity, isAvailable} в любом порядке.
+     * <p>
+     * Если формат CSV нарушен, товары, прочитанные до ошибки, импортируются, а результат содержит
+     * строку, с которой начинается ошибочная запись.
+     *
+     * @param inputStream поток с CSV в UTF-8
+     * @return результат импорта каждого товара
+     * @throws IOException              если произошла ошибка чтения
+     * @throws IllegalArgumentException если нарушен формат заголовка или в нем нет обязательного столбца
+     */
+    public ViewImportResultDto importCsv(InputStream inputStream) throws IOException {
+        final CsvRecordReader reader = new CsvRecordReader(
+                new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)));
+        final ImportRun run = new ImportRun();
+        final List<String> header = reader.read();
+        if (header == null) {
+            return run.finish();
+        }
+        final Map<String, Integer> columns = toColumns(header);
+        try {
+            List<String> record;
+            while ((record = reader.read()) != null) {
+                if (record.size() == 1 && record.get(0).isBlank()) {
+                    continue;
+                }
+                try {
+                    run.add(toDto(columns, record));
+                } catch (IllegalArgumentException e) {
+                    run.reject(value(columns, record, "article"), e.getMessage());
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return run.abort("Malformed CSV at line " + reader.getRecordLine() + " (product " + run.size() + "): "
+                    + e.getMessage());
+        }
+        return run.finish();
+    }
+
+    /**
+     * Формирует описание ошибки формата JSON с местом ее возникновения.
+     *
+     * @param location место ошибки во входных данных
+     * @param run      текущий импорт
+     * @param message  причина ошибки
+     * @return описание ошибки
+     */
+    private static String toJsonError(JsonLocation location, ImportRun run, String message) {
+        return "Malformed JSON at line " + location.getLineNr() + ", column " + location.getColumnNr()
+                + " (product " + run.size() + "): " + message;
+    }
+
+    /**
+     * Сопоставляет названия столбцов CSV с их номерами.
+     *
+     * @param header заголовок CSV
+     * @return номера столбцов по названию
+     * @throws IllegalArgumentException если в заголовке нет обязательного столбца
+     */
+    private static Map<String, Integer> toColumns(List<String> header) {
+        final Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            // Файлы из табличных редакторов могут начинаться с метки порядка байтов
+            final String name = header.get(i).replace("\uFEFF", "").trim();
+            columns.put(name.equals("is_available") ? "isAvailable" : name, i);
+        }
+        for (String column : CSV_COLUMNS) {
+            if (!columns.containsKey(column)) {
+                throw new IllegalArgumentException("CSV header has no column " + column);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Создает DTO товара из записи CSV. Пустые значения считаются отсутствующими.
+     *
+     * @param columns номера столбцов по названию
+     * @param record  запись CSV
+     * @return DTO товара
+     * @throws IllegalArgumentException если значение не может быть преобразовано к типу поля
+     */
+    private static SaveProductDto toDto(Map<String, Integer> columns, List<String> record) {
+        final SaveProductDto dto = new SaveProductDto();
+        dto.setName(value(columns, record, "name"));
+        dto.setArticle(value(columns, record, "article"));
+        dto.setDescription(value(columns, record, "description"));
+        final String category = value(columns, record, "category");
+        dto.setCategory(category == null ? null : ProductCategory.valueOf(category.toUpperCase(Locale.ROOT)));
+        final String price = value(columns, record, "price");
+        dto.setPrice(price == null ? null : new BigDecimal(price));
+        final String quantity = value(columns, record, "quantity");
+        dto.setQuantity(quantity == null ? null : Long.valueOf(quantity));
+        dto.setIsAvailable(parseBoolean(value(columns, record, "isAvailable")));
+        return dto;
+    }
+
+    /**
+     * Получает значение столбца записи CSV.
+     *
+     * @param columns номера столбцов по названию
+     * @param record  запись CSV
+     * @param column  название столбца
+     * @return значение без пробелов по краям или null, если оно пустое или отсутствует
+     */
+    private static String value(Map<String, Integer> columns, List<String> record, String column) {
+        final Integer index = columns.get(column);
+        if (index == null || index >= record.size() || record.get(index).isBlank()) {
+            return null;
+        }
+        return record.get(index).trim();
+    }
+
+    /**
+     * Разбирает логическое значение CSV.
+     *
+     * @param value значение или null
+     * @return логическое значение или null
+     * @throws IllegalArgumentException если значение не является логическим
+     */
+    private static Boolean parseBoolean(String value) {
+        if (value == null) {
+            return null;
+        }
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "true", "t" -> true;
+            case "false", "f" -> false;
+            default -> throw new IllegalArgumentException("Invalid isAvailable value: " + value);
+        };
+    }
+
+    /**
+     * Вставляет товары командой {@code COPY} на PostgreSQL или пакетом JDBC на остальных бд.
+     *
+     * @param products товары с заполненными идентификаторами
+     */
+    private void insert(List<Product> products) {
+        final boolean copied = Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            if (!connection.isWrapperFor(PGConnection.class)) {
+                return false;
+            }
+            final StringBuilder csv = new StringBuilder();
+            for (Product product : products) {
+                csv.append(String.join(",",
+                        product.getId().toString(),
+                        ProductSnapshotExporter.escapeCsv(product.getName()),
+                        ProductSnapshotExporter.escapeCsv(product.getArticle()),
+                        ProductSnapshotExporter.escapeCsv(product.getDescription()),
+                        product.getCategory().name(),
+                        product.getPrice().toPlainString(),
+                        product.getQuantity().toString(),
+                        product.getLastQuantityChangeDate().toString(),
+                        product.getCreatedDate().toString(),
+                        product.getIsAvailable().toString())).append('\n');
+            }
+            try {
+                connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_QUERY, new StringReader(csv.toString()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return true;
+        }));
+        if (!copied) {
+            jdbcTemplate.batchUpdate(INSERT_QUERY, products, products.size(), (statement, product) -> {
+                statement.setObject(1, product.getId());
+                statement.setString(2, product.getName());
+                statement.setString(3, product.getArticle());
+                statement.setString(4, product.getDescription());
+                statement.setString(5, product.getCategory().name());
+                statement.setBigDecimal(6, product.getPrice());
+                statement.setLong(7, product.getQuantity());
+                statement.setTimestamp(8, Timestamp.valueOf(product.getLastQuantityChangeDate()));
+                statement.setDate(9, Date.valueOf(product.getCreatedDate()));
+                statement.setBoolean(10, product.getIsAvailable());
+            });
+        }
+    }
+
+    /**
+     * Товар, ожидающий вставки в составе порции.
+     *
+     * @param index порядковый номер товара во входных данных
+     * @param dto   DTO товара
+     */
+    private record PendingProduct(int index, SaveProductDto dto) {
+    }
+
+    /**
+     * Состояние одного импорта: результаты товаров и текущая порция.
+     */
+    private class ImportRun {
+        private final List<ViewImportItemDto> items = new ArrayList<>();
+        private final List<PendingProduct> chunk = new ArrayList<>();
+        private long created;
+
+        /**
+         * Проверяет товар и добавляет его в порцию. Заполненная порция вставляется.
+         *
+         * @param dto DTO товара
+         */
+        void add(SaveProductDto dto) {
+            final int index = items.size();
+            final Set<ConstraintViolation<SaveProductDto>> violations = validator.validate(dto);
+            if (!violations.isEmpty()) {
+                items.add(new ViewImportItemDto(index, dto.getArticle(), ImportStatus.INVALID, null,
+                        violations.stream()
+                                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                                .sorted()
+                                .collect(Collectors.joining("; "))));
+                return;
+            }
+            // Результат товара из порции становится известен после ее вставки
+            items.add(null);
+            chunk.add(new PendingProduct(index, dto));
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Учитывает товар, данные которого не удалось прочитать.
+         *
+         * @param article артикул товара, если он известен
+         * @param error   причина ошибки
+         */
+        void reject(String article, String error) {
+            items.add(new ViewImportItemDto(items.size(), article, ImportStatus.INVALID, null, error));
+        }
+
+        /**
+         * Вставляет текущую порцию.
+         */
+        void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            try {
+                insertChunk();
+            } catch (DataIntegrityViolationException e) {
+                log.info("Articles of an import chunk were taken concurrently, retrying: {}",
+                        e.getMostSpecificCause().getMessage());
+                try {
+                    insertChunk();
+                } catch (DataAccessException retryException) {
+                    failChunk(retryException);
+                }
+            } catch (DataAccessException e) {
+                failChunk(e);
+            }
+            chunk.clear();
+        }
+
+        /**
+         * Проверяет занятые артикулы порции и вставляет остальные товары в одной транзакции.
+         * Результаты товаров записываются только после фиксации транзакции.
+         */
+        private void insertChunk() {
+            final List<ViewImportItemDto> results = new ArrayList<>(chunk.size());
+            final List<Product> products = new ArrayList<>(chunk.size());
+            transactionTemplate.executeWithoutResult(status -> {
+                final BigDecimal multiplier = priceEpochProvider.lockMultiplier();
+                final Set<String> taken = new HashSet<>(productRepository.findExistingArticles(
+                        chunk.stream().map(pending -> pending.dto().getArticle()).toList()));
+                final LocalDateTime now = LocalDateTime.now();
+                for (PendingProduct pending : chunk) {
+                    final SaveProductDto dto = pending.dto();
+                    if (!taken.add(dto.getArticle())) {
+                        results.add(new ViewImportItemDto(pending.index(), dto.getArticle(), ImportStatus.DUPLICATE,
+                                null, "Product with article " + dto.getArticle() + " already exists"));
+                        continue;
+                    }
+                    final Product product = new Product(dto);
+                    product.setId(UUID.randomUUID());
+                    product.setPrice(priceEpochProvider.toBasePrice(dto.getPrice(), multiplier));
+                    product.setLastQuantityChangeDate(now);
+                    product.setCreatedDate(now.toLocalDate());
+                    products.add(product);
+                    results.add(new ViewImportItemDto(pending.index(), dto.getArticle(), ImportStatus.CREATED,
+                            product.getId(), null));
+                }
+                if (!products.isEmpty()) {
+                    insert(products);
+                }
+                products.forEach(product -> eventPublisher.publishEvent(ProductChangedEvent.saved(product)));
+            });
+            results.forEach(result -> items.set(result.getIndex(), result));
+            created += products.size();
+        }
+
+        /**
+         * Помечает все товары порции несохраненными.
+         *
+         * @param exception ошибка бд
+         */
+        private void failChunk(DataAccessException exception) {
+            log.warn("Failed to import a chunk of {} products", chunk.size(), exception);
+            final String error = exception.getMostSpecificCause().getMessage();
+            for (PendingProduct pending : chunk) {
+                items.set(pending.index(), new ViewImportItemDto(pending.index(), pending.dto().getArticle(),
+                        ImportStatus.FAILED, null, error));
+            }
+        }
+
+        /**
+         * Получает количество прочитанных товаров.
+         *
+         * @return количество товаров
+         */
+        int size() {
+            return items.size();
+        }
+
+        /**
+         * Вставляет последнюю порцию и подводит итог импорта.
+         *
+         * @return результат импорта
+         */
+        ViewImportResultDto finish() {
+            flush();
+            return new ViewImportResultDto(created, items.size() - created, items, null);
+        }
+
+        /**
+         * Вставляет последнюю порцию и подводит итог импорта, прерванного ошибкой формата входных данных.
+         *
+         * @param error причина и место ошибки
+         * @return результат импорта товаров, прочитанных до ошибки
+         */
+        ViewImportResultDto abort(String error) {
+            log.info("Import stopped after {} products: {}", items.size(), error);
+            flush();
+            return new ViewImportResultDto(created, items.size() - created, items, error);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.mediasoft.warehouse.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Кэш результатов поиска товаров на основе кэшей Caffeine из {@link CacheManager}.
+ * <p>
+ * Ключ записи начинается с номера поколения данных. Изменение товара через {@link ProductService}
+ * и массовое изменение цен запланированной задачей увеличивают номер поколения после фиксации транзакции,
+ * поэтому записи предыдущих поколений больше не находятся и вытесняются по времени жизни и размеру кэша.
+ * Запрос, выполнявшийся во время изменения, сохраняется со старым номером и не будет получен из кэша.
+ * <p>
+ * Номер поколения локален для экземпляра приложения: изменения на других экземплярах становятся видны
+ * по истечении времени жизни записей {@code app.search.cache.ttl}.
+ */
+@Component
+@Slf4j
+public class ProductSearchCache {
+    /**
+     * Кэш страниц списка товаров и поиска по строке.
+     */
+    public static final String LISTING_CACHE = "productListing";
+    /**
+     * Кэш страниц поиска товаров по фильтрам.
+     */
+    public static final String FILTER_CACHE = "productFilterSearch";
+
+    private final CacheManager cacheManager;
+    private final boolean enabled;
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Конструктор для создания кэша.
+     *
+     * @param cacheManager менеджер кэшей
+     * @param enabled      включено ли кэширование результатов поиска
+     */
+    public ProductSearchCache(CacheManager cacheManager,
+                              @Value("${app.search.cache.enabled:false}") boolean enabled) {
+        this.cacheManager = cacheManager;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Получает результат из кэша или вычисляет и сохраняет его.
+     * Одновременные запросы с одинаковым ключом вычисляют результат один раз.
+     *
+     * @param cacheName название кэша
+     * @param key       ключ запроса без номера поколения
+     * @param loader    вычисление результата
+     * @param <T>       тип результата
+     * @return результат запроса
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String cacheName, String key, Supplier<T> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        final Cache<Object, Object> cache = (Cache<Object, Object>)
+                Objects.requireNonNull(cacheManager.getCache(cacheName)).getNativeCache();
+        return (T) cache.get(generation.get() + "|" + key, ignored -> loader.get());
+    }
+
+    /**
+     * Делает недействительными все сохраненные результаты.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Делает недействительными сохраненные результаты после изменения товара.
+     *
+     * @param event событие изменения товара
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        invalidate();
+    }
+
+    /**
+     * Делает недействительными сохраненные результаты после массового изменения цен.
+     *
+     * @param event событие изменения цен
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPricesChanged(PricesChangedEvent event) {
+        log.debug("Prices changed by {}, invalidating product search cache", event.source());
+        invalidate();
+    }
+}
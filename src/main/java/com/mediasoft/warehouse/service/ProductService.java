@@ -1,30 +1,53 @@
 package com.mediasoft.warehouse.service;
 
 import com.mediasoft.warehouse.dto.SaveProductDto;
+import com.mediasoft.warehouse.dto.ViewProductBatchDto;
+import com.mediasoft.warehouse.dto.ViewProductDto;
 import com.mediasoft.warehouse.error.exception.DuplicateArticleException;
 import com.mediasoft.warehouse.error.exception.ProductNotFoundException;
 import com.mediasoft.warehouse.filter.currency.CurrencyProvider;
 import com.mediasoft.warehouse.model.Product;
+import com.mediasoft.warehouse.model.enums.Currency;
+import com.mediasoft.warehouse.model.enums.FieldName;
+import com.mediasoft.warehouse.money.Money;
 import com.mediasoft.warehouse.repository.ProductRepository;
 import com.mediasoft.warehouse.search.AbstractProductFilter;
+import com.mediasoft.warehouse.search.ApproximatePage;
+import com.mediasoft.warehouse.search.BigDecimalProductFilter;
+import com.mediasoft.warehouse.search.CountMode;
+import com.mediasoft.warehouse.search.CursorPage;
+import com.mediasoft.warehouse.search.ProductCursor;
+import com.mediasoft.warehouse.search.engine.ProductSearchEngine;
+import com.mediasoft.warehouse.search.plan.BoundFilterPlan;
+import com.mediasoft.warehouse.search.plan.FilterPlanCompiler;
 import jakarta.persistence.criteria.Predicate;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.support.ScopeNotActiveException;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Сервис для управления товарами.
@@ -33,42 +56,269 @@ import java.util.UUID;
 @RequiredArgsConstructor
 @Slf4j
 public class ProductService {
+    private static final int PRICE_SCALE = 2;
+    private static final int PRICE_FACTOR_SCALE = 10;
+    private static final int ID_CHUNK_SIZE = 1000;
+
     private final ProductRepository productRepository;
     private final CurrencyProvider currencyProvider;
     private final ExchangeRateProvider exchangeRateProvider;
+    private final PriceEpochProvider priceEpochProvider;
+    private final ProductSearchEngine productSearchEngine;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ProductCountEstimator productCountEstimator;
+    private final FilterPlanCompiler filterPlanCompiler;
+    private final ProductSearchCache productSearchCache;
 
     /**
-     * Получить все товары с пагинацией.
+     * Получить сущности всех товаров с пагинацией. Цены возвращаются базовыми, в том виде, в котором
+     * хранятся в бд: без множителя эпохи цен и курса валют. Для отображения цен используется
+     * {@link #getAllProducts(int, int, CountMode)}.
      *
      * @param page Номер страницы.
      * @param size Размер страницы.
-     * @return Список всех товаров.
+     * @return Список всех товаров с базовыми ценами.
      */
     @Transactional(readOnly = true)
-    public Page<Product> getAllProducts(int page, int size) {
-        BigDecimal exchangeRate = exchangeRateProvider.getExchangeRate(currencyProvider.getCurrency());
-        Page<Product> products = productRepository.findAll(PageRequest.of(page - 1, size));
-        products.forEach(product -> updateProductPrice(product, exchangeRate));
-        return products;
+    public Page<Product> getRawProducts(int page, int size) {
+        return productRepository.findAll(PageRequest.of(page - 1, size));
+    }
+
+    /**
+     * Получить все товары с пагинацией и заданным способом подсчета общего количества.
+     * Товары выбираются сразу в DTO с ценой, пересчитанной в бд, без загрузки сущностей.
+     * Результат хранится в {@link ProductSearchCache} по валюте и множителю цены.
+     *
+     * @param page      Номер страницы.
+     * @param size      Размер страницы.
+     * @param countMode Способ подсчета общего количества товаров.
+     * @return Страница DTO товаров или часть DTO товаров без общего количества.
+     */
+    @Transactional(readOnly = true)
+    public Slice<ViewProductDto> getAllProducts(int page, int size, CountMode countMode) {
+        Currency currency = currencyProvider.getCurrency();
+        Money priceFactor = getSessionPriceFactor(currency);
+        return productSearchCache.get(ProductSearchCache.LISTING_CACHE,
+                cacheKey("all", currency, priceFactor, page, size, countMode),
+                () -> findViews(PageRequest.of(page - 1, size), List.of(), countMode, priceFactor, currency));
+    }
+
+    /**
+     * Получает все товары с учетом фильтров и заданным способом подсчета общего количества.
+     * Товары выбираются сразу в DTO с ценой в валюте сеанса, пересчитанной в бд.
+     * Фильтры по цене задаются в валюте сеанса и сравниваются с пересчитанной ценой.
+     * Результат хранится в {@link ProductSearchCache} по набору фильтров без учета их порядка,
+     * валюте и множителю цены.
+     *
+     * @param pageable  Pageable для работы с пагинацией и сортировкой результатов поиска
+     * @param filters   список фильтров товаров
+     * @param countMode способ подсчета общего количества товаров
+     * @return страница DTO товаров или часть DTO товаров без общего количества, удовлетворяющих фильтрам
+     * @throws IllegalArgumentException если набор фильтров не может использовать индекс и такие наборы отклоняются
+     */
+    @Transactional(readOnly = true)
+    public Slice<ViewProductDto> getAllProducts(Pageable pageable, List<AbstractProductFilter<?>> filters,
+                                                CountMode countMode) {
+        Currency currency = currencyProvider.getCurrency();
+        Money priceFactor = getSessionPriceFactor(currency);
+        return productSearchCache.get(ProductSearchCache.FILTER_CACHE,
+                cacheKey(canonicalKey(filters), currency, priceFactor, pageable.getPageNumber(),
+                        pageable.getPageSize(), pageable.getSort(), countMode),
+                () -> findViews(pageable, filters, countMode, priceFactor, currency));
+    }
+
+    /**
+     * Выбирает DTO товаров, удовлетворяющих фильтрам, запросом по плану {@link FilterPlanCompiler}.
+     * Цена умножается на множитель цены в запросе, а границы фильтров по цене делятся на него
+     * при построении параметров, поэтому условия по цене могут использовать индекс.
+     *
+     * @param pageable    страница и сортировка
+     * @param filters     список фильтров товаров
+     * @param countMode   способ подсчета общего количества товаров
+     * @param priceFactor множитель цены
+     * @param currency    валюта цены
+     * @return страница DTO товаров или часть DTO товаров без общего количества
+     */
+    private Slice<ViewProductDto> findViews(Pageable pageable, List<AbstractProductFilter<?>> filters,
+                                            CountMode countMode, Money priceFactor, Currency currency) {
+        BoundFilterPlan plan = filterPlanCompiler.compile(filters, priceFactor.toBigDecimal());
+        Slice<ViewProductDto> views = countMode == CountMode.EXACT
+                ? productRepository.findViews(plan, pageable, priceFactor.toBigDecimal())
+                : productRepository.findViewSlice(plan, pageable, priceFactor.toBigDecimal());
+        views.forEach(view -> view.setCurrency(currency));
+        if (countMode != CountMode.APPROXIMATE) {
+            return views;
+        }
+        long estimatedTotal = filters.isEmpty()
+                ? productCountEstimator.estimateTotal(productRepository::count)
+                : productCountEstimator.estimate("filters:" + priceFactor + "|" + canonicalKey(filters),
+                        () -> productRepository.count(plan));
+        return toApproximatePage(views, estimatedTotal);
+    }
+
+    /**
+     * Передает обработчику все товары, удовлетворяющие фильтрам, с ценой в валюте сеанса.
+     * Товары читаются одним запросом однонаправленным курсором бд и выбираются сразу в DTO,
+     * поэтому объем занятой памяти не зависит от количества товаров.
+     *
+     * @param filters   список фильтров товаров
+     * @param fetchSize количество строк, получаемых из бд за одно обращение
+     * @param consumer  обработчик DTO товаров
+     * @throws IllegalArgumentException если набор фильтров не может использовать индекс и такие наборы отклоняются
+     */
+    @Transactional(readOnly = true)
+    public void forEachProduct(List<AbstractProductFilter<?>> filters, int fetchSize,
+                               Consumer<ViewProductDto> consumer) {
+        Currency currency = currencyProvider.getCurrency();
+        Money priceFactor = getSessionPriceFactor(currency);
+        BoundFilterPlan plan = filterPlanCompiler.compile(filters, priceFactor.toBigDecimal());
+        try (Stream<ViewProductDto> views =
+                     productRepository.streamViews(plan, priceFactor.toBigDecimal(), fetchSize)) {
+            views.forEach(view -> {
+                view.setCurrency(currency);
+                consumer.accept(view);
+            });
+        }
+    }
+
+    /**
+     * Получает страницу товаров с учетом фильтров, следующую за курсором.
+     * Фильтры по цене задаются в валюте сеанса, их границы переводятся в цены, хранимые в бд.
+     *
+     * @param filters   список фильтров товаров
+     * @param cursor    курсор предыдущей страницы или null для первой страницы
+     * @param sortField поле сортировки, если курсор не передан
+     * @param direction направление сортировки, если курсор не передан
+     * @param size      размер страницы
+     * @param withCount нужно ли подсчитать общее количество товаров, удовлетворяющих фильтрам
+     * @return страница DTO товаров с ценой в валюте сеанса и курсором следующей страницы
+     * @throws IllegalArgumentException если курсор поврежден
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<ViewProductDto> getProductsAfter(List<AbstractProductFilter<?>> filters, String cursor,
+                                                       FieldName sortField, Sort.Direction direction,
+                                                       int size, boolean withCount) {
+        Currency currency = currencyProvider.getCurrency();
+        Money priceFactor = getSessionPriceFactor(currency);
+        Specification<Product> specification = toSpecification(toStoredPriceFilters(filters,
+                priceFactor.toBigDecimal()));
+        return findProductsAfter(specification, cursor, sortField, direction, size, withCount)
+                .map(product -> toView(product, priceFactor, currency));
     }
 
     /**
-     * Получает все товары с учетом фильтров.
+     * Получает страницу товаров с учетом параметра поиска, следующую за курсором.
      *
-     * @param pageable Pageable для работы с пагинацией и сортировкой результатов поиска
-     * @param filters  список фильтров товаров
-     * @return страница товаров, удовлетворяющих фильтрам
+     * @param search    строка для поиска в названии, артикуле и описании товара без учета регистра
+     *                  или null для всех товаров
+     * @param cursor    курсор предыдущей страницы или null для первой страницы
+     * @param sortField поле сортировки, если курсор не передан
+     * @param direction направление сортировки, если курсор не передан
+     * @param size      размер страницы
+     * @param withCount нужно ли подсчитать общее количество найденных товаров
+     * @return страница DTO товаров с ценой в валюте сеанса и курсором следующей страницы
+     * @throws IllegalArgumentException если курсор поврежден
      */
     @Transactional(readOnly = true)
-    public Page<Product> getAllProducts(Pageable pageable, List<AbstractProductFilter<?>> filters) {
+    public CursorPage<ViewProductDto> getProductsAfter(String search, String cursor, FieldName sortField,
+                                                       Sort.Direction direction, int size, boolean withCount) {
+        Currency currency = currencyProvider.getCurrency();
+        Money priceFactor = getSessionPriceFactor(currency);
+        Specification<Product> specification = search == null ? Specification.where(null) : containing(search);
+        return findProductsAfter(specification, cursor, sortField, direction, size, withCount)
+                .map(product -> toView(product, priceFactor, currency));
+    }
 
-        final Specification<Product> specification = (root, query, criteriaBuilder) -> {
+    /**
+     * Выбирает страницу товаров, следующую за курсором, без пропуска строк.
+     * Запрашивается на один товар больше размера страницы, чтобы определить, есть ли следующая страница.
+     * Курсор следующей страницы строится по ценам в бд, так как сравнивается с ними.
+     *
+     * @param specification спецификация товаров
+     * @param cursor        курсор предыдущей страницы или null для первой страницы
+     * @param sortField     поле сортировки, если курсор не передан
+     * @param direction     направление сортировки, если курсор не передан
+     * @param size          размер страницы
+     * @param withCount     нужно ли подсчитать общее количество товаров
+     * @return страница товаров с курсором следующей страницы
+     */
+    private CursorPage<Product> findProductsAfter(Specification<Product> specification, String cursor,
+                                                  FieldName sortField, Sort.Direction direction,
+                                                  int size, boolean withCount) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        Specification<Product> pageSpecification = specification;
+        if (cursor != null) {
+            ProductCursor after = ProductCursor.decode(cursor);
+            sortField = after.getField();
+            direction = after.getDirection();
+            pageSpecification = specification.and(after.after());
+        }
+        Sort sort = ProductCursor.sort(sortField, direction);
+        List<Product> products = productRepository.findBy(pageSpecification,
+                query -> query.sortBy(sort).limit(size + 1).all());
+
+        String nextCursor = null;
+        if (products.size() > size) {
+            products = products.subList(0, size);
+            nextCursor = ProductCursor.of(products.get(size - 1), sortField, direction).encode();
+        }
+        Long totalElements = withCount ? productRepository.count(specification) : null;
+        return new CursorPage<>(products, nextCursor, totalElements);
+    }
+
+    /**
+     * Преобразует часть элементов в страницу с приблизительным общим количеством.
+     *
+     * @param slice          часть элементов
+     * @param estimatedTotal приблизительное общее количество элементов
+     * @param <T>            тип элементов
+     * @return страница с приблизительным общим количеством
+     */
+    private static <T> Page<T> toApproximatePage(Slice<T> slice, long estimatedTotal) {
+        return new ApproximatePage<>(slice.getContent(), slice.getPageable(), estimatedTotal, slice.hasNext());
+    }
+
+    /**
+     * Получает ключ набора фильтров, не зависящий от их порядка.
+     *
+     * @param filters список фильтров товаров
+     * @return ключ набора фильтров
+     */
+    private static String canonicalKey(List<AbstractProductFilter<?>> filters) {
+        return filters.stream()
+                .map(AbstractProductFilter::toKey)
+                .sorted()
+                .collect(Collectors.joining(";"));
+    }
+
+    /**
+     * Получает ключ кэша результатов поиска из частей запроса.
+     *
+     * @param parts части запроса
+     * @return ключ кэша
+     */
+    private static String cacheKey(Object... parts) {
+        return Arrays.stream(parts).map(String::valueOf).collect(Collectors.joining("|"));
+    }
+
+    /**
+     * Строит спецификацию товаров по списку фильтров.
+     *
+     * @param filters список фильтров товаров
+     * @return спецификация товаров, удовлетворяющих всем фильтрам
+     */
+    private Specification<Product> toSpecification(List<AbstractProductFilter<?>> filters) {
+        return (root, query, criteriaBuilder) -> {
             final List<Predicate> predicates = new ArrayList<>();
             for (AbstractProductFilter<?> filter : filters) {
                 Specification<Product> operationSpec = switch (filter.getOperation()) {
                     case LIKE -> filter.likeOperation();
                     case GRATER_THAN_OR_EQ -> filter.greaterThanOrEqualsOperation();
                     case LESS_THAN_OR_EQ -> filter.lessThanOrEqualsOperation();
+                    case IN -> filter.inOperation();
+                    case BETWEEN -> filter.betweenOperation();
                     default -> filter.equalsOperation();
                 };
 
@@ -78,55 +328,193 @@ public class ProductService {
             }
             return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
         };
+    }
+
+    /**
+     * Переводит границы фильтров по цене из валюты сеанса в цены, хранимые в бд,
+     * так же, как {@link FilterPlanCompiler} переводит параметры фильтров по цене.
+     * Остальные фильтры не изменяются.
+     *
+     * @param filters     список фильтров товаров
+     * @param priceFactor множитель цены
+     * @return список фильтров с границами по цене в бд
+     */
+    private static List<AbstractProductFilter<?>> toStoredPriceFilters(List<AbstractProductFilter<?>> filters,
+                                                                       BigDecimal priceFactor) {
+        return filters.stream()
+                .<AbstractProductFilter<?>>map(filter -> filter.getField() == FieldName.PRICE
+                        && filter instanceof BigDecimalProductFilter priceFilter
+                        ? toStoredPriceFilter(priceFilter, priceFactor)
+                        : filter)
+                .toList();
+    }
 
-        return productRepository.findAll(specification, pageable);
+    /**
+     * Создает копию фильтра по цене с границами, переведенными в цены, хранимые в бд.
+     *
+     * @param filter      фильтр по цене в валюте сеанса
+     * @param priceFactor множитель цены
+     * @return фильтр по цене в бд
+     */
+    private static BigDecimalProductFilter toStoredPriceFilter(BigDecimalProductFilter filter,
+                                                               BigDecimal priceFactor) {
+        BigDecimalProductFilter stored = new BigDecimalProductFilter();
+        stored.setField(filter.getField());
+        stored.setOperation(filter.getOperation());
+        if (filter.getSearchParam() != null) {
+            stored.setSearchParam(FilterPlanCompiler.toStoredPrice(filter.getSearchParam(), priceFactor));
+        }
+        if (filter.getSearchParams() != null) {
+            stored.setSearchParams(filter.getSearchParams().stream()
+                    .map(price -> price == null ? null : FilterPlanCompiler.toStoredPrice(price, priceFactor))
+                    .toList());
+        }
+        return stored;
     }
 
     /**
-     * Получить товары с учетом параметра поиска.
+     * Строит спецификацию товаров, название, артикул или описание которых содержит строку без учета регистра.
      *
-     * @param search Строка для поиска в названии, артикуле и описании товара.
+     * @param search строка поиска
+     * @return спецификация товаров
+     */
+    private Specification<Product> containing(String search) {
+        String pattern = ProductSearchEngine.toContainsPattern(search.toLowerCase(Locale.ROOT));
+        return (root, query, criteriaBuilder) -> criteriaBuilder.or(
+                criteriaBuilder.like(criteriaBuilder.lower(root.get("name")), pattern, '\\'),
+                criteriaBuilder.like(criteriaBuilder.lower(root.get("article")), pattern, '\\'),
+                criteriaBuilder.like(criteriaBuilder.lower(root.get("description")), pattern, '\\'));
+    }
+
+    /**
+     * Получить сущности товаров с учетом параметра поиска. Цены возвращаются базовыми, в том виде, в котором
+     * хранятся в бд: без множителя эпохи цен и курса валют. Для отображения цен используется
+     * {@link #getAllProducts(String, int, int, CountMode)}.
+     *
+     * @param search Строка для поиска в названии, артикуле и описании товара без учета регистра.
      * @param page   Номер страницы.
      * @param size   Размер страницы.
-     * @return Список товаров, удовлетворяющих критериям поиска.
+     * @return Список товаров с базовыми ценами, удовлетворяющих критериям поиска.
      */
     @Transactional(readOnly = true)
-    public Page<Product> getAllProducts(String search, int page, int size) {
-        BigDecimal exchangeRate = exchangeRateProvider.getExchangeRate(currencyProvider.getCurrency());
-        Page<Product> products =
-                productRepository.findDistinctByNameContainingOrArticleContainingOrDescriptionContaining(search,
-                        search, search, PageRequest.of(page - 1, size));
-        products.forEach(product -> updateProductPrice(product, exchangeRate));
-        return products;
+    public Page<Product> searchRawProducts(String search, int page, int size) {
+        return productSearchEngine.search(search, PageRequest.of(page - 1, size));
     }
 
     /**
-     * Получить товар по идентификатору.
+     * Получить товары с учетом параметра поиска и заданным способом подсчета общего количества.
+     * Результат хранится в {@link ProductSearchCache} по строке поиска в нижнем регистре,
+     * валюте и множителю цены.
+     *
+     * @param search    Строка для поиска в названии, артикуле и описании товара без учета регистра.
+     * @param page      Номер страницы.
+     * @param size      Размер страницы.
+     * @param countMode Способ подсчета общего количества товаров.
+     * @return Страница DTO товаров или часть DTO товаров без общего количества, удовлетворяющих критериям поиска.
+     */
+    @Transactional(readOnly = true)
+    public Slice<ViewProductDto> getAllProducts(String search, int page, int size, CountMode countMode) {
+        Currency currency = currencyProvider.getCurrency();
+        Money priceFactor = getSessionPriceFactor(currency);
+        return productSearchCache.get(ProductSearchCache.LISTING_CACHE,
+                cacheKey("search", search.toLowerCase(Locale.ROOT), currency, priceFactor, page, size, countMode),
+                () -> searchProducts(search, PageRequest.of(page - 1, size), countMode, priceFactor, currency));
+    }
+
+    /**
+     * Находит страницу товаров по строке поиска и преобразует их в DTO с пересчитанной ценой.
+     * Сущности товаров не изменяются.
+     *
+     * @param search      строка поиска
+     * @param pageable    страница
+     * @param countMode   способ подсчета общего количества товаров
+     * @param priceFactor множитель цены
+     * @param currency    валюта цены
+     * @return страница DTO товаров или часть DTO товаров без общего количества
+     */
+    private Slice<ViewProductDto> searchProducts(String search, Pageable pageable, CountMode countMode,
+                                                 Money priceFactor, Currency currency) {
+        Slice<Product> products = countMode == CountMode.EXACT
+                ? productSearchEngine.search(search, pageable)
+                : productSearchEngine.searchSlice(search, pageable);
+        Slice<ViewProductDto> views = products.map(product -> toView(product, priceFactor, currency));
+        if (countMode != CountMode.APPROXIMATE) {
+            return views;
+        }
+        long estimatedTotal = productCountEstimator.estimate("search:" + search.toLowerCase(Locale.ROOT),
+                () -> productSearchEngine.search(search, PageRequest.of(0, 1)).getTotalElements());
+        return toApproximatePage(views, estimatedTotal);
+    }
+
+    /**
+     * Получить сущность товара по идентификатору. Цена возвращается базовой, в том виде, в котором
+     * хранится в бд: без множителя эпохи цен и курса валют. Для отображения цены используется
+     * {@link #getProductViewById(UUID)}.
      *
      * @param productId Идентификатор товара.
-     * @return Товар с указанным идентификатором.
+     * @return Товар с указанным идентификатором и базовой ценой.
      * @throws ProductNotFoundException, если товар не найден.
      */
     @Transactional(readOnly = true)
-    public Product getProductById(UUID productId) {
-        Product product = productRepository.findById(productId)
+    public Product getRawProductById(UUID productId) {
+        return productRepository.findById(productId)
                 .orElseThrow(() -> new ProductNotFoundException(productId));
-        try {
-            updateProductPrice(product, exchangeRateProvider.getExchangeRate(currencyProvider.getCurrency()));
-        } catch (ScopeNotActiveException e) {
-            log.info(e.getMessage());
-        }
-        return product;
     }
 
     /**
-     * Обновляет цену товара в соответствии с указанным курсом валют.
+     * Получить DTO товара по идентификатору с ценой в валюте сеанса, пересчитанной в бд.
+     *
+     * @param productId Идентификатор товара.
+     * @return DTO товара с указанным идентификатором.
+     * @throws ProductNotFoundException, если товар не найден.
+     */
+    @Transactional(readOnly = true)
+    public ViewProductDto getProductViewById(UUID productId) {
+        Currency currency = currencyProvider.getCurrency();
+        BigDecimal priceFactor = getSessionPriceFactor(currency).toBigDecimal();
+        ViewProductDto view = productRepository.findViewsByIds(List.of(productId), priceFactor).stream()
+                .findFirst()
+                .orElseThrow(() -> new ProductNotFoundException(productId));
+        view.setCurrency(currency);
+        return view;
+    }
+
+    /**
+     * Вычисляет множитель цены: произведение курса валют и множителя текущей эпохи цен.
+     * Вычисляется один раз на запрос, а не для каждого товара.
      *
-     * @param product      Товар, цена которого будет изменена по курсу.
-     * @param exchangeRate Обменный курс, на который будет умножена текущая цена товара.
+     * @param exchangeRate Обменный курс.
+     * @return Множитель цены, округленный до {@value #PRICE_FACTOR_SCALE} знаков.
      */
-    private void updateProductPrice(Product product, BigDecimal exchangeRate) {
-        product.setPrice(product.getPrice().multiply(exchangeRate).setScale(2, RoundingMode.HALF_UP));
+    private Money getPriceFactor(BigDecimal exchangeRate) {
+        return Money.of(priceEpochProvider.getMultiplier().multiply(exchangeRate), PRICE_FACTOR_SCALE);
+    }
+
+    /**
+     * Вычисляет множитель цены для валюты сеанса. Для рублей курс не запрашивается.
+     *
+     * @param currency Валюта сеанса.
+     * @return Множитель цены.
+     */
+    private Money getSessionPriceFactor(Currency currency) {
+        return getPriceFactor(currency == Currency.RUB
+                ? BigDecimal.ONE
+                : exchangeRateProvider.getExchangeRate(currency));
+    }
+
+    /**
+     * Создает DTO товара с ценой, умноженной на множитель цены. Сущность товара не изменяется.
+     *
+     * @param product     Товар.
+     * @param priceFactor Множитель цены.
+     * @param currency    Валюта цены.
+     * @return DTO товара.
+     */
+    private static ViewProductDto toView(Product product, Money priceFactor, Currency currency) {
+        ViewProductDto view = new ViewProductDto(product);
+        view.setPrice(priceFactor.applyTo(product.getPrice(), PRICE_SCALE));
+        view.setCurrency(currency);
+        return view;
     }
 
     /**
@@ -142,7 +530,12 @@ public class ProductService {
         if (productRepository.existsByArticle(article)) {
             throw new DuplicateArticleException(article);
         }
-        return productRepository.save(new Product(saveProductDto));
+        final BigDecimal multiplier = priceEpochProvider.lockMultiplier();
+        Product product = new Product(saveProductDto);
+        product.setPrice(priceEpochProvider.toBasePrice(saveProductDto.getPrice(), multiplier));
+        Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.saved(savedProduct));
+        return savedProduct;
     }
 
     /**
@@ -156,7 +549,10 @@ public class ProductService {
      */
     @Transactional
     public Product updateProduct(UUID productId, SaveProductDto updatedProductDto) {
-        Product existingProduct = getProductById(productId);
+        final BigDecimal multiplier = priceEpochProvider.lockMultiplier();
+        Product existingProduct = productRepository.findById(productId)
+                .orElseThrow(() -> new ProductNotFoundException(productId));
+        ProductChangedEvent.Facets previous = ProductChangedEvent.Facets.of(existingProduct);
         String article = updatedProductDto.getArticle();
         if (productRepository.existsByArticle(article)
                 && !existingProduct.getArticle().equals(article)) {
@@ -167,14 +563,36 @@ public class ProductService {
         existingProduct.setArticle(article);
         existingProduct.setDescription(updatedProductDto.getDescription());
         existingProduct.setCategory(updatedProductDto.getCategory());
-        existingProduct.setPrice(updatedProductDto.getPrice());
+        existingProduct.setPrice(priceEpochProvider.toBasePrice(updatedProductDto.getPrice(), multiplier));
         existingProduct.setIsAvailable(updatedProductDto.getIsAvailable());
         if (!existingProduct.getQuantity().equals(updatedProductDto.getQuantity())) {
             existingProduct.setQuantity(updatedProductDto.getQuantity());
             existingProduct.setLastQuantityChangeDate(LocalDateTime.now());
         }
 
-        return productRepository.save(existingProduct);
+        Product savedProduct = productRepository.save(existingProduct);
+        eventPublisher.publishEvent(ProductChangedEvent.saved(previous, savedProduct));
+        return savedProduct;
+    }
+
+    /**
+     * Вернуть на склад указанное количество товара, не изменяя его цену.
+     *
+     * @param productId Идентификатор товара.
+     * @param quantity  Возвращаемое количество товара.
+     * @return Измененный товар.
+     * @throws ProductNotFoundException, если товар не найден.
+     */
+    @Transactional
+    public Product returnProduct(UUID productId, long quantity) {
+        Product existingProduct = productRepository.findById(productId)
+                .orElseThrow(() -> new ProductNotFoundException(productId));
+        ProductChangedEvent.Facets previous = ProductChangedEvent.Facets.of(existingProduct);
+        existingProduct.setQuantity(existingProduct.getQuantity() + quantity);
+        existingProduct.setLastQuantityChangeDate(LocalDateTime.now());
+        Product savedProduct = productRepository.save(existingProduct);
+        eventPublisher.publishEvent(ProductChangedEvent.saved(previous, savedProduct));
+        return savedProduct;
     }
 
     /**
@@ -185,11 +603,47 @@ public class ProductService {
      */
     @Transactional
     public boolean deleteProduct(UUID productId) {
-        if (productRepository.existsById(productId)) {
-            productRepository.deleteById(productId);
-            return true;
+        Optional<Product> product = productRepository.findById(productId);
+        if (product.isEmpty()) {
+            return false;
+        }
+        productRepository.delete(product.get());
+        eventPublisher.publishEvent(
+                ProductChangedEvent.deleted(productId, ProductChangedEvent.Facets.of(product.get())));
+        return true;
+    }
+
+    /**
+     * Получить DTO товаров по идентификаторам с ценой в валюте сеанса.
+     * Курс валюты определяется один раз, товары выбираются запросами по {@value #ID_CHUNK_SIZE}
+     * идентификаторов сразу в DTO. Ненайденные идентификаторы возвращаются отдельно.
+     *
+     * @param productIds Идентификаторы товаров.
+     * @return Найденные товары в порядке идентификаторов и ненайденные идентификаторы.
+     */
+    @Transactional(readOnly = true)
+    public ViewProductBatchDto getProductViewsByIds(Set<UUID> productIds) {
+        Currency currency = currencyProvider.getCurrency();
+        BigDecimal priceFactor = getSessionPriceFactor(currency).toBigDecimal();
+        List<UUID> ids = productIds.stream().filter(Objects::nonNull).toList();
+        Map<UUID, ViewProductDto> found = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+            List<UUID> chunk = ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size()));
+            productRepository.findViewsByIds(chunk, priceFactor).forEach(view -> found.put(view.getId(), view));
+        }
+
+        List<ViewProductDto> products = new ArrayList<>(found.size());
+        List<UUID> missing = new ArrayList<>();
+        for (UUID id : ids) {
+            ViewProductDto view = found.get(id);
+            if (view == null) {
+                missing.add(id);
+            } else {
+                view.setCurrency(currency);
+                products.add(view);
+            }
         }
-        return false;
+        return new ViewProductBatchDto(products, missing);
     }
 
     /**
@@ -0,0 +1,52 @@
+package com.mediasoft.warehouse.sizing;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.Chunk;
+
+/**
+ * Слушатель шага Spring Batch, передающий длительность записи каждой порции
+ * в {@link AdaptiveBatchSizer} и записывающий в журнал итоговый размер по завершении шага.
+ *
+ * @param <T> тип записываемых элементов
+ */
+public class AdaptiveBatchListener<T> implements ItemWriteListener<T>, StepExecutionListener {
+    private final AdaptiveBatchSizer batchSizer;
+    private final ThreadLocal<Long> writeStart = new ThreadLocal<>();
+
+    /**
+     * Конструктор для создания слушателя.
+     *
+     * @param batchSizer регулятор размера пакета
+     */
+    public AdaptiveBatchListener(AdaptiveBatchSizer batchSizer) {
+        this.batchSizer = batchSizer;
+    }
+
+    @Override
+    public void beforeWrite(Chunk<? extends T> items) {
+        writeStart.set(System.nanoTime());
+    }
+
+    @Override
+    public void afterWrite(Chunk<? extends T> items) {
+        final Long start = writeStart.get();
+        writeStart.remove();
+        if (start != null) {
+            batchSizer.record(items.size(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void onWriteError(Exception exception, Chunk<? extends T> items) {
+        writeStart.remove();
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        batchSizer.logSettledSize(stepExecution.getStepName());
+        return null;
+    }
+}
@@ -0,0 +1,126 @@
+package com.mediasoft.warehouse.sizing;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Регулятор размера пакета, подстраивающий его под наблюдаемую задержку выполнения пакетов
+ * и запас свободной памяти кучи в заданных границах.
+ * <p>
+ * После каждого пакета обновляется сглаженная оценка задержки на одну строку, и следующий размер
+ * выбирается так, чтобы пакет выполнялся примерно за целевое время. За один шаг размер меняется
+ * не более чем вдвое. Неполный пакет не увеличивает размер, так как не доказывает,
+ * что больший пакет уложится в целевое время. Если свободной памяти кучи меньше порога,
+ * размер уменьшается вдвое независимо от задержки.
+ * <p>
+ * Экземпляр потокобезопасен и может использоваться несколькими партициями одновременно.
+ */
+@Slf4j
+public class AdaptiveBatchSizer {
+    private static final double SMOOTHING = 0.3;
+    private static final double MAX_STEP = 2.0;
+
+    private final int minSize;
+    private final int maxSize;
+    private final int maxFetchSize;
+    private final long targetLatencyNanos;
+    private final double minHeapHeadroom;
+    private final DoubleSupplier heapHeadroom;
+
+    private int batchSize;
+    private double rowLatencyNanos = Double.NaN;
+    private double lastHeapHeadroom = Double.NaN;
+
+    /**
+     * Конструктор для создания регулятора.
+     *
+     * @param minSize            минимальный размер пакета
+     * @param maxSize            максимальный размер пакета
+     * @param initialSize        начальный размер пакета
+     * @param maxFetchSize       максимальный размер выборки строк за одно обращение к бд
+     * @param targetLatencyNanos целевая длительность выполнения пакета в наносекундах
+     * @param minHeapHeadroom    минимальная доля свободной памяти кучи, при которой размер может расти
+     * @param heapHeadroom       источник текущей доли свободной памяти кучи
+     */
+    public AdaptiveBatchSizer(int minSize, int maxSize, int initialSize, int maxFetchSize,
+                              long targetLatencyNanos, double minHeapHeadroom, DoubleSupplier heapHeadroom) {
+        if (minSize < 1 || maxSize < minSize) {
+            throw new IllegalArgumentException("Invalid batch size bounds: [" + minSize + ", " + maxSize + "]");
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.maxFetchSize = Math.max(1, maxFetchSize);
+        this.targetLatencyNanos = targetLatencyNanos;
+        this.minHeapHeadroom = minHeapHeadroom;
+        this.heapHeadroom = heapHeadroom;
+        this.batchSize = clamp(initialSize);
+    }
+
+    /**
+     * Получает текущий размер пакета.
+     *
+     * @return размер пакета
+     */
+    public synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Получает размер выборки строк за одно обращение к бд, согласованный с размером пакета.
+     *
+     * @return размер выборки
+     */
+    public synchronized int getFetchSize() {
+        return Math.min(batchSize, maxFetchSize);
+    }
+
+    /**
+     * Учитывает выполненный пакет и пересчитывает размер следующего пакета.
+     *
+     * @param size  количество строк в пакете
+     * @param nanos длительность выполнения пакета в наносекундах
+     */
+    public synchronized void record(int size, long nanos) {
+        if (size <= 0) {
+            return;
+        }
+        final double sample = (double) Math.max(nanos, 1) / size;
+        rowLatencyNanos = Double.isNaN(rowLatencyNanos)
+                ? sample
+                : SMOOTHING * sample + (1 - SMOOTHING) * rowLatencyNanos;
+        lastHeapHeadroom = heapHeadroom.getAsDouble();
+
+        final double next;
+        if (lastHeapHeadroom < minHeapHeadroom) {
+            next = batchSize / MAX_STEP;
+        } else {
+            final double desired = targetLatencyNanos / rowLatencyNanos;
+            final double bounded = Math.max(batchSize / MAX_STEP, Math.min(batchSize * MAX_STEP, desired));
+            next = size < batchSize ? Math.min(bounded, batchSize) : bounded;
+        }
+        batchSize = clamp((long) next);
+    }
+
+    /**
+     * Записывает в журнал размер, на котором остановился регулятор.
+     *
+     * @param name название операции, использующей регулятор
+     */
+    public synchronized void logSettledSize(String name) {
+        log.info("{} batch size settled at {} (fetch size {}, {} us per row, heap headroom {}%)",
+                name, batchSize, getFetchSize(),
+                Double.isNaN(rowLatencyNanos) ? "n/a" : String.format("%.2f", rowLatencyNanos / 1000),
+                Double.isNaN(lastHeapHeadroom) ? "n/a" : String.format("%.0f", lastHeapHeadroom * 100));
+    }
+
+    /**
+     * Ограничивает размер пакета заданными границами.
+     *
+     * @param size размер пакета
+     * @return размер пакета в границах
+     */
+    private int clamp(long size) {
+        return (int) Math.max(minSize, Math.min(maxSize, size));
+    }
+}
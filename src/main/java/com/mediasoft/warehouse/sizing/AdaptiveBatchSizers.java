@@ -0,0 +1,56 @@
+package com.mediasoft.warehouse.sizing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Реестр регуляторов размера пакета. Для каждой операции создается один регулятор,
+ * поэтому подобранный размер сохраняется между запусками планировщика.
+ * Границы и целевая задержка задаются параметрами {@code app.scheduling.batch-size}.
+ */
+@Component
+public class AdaptiveBatchSizers {
+    @Value("${app.scheduling.batch-size.min:1000}")
+    private int minSize;
+    @Value("${app.scheduling.batch-size.max:100000}")
+    private int maxSize;
+    @Value("${app.scheduling.batch-size.initial:10000}")
+    private int initialSize;
+    @Value("${app.scheduling.batch-size.max-fetch-size:10000}")
+    private int maxFetchSize;
+    @Value("${app.scheduling.batch-size.target-latency:500}")
+    private long targetLatency;
+    @Value("${app.scheduling.batch-size.min-heap-headroom:0.2}")
+    private double minHeapHeadroom;
+
+    private final Map<String, AdaptiveBatchSizer> sizers = new ConcurrentHashMap<>();
+
+    /**
+     * Получает регулятор размера пакета для операции, создавая его при первом обращении.
+     *
+     * @param name название операции
+     * @return регулятор размера пакета
+     */
+    public AdaptiveBatchSizer get(String name) {
+        return sizers.computeIfAbsent(name, key -> new AdaptiveBatchSizer(minSize, maxSize, initialSize,
+                maxFetchSize, TimeUnit.MILLISECONDS.toNanos(targetLatency), minHeapHeadroom,
+                AdaptiveBatchSizers::heapHeadroom));
+    }
+
+    /**
+     * Вычисляет долю свободной памяти кучи относительно ее максимального размера.
+     *
+     * @return доля свободной памяти кучи от 0 до 1
+     */
+    private static double heapHeadroom() {
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        final long max = heap.getMax() > 0 ? heap.getMax() : heap.getCommitted();
+        return max > 0 ? 1 - (double) heap.getUsed() / max : 1;
+    }
+}
@@ -0,0 +1,51 @@
+package com.mediasoft.warehouse.sizing;
+
+import org.springframework.batch.repeat.RepeatContext;
+import org.springframework.batch.repeat.context.RepeatContextSupport;
+import org.springframework.batch.repeat.policy.CompletionPolicySupport;
+
+/**
+ * Политика завершения порции Spring Batch, размер которой берется из {@link AdaptiveBatchSizer}
+ * в начале каждой порции. Размер фиксируется в контексте порции,
+ * поэтому параллельные партиции не влияют на уже начатые порции друг друга.
+ */
+public class AdaptiveCompletionPolicy extends CompletionPolicySupport {
+    private final AdaptiveBatchSizer batchSizer;
+
+    /**
+     * Конструктор для создания политики.
+     *
+     * @param batchSizer регулятор размера пакета
+     */
+    public AdaptiveCompletionPolicy(AdaptiveBatchSizer batchSizer) {
+        this.batchSizer = batchSizer;
+    }
+
+    @Override
+    public RepeatContext start(RepeatContext parent) {
+        return new SizedRepeatContext(parent, batchSizer.getBatchSize());
+    }
+
+    @Override
+    public boolean isComplete(RepeatContext context) {
+        return context.getStartedCount() >= ((SizedRepeatContext) context).chunkSize;
+    }
+
+    /**
+     * Контекст порции с зафиксированным размером.
+     */
+    private static class SizedRepeatContext extends RepeatContextSupport {
+        private final int chunkSize;
+
+        /**
+         * Конструктор для создания контекста порции.
+         *
+         * @param parent    родительский контекст
+         * @param chunkSize размер порции
+         */
+        SizedRepeatContext(RepeatContext parent, int chunkSize) {
+            super(parent);
+            this.chunkSize = chunkSize;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.mediasoft.warehouse.telemetry;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Один запуск планировщика обновления цен, накапливающий показатели до своего завершения.
+ * Если запуск закрыт без вызова {@link #success()}, он считается неуспешным.
+ */
+@Getter(AccessLevel.PACKAGE)
+public class PricingRun implements AutoCloseable {
+    @Getter(AccessLevel.NONE)
+    private final PricingRunRecorder recorder;
+    private final String scheduler;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    @Getter(AccessLevel.NONE)
+    private final long startNanos = System.nanoTime();
+    private long rows;
+    private long batches;
+    private long exportBytes;
+    private long transactionNanos;
+    private Throwable error;
+    @Getter(AccessLevel.NONE)
+    private boolean finished;
+
+    /**
+     * Создает запуск.
+     *
+     * @param recorder  компонент, публикующий показатели
+     * @param scheduler название планировщика
+     */
+    PricingRun(PricingRunRecorder recorder, String scheduler) {
+        this.recorder = recorder;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Учитывает обработанные товары.
+     *
+     * @param count количество товаров
+     */
+    public void addRows(long count) {
+        rows += count;
+    }
+
+    /**
+     * Учитывает выполнение пакета обновлений.
+     *
+     * @param nanos длительность выполнения пакета в наносекундах
+     */
+    public void recordBatch(long nanos) {
+        batches++;
+        recorder.recordBatch(scheduler, nanos);
+    }
+
+    /**
+     * Учитывает записанный снимок.
+     *
+     * @param bytes размер снимка в байтах
+     */
+    public void addExportBytes(long bytes) {
+        exportBytes += bytes;
+    }
+
+    /**
+     * Учитывает транзакцию обновления цен.
+     *
+     * @param nanos длительность транзакции в наносекундах
+     */
+    public void recordTransaction(long nanos) {
+        transactionNanos += nanos;
+        recorder.recordTransaction(scheduler, nanos);
+    }
+
+    /**
+     * Завершает запуск как успешный.
+     */
+    public void success() {
+        finish(null);
+    }
+
+    /**
+     * Завершает запуск как неуспешный.
+     *
+     * @param exception причина ошибки
+     */
+    public void failure(Throwable exception) {
+        finish(exception);
+    }
+
+    /**
+     * Завершает запуск как неуспешный, если он не был завершен ранее.
+     */
+    @Override
+    public void close() {
+        if (!finished) {
+            finish(new IllegalStateException("Run was not completed"));
+        }
+    }
+
+    /**
+     * Завершает запуск и публикует его показатели.
+     *
+     * @param exception причина ошибки или null для успешного запуска
+     */
+    private void finish(Throwable exception) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        error = exception;
+        recorder.complete(this, System.nanoTime() - startNanos);
+    }
+}
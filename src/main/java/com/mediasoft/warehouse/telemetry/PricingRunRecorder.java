@@ -0,0 +1,180 @@
+package com.mediasoft.warehouse.telemetry;
+
+import com.mediasoft.warehouse.service.PricesChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Компонент, публикующий показатели запусков планировщиков обновления цен через Micrometer
+ * и хранящий итоги последних запусков для эндпоинта {@link PricingRunsEndpoint}.
+ * Все показатели помечены тегом {@code scheduler}.
+ * После каждого запуска, изменившего цены, публикуется {@link PricesChangedEvent}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PricingRunRecorder {
+    private static final String SCHEDULER_TAG = "scheduler";
+    private static final String OUTCOME_TAG = "outcome";
+
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    @Value("${app.scheduling.period:60000}")
+    private long period;
+    @Value("${app.scheduling.telemetry.history-size:20}")
+    private int historySize;
+    @Value("${app.scheduling.telemetry.overlap-warning-ratio:0.8}")
+    private double overlapWarningRatio;
+
+    private final Deque<PricingRunSummary> history = new ArrayDeque<>();
+    private final Map<String, AtomicLong> lastUtilization = new ConcurrentHashMap<>();
+
+    /**
+     * Начинает запуск планировщика.
+     *
+     * @param scheduler название планировщика
+     * @return запуск, накапливающий показатели
+     */
+    public PricingRun start(String scheduler) {
+        return new PricingRun(this, scheduler);
+    }
+
+    /**
+     * Возвращает итоги последних запусков, начиная с самого нового.
+     *
+     * @return итоги запусков
+     */
+    public List<PricingRunSummary> getHistory() {
+        synchronized (history) {
+            return new ArrayList<>(history);
+        }
+    }
+
+    /**
+     * Учитывает выполнение пакета обновлений в гистограмме задержек.
+     *
+     * @param scheduler название планировщика
+     * @param nanos     длительность выполнения пакета в наносекундах
+     */
+    public void recordBatch(String scheduler, long nanos) {
+        Timer.builder("pricing.run.batch")
+                .description("executeBatch latency of a repricing run")
+                .tag(SCHEDULER_TAG, scheduler)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Учитывает длительность транзакции обновления цен.
+     *
+     * @param scheduler название планировщика
+     * @param nanos     длительность транзакции в наносекундах
+     */
+    public void recordTransaction(String scheduler, long nanos) {
+        Timer.builder("pricing.run.transaction")
+                .description("Duration of a repricing transaction")
+                .tag(SCHEDULER_TAG, scheduler)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Публикует показатели завершенного запуска и сохраняет его итоги.
+     * Если запуск обработал товары, публикует событие изменения цен.
+     * Если запуск занял заметную часть периода планировщика, пишет предупреждение:
+     * следующие запуски могут начать накладываться.
+     *
+     * @param run           завершенный запуск
+     * @param durationNanos длительность запуска в наносекундах
+     */
+    void complete(PricingRun run, long durationNanos) {
+        final String scheduler = run.getScheduler();
+        final boolean success = run.getError() == null;
+        final double seconds = durationNanos / 1e9;
+        final double rowsPerSecond = seconds > 0 ? run.getRows() / seconds : 0;
+        final double utilization = period > 0 ? durationNanos / 1e6 / period : 0;
+
+        Counter.builder("pricing.run.rows")
+                .description("Products processed by repricing runs")
+                .tag(SCHEDULER_TAG, scheduler)
+                .register(meterRegistry)
+                .increment(run.getRows());
+        DistributionSummary.builder("pricing.run.throughput")
+                .description("Products processed per second by a repricing run")
+                .baseUnit("rows/s")
+                .tag(SCHEDULER_TAG, scheduler)
+                .register(meterRegistry)
+                .record(rowsPerSecond);
+        DistributionSummary.builder("pricing.run.export")
+                .description("Size of the snapshot written by a repricing run")
+                .baseUnit("bytes")
+                .tag(SCHEDULER_TAG, scheduler)
+                .register(meterRegistry)
+                .record(run.getExportBytes());
+        Timer.builder("pricing.run.duration")
+                .description("Duration of a repricing run")
+                .tag(SCHEDULER_TAG, scheduler)
+                .tag(OUTCOME_TAG, success ? "success" : "failure")
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+        lastUtilization.computeIfAbsent(scheduler, this::registerUtilizationGauge)
+                .set(Double.doubleToLongBits(utilization));
+
+        final PricingRunSummary summary = new PricingRunSummary(scheduler, run.getStartedAt(),
+                durationNanos / 1e6, run.getRows(), rowsPerSecond, run.getBatches(), run.getExportBytes(),
+                run.getTransactionNanos() / 1e6, utilization, success,
+                success ? null : String.valueOf(run.getError()));
+        synchronized (history) {
+            history.addFirst(summary);
+            while (history.size() > historySize) {
+                history.removeLast();
+            }
+        }
+
+        if (run.getRows() > 0) {
+            eventPublisher.publishEvent(new PricesChangedEvent(scheduler));
+        }
+
+        if (utilization > overlapWarningRatio) {
+            log.warn("Pricing run of {} took {} ms, {}% of the {} ms period: runs may start to overlap",
+                    scheduler, Math.round(summary.durationMillis()), Math.round(utilization * 100), period);
+        }
+        if (!success) {
+            log.error("Pricing run of {} failed after {} ms", scheduler, Math.round(summary.durationMillis()),
+                    run.getError());
+        }
+    }
+
+    /**
+     * Регистрирует показатель доли периода, занятой последним запуском планировщика.
+     *
+     * @param scheduler название планировщика
+     * @return хранилище значения показателя
+     */
+    private AtomicLong registerUtilizationGauge(String scheduler) {
+        final AtomicLong value = new AtomicLong(Double.doubleToLongBits(0));
+        Gauge.builder("pricing.run.period.utilization", value, bits -> Double.longBitsToDouble(bits.get()))
+                .description("Share of app.scheduling.period taken by the last repricing run")
+                .tag(SCHEDULER_TAG, scheduler)
+                .register(meterRegistry);
+        return value;
+    }
+}
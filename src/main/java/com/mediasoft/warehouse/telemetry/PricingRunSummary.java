@@ -0,0 +1,23 @@
+package com.mediasoft.warehouse.telemetry;
+
+import java.time.LocalDateTime;
+
+/**
+ * Итоги завершенного запуска планировщика обновления цен.
+ *
+ * @param scheduler         название планировщика
+ * @param startedAt         время начала запуска
+ * @param durationMillis    длительность запуска в миллисекундах
+ * @param rows              количество обработанных товаров
+ * @param rowsPerSecond     скорость обработки товаров
+ * @param batches           количество выполненных пакетов обновлений
+ * @param exportBytes       размер записанного снимка в байтах
+ * @param transactionMillis суммарная длительность транзакций в миллисекундах
+ * @param periodUtilization доля периода запуска планировщика, занятая запуском
+ * @param success           признак успешного завершения
+ * @param error             описание ошибки неуспешного запуска
+ */
+public record PricingRunSummary(String scheduler, LocalDateTime startedAt, double durationMillis, long rows,
+                                double rowsPerSecond, long batches, long exportBytes, double transactionMillis,
+                                double periodUtilization, boolean success, String error) {
+}
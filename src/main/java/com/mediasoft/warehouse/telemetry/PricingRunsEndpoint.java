@@ -0,0 +1,28 @@
+package com.mediasoft.warehouse.telemetry;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Эндпоинт Actuator со списком последних запусков планировщиков обновления цен.
+ */
+@Component
+@Endpoint(id = "pricingruns")
+@RequiredArgsConstructor
+public class PricingRunsEndpoint {
+    private final PricingRunRecorder pricingRunRecorder;
+
+    /**
+     * Возвращает итоги последних запусков, начиная с самого нового.
+     *
+     * @return итоги запусков
+     */
+    @ReadOperation
+    public List<PricingRunSummary> pricingRuns() {
+        return pricingRunRecorder.getHistory();
+    }
+}
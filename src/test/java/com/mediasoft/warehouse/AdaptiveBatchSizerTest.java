@@ -0,0 +1,71 @@
+package com.mediasoft.warehouse;
+
+import com.mediasoft.warehouse.sizing.AdaptiveBatchSizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit-тесты для {@link AdaptiveBatchSizer}.
+ */
+class AdaptiveBatchSizerTest {
+    private static final long TARGET_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    /**
+     * Тест на рост размера при быстрых пакетах: не более чем вдвое за шаг и не выше верхней границы.
+     */
+    @Test
+    void testGrowsWhenBatchesAreFast() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 10000, 1000, 5000, TARGET_NANOS, 0.2, () -> 0.9);
+        sizer.record(1000, TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(2000, sizer.getBatchSize());
+        for (int i = 0; i < 10; i++) {
+            sizer.record(sizer.getBatchSize(), TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertEquals(10000, sizer.getBatchSize());
+        assertEquals(5000, sizer.getFetchSize());
+    }
+
+    /**
+     * Тест на уменьшение размера при медленных пакетах до размера, укладывающегося в целевое время.
+     */
+    @Test
+    void testShrinksTowardsTargetLatency() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 100000, 8000, 10000, TARGET_NANOS, 0.2, () -> 0.9);
+        for (int i = 0; i < 30; i++) {
+            int size = sizer.getBatchSize();
+            // 0.25 мс на строку: в целевые 500 мс укладываются 2000 строк
+            sizer.record(size, size * TimeUnit.MICROSECONDS.toNanos(250));
+        }
+        assertEquals(2000, sizer.getBatchSize());
+    }
+
+    /**
+     * Тест на уменьшение размера при нехватке памяти кучи и соблюдение нижней границы.
+     */
+    @Test
+    void testShrinksWhenHeapHeadroomIsLow() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(500, 100000, 4000, 10000, TARGET_NANOS, 0.2, () -> 0.1);
+        sizer.record(4000, 1);
+        assertEquals(2000, sizer.getBatchSize());
+        for (int i = 0; i < 10; i++) {
+            sizer.record(sizer.getBatchSize(), 1);
+        }
+        assertEquals(500, sizer.getBatchSize());
+    }
+
+    /**
+     * Тест на то, что неполный пакет не увеличивает размер.
+     */
+    @Test
+    void testPartialBatchDoesNotGrow() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 100000, 4000, 10000, TARGET_NANOS, 0.2, () -> 0.9);
+        sizer.record(10, 1000);
+        assertEquals(4000, sizer.getBatchSize());
+        sizer.record(4000, TimeUnit.SECONDS.toNanos(2));
+        assertTrue(sizer.getBatchSize() < 4000);
+    }
+}
@@ -0,0 +1,71 @@
+package com.mediasoft.warehouse;
+
+import com.mediasoft.warehouse.service.CsvRecordReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Тесты для {@link CsvRecordReader}.
+ */
+class CsvRecordReaderTest {
+
+    /**
+     * Проверяет чтение простых записей и записей со значениями в кавычках.
+     */
+    @Test
+    void testRead() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader(
+                "name,article\r\n\"Chair, oak\",A-1\n\"Say \"\"hi\"\"\",\"line\nbreak\"\n,\n"));
+
+        assertEquals(List.of("name", "article"), reader.read());
+        assertEquals(List.of("Chair, oak", "A-1"), reader.read());
+        assertEquals(List.of("Say \"hi\"", "line\nbreak"), reader.read());
+        assertEquals(List.of("", ""), reader.read());
+        assertNull(reader.read());
+    }
+
+    /**
+     * Проверяет чтение последней записи без перевода строки.
+     */
+    @Test
+    void testLastRecordWithoutNewLine() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader("a,\"b\""));
+
+        assertEquals(List.of("a", "b"), reader.read());
+        assertNull(reader.read());
+    }
+
+    /**
+     * Проверяет номера строк, с которых начинаются записи, в том числе со значениями в несколько строк.
+     */
+    @Test
+    void testRecordLine() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader("a,\"multi\r\nline\"\rb\n\"open\n"));
+
+        assertEquals(0, reader.getRecordLine());
+        reader.read();
+        assertEquals(1, reader.getRecordLine());
+        reader.read();
+        assertEquals(3, reader.getRecordLine());
+        assertThrows(IllegalArgumentException.class, reader::read);
+        assertEquals(4, reader.getRecordLine());
+    }
+
+    /**
+     * Проверяет ошибки в значениях в кавычках.
+     */
+    @Test
+    void testMalformedQuotes() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CsvRecordReader(new StringReader("\"open,value\n")).read());
+        assertThrows(IllegalArgumentException.class,
+                () -> new CsvRecordReader(new StringReader("\"closed\"x,value\n")).read());
+    }
+}
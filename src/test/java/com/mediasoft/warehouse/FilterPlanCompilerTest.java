@@ -0,0 +1,127 @@
+package com.mediasoft.warehouse;
+
+import com.mediasoft.warehouse.model.enums.FieldName;
+import com.mediasoft.warehouse.model.enums.OperationType;
+import com.mediasoft.warehouse.model.enums.ProductCategory;
+import com.mediasoft.warehouse.search.AbstractProductFilter;
+import com.mediasoft.warehouse.search.BigDecimalProductFilter;
+import com.mediasoft.warehouse.search.LocalDateProductFilter;
+import com.mediasoft.warehouse.search.LongProductFilter;
+import com.mediasoft.warehouse.search.StringProductFilter;
+import com.mediasoft.warehouse.search.plan.BoundFilterPlan;
+import com.mediasoft.warehouse.search.plan.FilterPlanCompiler;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit-тесты для {@link FilterPlanCompiler}.
+ */
+class FilterPlanCompilerTest {
+    /**
+     * Тест на то, что списки фильтров, отличающиеся только порядком, используют один план.
+     */
+    @Test
+    void testSameShapeReusesPlan() {
+        FilterPlanCompiler compiler = new FilterPlanCompiler(false, false, 100);
+        AbstractProductFilter<?> name = filter(new StringProductFilter(), FieldName.NAME, OperationType.LIKE, "box");
+        AbstractProductFilter<?> price = filter(new BigDecimalProductFilter(), FieldName.PRICE,
+                OperationType.GRATER_THAN_OR_EQ, BigDecimal.TEN);
+
+        BoundFilterPlan first = compiler.compile(List.of(name, price));
+        BoundFilterPlan second = compiler.compile(List.of(price, name));
+        assertSame(first.plan(), second.plan());
+        assertEquals("p.name LIKE :p0 AND p.price >= :p1", first.plan().whereClause());
+        assertEquals(List.of("%box%", BigDecimal.TEN), second.parameters());
+        assertEquals("SELECT p FROM Product p WHERE p.name LIKE :p0 AND p.price >= :p1 ORDER BY p.price DESC",
+                first.plan().selectQuery(Sort.by(Sort.Direction.DESC, "price")));
+        assertThrows(IllegalArgumentException.class, () -> first.plan().selectQuery(Sort.by("orders")));
+    }
+
+    /**
+     * Тест на отклонение наборов фильтров, которые не могут использовать индекс.
+     */
+    @Test
+    void testRejectsUnindexedCombinations() {
+        FilterPlanCompiler compiler = new FilterPlanCompiler(true, false, 100);
+        AbstractProductFilter<?> description = filter(new StringProductFilter(), FieldName.DESCRIPTION,
+                OperationType.LIKE, "steel");
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile(List.of(description)));
+
+        AbstractProductFilter<?> createdBefore = filter(new LocalDateProductFilter(), FieldName.CREATED_DATE,
+                OperationType.LESS_THAN_OR_EQ, LocalDate.of(2024, 1, 1));
+        BoundFilterPlan plan = compiler.compile(List.of(description, createdBefore));
+        assertEquals("p.description LIKE :p0 AND p.createdDate <= :p1", plan.plan().whereClause());
+        assertEquals(0, compiler.compile(List.of()).parameters().size());
+    }
+
+    /**
+     * Тест на операции "in" и "between": список значений передается одним параметром,
+     * а план не зависит от количества значений.
+     */
+    @Test
+    void testInAndBetween() {
+        FilterPlanCompiler compiler = new FilterPlanCompiler(true, false, 100);
+        AbstractProductFilter<String> categories = filter(new StringProductFilter(), FieldName.CATEGORY,
+                OperationType.IN, null);
+        categories.setSearchParams(List.of("BOOKS", "CLOTHING"));
+        AbstractProductFilter<Long> quantity = filter(new LongProductFilter(), FieldName.QUANTITY,
+                OperationType.BETWEEN, null);
+        quantity.setSearchParams(List.of(10L, 20L));
+
+        BoundFilterPlan plan = compiler.compile(List.of(quantity, categories));
+        assertEquals("p.category IN :p0 AND p.quantity BETWEEN :p1 AND :p2", plan.plan().whereClause());
+        assertEquals(List.of(List.of(ProductCategory.BOOKS, ProductCategory.CLOTHING), 10L, 20L), plan.parameters());
+
+        categories.setSearchParams(List.of("BOOKS"));
+        assertSame(plan.plan(), compiler.compile(List.of(categories, quantity)).plan());
+
+        quantity.setSearchParams(List.of(10L));
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile(List.of(quantity)));
+        AbstractProductFilter<String> categoryRange = filter(new StringProductFilter(), FieldName.CATEGORY,
+                OperationType.BETWEEN, null);
+        categoryRange.setSearchParams(List.of("BOOKS", "CLOTHING"));
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile(List.of(categoryRange)));
+    }
+
+    /**
+     * Тест на перевод значений фильтров по цене в цены в бд делением на множитель цены.
+     */
+    @Test
+    void testPriceFactor() {
+        FilterPlanCompiler compiler = new FilterPlanCompiler(false, false, 100);
+        AbstractProductFilter<BigDecimal> price = filter(new BigDecimalProductFilter(), FieldName.PRICE,
+                OperationType.GRATER_THAN_OR_EQ, BigDecimal.TEN);
+
+        BoundFilterPlan plan = compiler.compile(List.of(price), new BigDecimal("0.04"));
+        assertEquals("p.price >= :p0", plan.plan().whereClause());
+        assertEquals(0, new BigDecimal(250).compareTo((BigDecimal) plan.parameters().get(0)));
+        assertSame(plan.plan(), compiler.compile(List.of(price)).plan());
+        assertEquals(List.of(BigDecimal.TEN), compiler.compile(List.of(price)).parameters());
+    }
+
+    /**
+     * Заполняет фильтр.
+     *
+     * @param filter      фильтр
+     * @param field       поле
+     * @param operation   операция
+     * @param searchParam параметр поиска
+     * @param <T>         тип параметра поиска
+     * @return заполненный фильтр
+     */
+    private static <T> AbstractProductFilter<T> filter(AbstractProductFilter<T> filter, FieldName field,
+                                                       OperationType operation, T searchParam) {
+        filter.setField(field);
+        filter.setOperation(operation);
+        filter.setSearchParam(searchParam);
+        return filter;
+    }
+}
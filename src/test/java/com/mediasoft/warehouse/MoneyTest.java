@@ -0,0 +1,111 @@
+package com.mediasoft.warehouse;
+
+import com.mediasoft.warehouse.money.Money;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit-тесты для {@link Money}.
+ */
+class MoneyTest {
+
+    /**
+     * Тест на преобразование в {@link BigDecimal} и обратно без потерь.
+     */
+    @Test
+    void testBigDecimalRoundTrip() {
+        for (String value : new String[]{"0", "0.00", "123.45", "-0.01", "1.1010000000", "92233720368547758.07"}) {
+            BigDecimal decimal = new BigDecimal(value);
+            BigDecimal roundTrip = Money.of(decimal).toBigDecimal();
+            assertEquals(decimal, roundTrip);
+            assertEquals(decimal.scale(), roundTrip.scale());
+        }
+        Assertions.assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("0.0000000000000000001")));
+    }
+
+    /**
+     * Тест на округление произведения по правилу HALF_UP, в том числе для отрицательных значений и границ.
+     */
+    @Test
+    void testMultiplyRoundsHalfUp() {
+        assertEquals(new BigDecimal("1.01"), multiply("1.005", "1", 2));
+        assertEquals(new BigDecimal("1.00"), multiply("1.0049", "1", 2));
+        assertEquals(new BigDecimal("-1.01"), multiply("-1.005", "1", 2));
+        assertEquals(new BigDecimal("110.10"), multiply("100.00", "1.1010", 2));
+    }
+
+    /**
+     * Тест на умножение с масштабом результата больше масштаба произведения, в том числе на границе {@code long}.
+     */
+    @Test
+    void testMultiplyScalesUp() {
+        Money product = Money.of(new BigDecimal("1.50")).multiply(Money.of(new BigDecimal("2")), 4);
+        assertEquals(new BigDecimal("3.0000"), product.toBigDecimal());
+        assertEquals(new BigDecimal("7.500000000000000000"),
+                Money.of(new BigDecimal("5")).applyTo(new BigDecimal("1.5"), Money.MAX_SCALE));
+        Money large = Money.ofUnscaled(Long.MAX_VALUE / 3, 0);
+        BigDecimal expected = large.toBigDecimal().multiply(BigDecimal.valueOf(2));
+        assertEquals(0, expected.compareTo(large.multiply(Money.of(BigDecimal.valueOf(2)), 1).toBigDecimal()));
+        assertEquals(expected.setScale(1), Money.of(BigDecimal.valueOf(2)).applyTo(large.toBigDecimal(), 1));
+    }
+
+    /**
+     * Тест на совпадение результата умножения с {@link BigDecimal}, включая случаи переполнения {@code long}.
+     */
+    @Test
+    void testMultiplyMatchesBigDecimal() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            BigDecimal price = BigDecimal.valueOf(random.nextLong() % 1_000_000_000L, random.nextInt(5));
+            BigDecimal factor = BigDecimal.valueOf(random.nextLong() % 10_000_000_000L, 4 + random.nextInt(7));
+            BigDecimal expected = price.multiply(factor).setScale(2, RoundingMode.HALF_UP);
+            assertEquals(expected, Money.of(price).multiply(Money.of(factor), 2).toBigDecimal());
+            assertEquals(expected, Money.of(factor).applyTo(price, 2));
+        }
+    }
+
+    /**
+     * Тест на умножение {@link BigDecimal} на сумму для значений, не помещающихся в {@code long},
+     * и значений с отрицательным масштабом.
+     */
+    @Test
+    void testApplyToLargeValues() {
+        Money factor = Money.of(new BigDecimal("1.1010"));
+        for (String value : new String[]{"92233720368547758.07", "123456789012345678901234.5", "1E+3", "0.00"}) {
+            BigDecimal price = new BigDecimal(value);
+            assertEquals(price.multiply(factor.toBigDecimal()).setScale(2, RoundingMode.HALF_UP),
+                    factor.applyTo(price, 2));
+        }
+        assertEquals(new BigDecimal("1000.00"), Money.of(new BigDecimal("1E+3")).setScale(2).toBigDecimal());
+    }
+
+    /**
+     * Тест на расчет суммы заказа: умножение на количество и сложение с разными масштабами.
+     */
+    @Test
+    void testAddAndMultiplyByQuantity() {
+        Money total = Money.ZERO
+                .add(Money.of(new BigDecimal("10.50")).multiply(3))
+                .add(Money.of(new BigDecimal("0.125")).multiply(2));
+        assertEquals(new BigDecimal("31.750"), total.toBigDecimal());
+        Assertions.assertThrows(ArithmeticException.class, () -> Money.ofUnscaled(Long.MAX_VALUE, 0).multiply(2));
+    }
+
+    /**
+     * Перемножает значения через {@link Money}.
+     *
+     * @param value      значение
+     * @param multiplier множитель
+     * @param scale      масштаб результата
+     * @return произведение
+     */
+    private BigDecimal multiply(String value, String multiplier, int scale) {
+        return Money.of(new BigDecimal(value)).multiply(Money.of(new BigDecimal(multiplier)), scale).toBigDecimal();
+    }
+}
@@ -0,0 +1,71 @@
+package com.mediasoft.warehouse;
+
+import com.mediasoft.warehouse.search.engine.NgramIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit-тесты для {@link NgramIndex}.
+ */
+class NgramIndexTest {
+    /**
+     * Тест на поиск подстроки без учета регистра с отбрасыванием ложных совпадений триграмм.
+     */
+    @Test
+    void testSearchMatchesSubstringsOnly() {
+        NgramIndex index = new NgramIndex();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        index.put(first, "Красный Чайник", "ART-001", "Чайник из стали");
+        index.put(second, "Чашка", "ART-002", "Ник и чай");
+
+        assertEquals(List.of(first), index.search("чайник"));
+        assertEquals(List.of(first, second), index.search("art-00"));
+        assertEquals(List.of(second), index.search("ШК"));
+        assertTrue(index.search("ник чай").isEmpty());
+        // Подстрока не должна находиться на стыке полей
+        assertTrue(index.search("001чайник").isEmpty());
+    }
+
+    /**
+     * Тест на замену и удаление товаров, в том числе с перестроением индекса.
+     */
+    @Test
+    void testUpdatesAndCompaction() {
+        NgramIndex index = new NgramIndex();
+        UUID product = UUID.randomUUID();
+        index.put(product, "Old name", "A-1", "Description");
+        index.put(product, "New name", "A-1", "Description");
+        assertTrue(index.search("old").isEmpty());
+        assertEquals(List.of(product), index.search("new"));
+
+        for (int i = 0; i < 5000; i++) {
+            UUID id = UUID.randomUUID();
+            index.put(id, "Product " + i, "ART-" + i, "Description" + i);
+            if (i % 2 == 0) {
+                index.remove(id);
+            }
+        }
+        assertEquals(2501, index.size());
+        assertTrue(index.needsCompaction());
+
+        NgramIndex.Compaction compaction = index.prepareCompaction();
+        // Изменения после копирования документов не влияют на перестроенный индекс
+        index.remove(product);
+        index = compaction.run();
+        assertFalse(index.needsCompaction());
+        assertEquals(2501, index.size());
+        assertEquals(1, index.search("art-4999").size());
+        assertTrue(index.search("art-4998").isEmpty());
+        assertEquals(List.of(product), index.search("new name"));
+
+        index.remove(product);
+        assertTrue(index.search("new").isEmpty());
+    }
+}
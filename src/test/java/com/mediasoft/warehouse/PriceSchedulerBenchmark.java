@@ -0,0 +1,587 @@
+package com.mediasoft.warehouse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mediasoft.warehouse.model.enums.ProductCategory;
+import com.mediasoft.warehouse.money.Money;
+import com.mediasoft.warehouse.scheduling.EpochPriceScheduler;
+import com.mediasoft.warehouse.scheduling.OptimizedSchedulerWithPreparedStatements;
+import com.mediasoft.warehouse.scheduling.OptimizedSchedulerWithSpringBatching;
+import com.mediasoft.warehouse.scheduling.PriceRuleScheduler;
+import com.mediasoft.warehouse.scheduling.SimpleScheduler;
+import com.mediasoft.warehouse.scheduling.SuperOptimizedScheduler;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Нагрузочное сравнение стратегий обновления цен.
+ * Для каждого размера каталога и каждой стратегии поднимает отдельный контекст приложения
+ * со встроенной базой данных, заполняет каталог и несколько раз запускает стратегию.
+ * Результаты (время, товаров в секунду, пиковая куча, объем выделенной памяти, время ожидания блокировок)
+ * записываются в JSON-отчет.
+ * <p>
+ * Запуск: {@code ./gradlew benchmark -Pbenchmark.catalog-sizes=10k,100k -Pbenchmark.iterations=3}.
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark.enabled", matches = "true")
+class PriceSchedulerBenchmark {
+    private static final String INSERT_QUERY = "INSERT INTO product (id, name, article, description, category, " +
+            "price, quantity, last_quantity_change_date, created_date, is_available) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String PROBE_QUERY = "SELECT id FROM product WHERE id = ? FOR UPDATE";
+    private static final int SEED_BATCH_SIZE = 10000;
+    private static final int PROBE_SAMPLE_SIZE = 1000;
+    private static final long PROBE_INTERVAL_MILLIS = 5;
+
+    /**
+     * Сравниваемые стратегии. Новая стратегия добавляется одной записью:
+     * свойства, включающие ее в контексте, и способ получить запуск одного прохода.
+     */
+    private static final List<Strategy> STRATEGIES = List.of(
+            new Strategy("simple",
+                    Map.of("app.scheduling.mode", "simple"),
+                    context -> context.getBean(SimpleScheduler.class)::scheduleFixedDelayTask),
+            new Strategy("prepared-statements",
+                    Map.of("app.scheduling.mode", "optimization"),
+                    context -> context.getBean(OptimizedSchedulerWithPreparedStatements.class)::scheduleFixedDelayTask),
+            new Strategy("prepared-statements-keyset",
+                    Map.of("app.scheduling.mode", "optimization",
+                            "app.scheduling.optimization.keyset.enabled", "true"),
+                    context -> context.getBean(OptimizedSchedulerWithPreparedStatements.class)::scheduleFixedDelayTask),
+            new Strategy("spring-batch",
+                    Map.of("app.scheduling.mode", "optimization",
+                            "app.scheduling.optimization.spring-batch", "true"),
+                    context -> context.getBean(OptimizedSchedulerWithSpringBatching.class)::scheduleFixedDelayTask),
+            new Strategy("spring-batch-partitioned",
+                    Map.of("app.scheduling.mode", "optimization",
+                            "app.scheduling.optimization.spring-batch", "true",
+                            "app.scheduling.optimization.partitioning.enabled", "true"),
+                    context -> context.getBean(OptimizedSchedulerWithSpringBatching.class)::scheduleFixedDelayTask),
+            new Strategy("super",
+                    Map.of("app.scheduling.mode", "super"),
+                    context -> context.getBean(SuperOptimizedScheduler.class)::increaseProductPrice),
+            new Strategy("rules",
+                    Map.of("app.scheduling.mode", "rules"),
+                    context -> context.getBean(PriceRuleScheduler.class)::applyPriceRules),
+            new Strategy("epoch",
+                    Map.of("app.scheduling.mode", "epoch"),
+                    context -> context.getBean(EpochPriceScheduler.class)::scheduleFixedDelayTask)
+    );
+
+    /**
+     * Запускает все выбранные стратегии на всех выбранных размерах каталога и записывает отчет.
+     *
+     * @throws Exception если стратегия или заполнение каталога завершились с ошибкой
+     */
+    @Test
+    void benchmarkPriceSchedulers() throws Exception {
+        final List<Long> catalogSizes = Arrays.stream(System.getProperty("benchmark.catalog-sizes", "10k")
+                .split(",")).map(String::trim).map(PriceSchedulerBenchmark::parseSize).toList();
+        final List<String> strategyNames = Arrays.stream(System.getProperty("benchmark.strategies", "")
+                .split(",")).map(String::trim).filter(name -> !name.isEmpty()).toList();
+        final int iterations = Integer.getInteger("benchmark.iterations", 3);
+        final int warmup = Integer.getInteger("benchmark.warmup", 1);
+        final Path report = Path.of(System.getProperty("benchmark.report",
+                "build/reports/benchmark/price-schedulers.json"));
+
+        final List<RunResult> runs = new ArrayList<>();
+        for (long catalogSize : catalogSizes) {
+            for (Strategy strategy : STRATEGIES) {
+                if (strategyNames.isEmpty() || strategyNames.contains(strategy.name())) {
+                    runs.addAll(runStrategy(strategy, catalogSize, warmup, iterations));
+                }
+            }
+        }
+        writeReport(report, catalogSizes, iterations, warmup, runs);
+    }
+
+    /**
+     * Измеряет время и объем памяти, выделяемой при пересчете одной цены способами,
+     * которыми цены пересчитываются в горячих циклах, и записывает отчет.
+     * Контекст приложения не поднимается.
+     * <p>
+     * Запуск: {@code ./gradlew benchmark -Pbenchmark.conversions=1000000}.
+     *
+     * @throws IOException если произошла ошибка записи отчета
+     */
+    @Test
+    void benchmarkPriceConversion() throws IOException {
+        final int count = Integer.getInteger("benchmark.conversions", 1_000_000);
+        final int iterations = Integer.getInteger("benchmark.iterations", 3);
+        final int warmup = Integer.getInteger("benchmark.warmup", 1);
+        final Path report = Path.of(System.getProperty("benchmark.conversion-report",
+                "build/reports/benchmark/price-conversion.json"));
+        final BigDecimal[] prices = new BigDecimal[count];
+        for (int i = 0; i < count; i++) {
+            prices[i] = BigDecimal.valueOf(100 + i % 10000, 2);
+        }
+        final BigDecimal factorValue = new BigDecimal("1.1010");
+        final Money factor = Money.of(factorValue);
+        final Map<String, UnaryOperator<BigDecimal>> conversions = new LinkedHashMap<>();
+        conversions.put("bigdecimal", price -> price.multiply(factorValue).setScale(2, RoundingMode.HALF_UP));
+        conversions.put("money-of-multiply", price -> Money.of(price).multiply(factor, 2).toBigDecimal());
+        conversions.put("money-apply-to", price -> factor.applyTo(price, 2));
+
+        final List<ConversionResult> results = new ArrayList<>();
+        final BigDecimal[] sink = new BigDecimal[count];
+        for (Map.Entry<String, UnaryOperator<BigDecimal>> conversion : conversions.entrySet()) {
+            for (int i = -warmup; i < iterations; i++) {
+                final long allocatedBefore = currentThreadAllocatedBytes();
+                final long start = System.nanoTime();
+                for (int j = 0; j < count; j++) {
+                    sink[j] = conversion.getValue().apply(prices[j]);
+                }
+                final long nanos = System.nanoTime() - start;
+                final long allocated = currentThreadAllocatedBytes() - allocatedBefore;
+                if (i >= 0) {
+                    results.add(new ConversionResult(conversion.getKey(), i + 1, (double) nanos / count,
+                            (double) allocated / count));
+                }
+            }
+        }
+
+        final Map<String, Object> content = new LinkedHashMap<>();
+        content.put("createdAt", LocalDateTime.now().toString());
+        content.put("javaVersion", System.getProperty("java.version"));
+        content.put("conversions", count);
+        content.put("iterations", iterations);
+        content.put("warmup", warmup);
+        content.put("runs", results);
+        Files.createDirectories(report.toAbsolutePath().getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(report.toFile(), content);
+    }
+
+    /**
+     * Поднимает контекст стратегии, заполняет каталог и выполняет прогревочные и измеряемые проходы.
+     *
+     * @param strategy    стратегия
+     * @param catalogSize размер каталога
+     * @param warmup      количество прогревочных проходов
+     * @param iterations  количество измеряемых проходов
+     * @return результаты измеряемых проходов
+     * @throws Exception если стратегия или заполнение каталога завершились с ошибкой
+     */
+    private List<RunResult> runStrategy(Strategy strategy, long catalogSize, int warmup, int iterations)
+            throws Exception {
+        final List<RunResult> results = new ArrayList<>();
+        try (ConfigurableApplicationContext context = startContext(strategy, catalogSize)) {
+            final DataSource dataSource = context.getBean(DataSource.class);
+            seedCatalog(dataSource, catalogSize);
+            final Runnable run = strategy.runner().apply(context);
+            final List<UUID> probeIds = sampleIds(dataSource);
+
+            for (int i = 0; i < warmup; i++) {
+                run.run();
+            }
+            for (int i = 1; i <= iterations; i++) {
+                results.add(measure(strategy.name(), catalogSize, i, run, dataSource, probeIds));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Поднимает контекст приложения со встроенной базой данных и включенной стратегией.
+     * Свойства передаются аргументами командной строки, чтобы они перекрывали настройки профилей.
+     * Запуски по расписанию откладываются, чтобы проходы выполнялись только из бенчмарка.
+     *
+     * @param strategy    стратегия
+     * @param catalogSize размер каталога
+     * @return контекст приложения
+     */
+    private ConfigurableApplicationContext startContext(Strategy strategy, long catalogSize) {
+        final String name = strategy.name() + "-" + catalogSize;
+        final String url = System.getProperty("benchmark.datasource-url", "jdbc:h2:mem:" + name);
+        final Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("spring.profiles.active", "prod");
+        properties.put("spring.datasource.url", url + (url.startsWith("jdbc:h2:") ? ";LOCK_TIMEOUT=3600000" : ""));
+        properties.put("spring.datasource.driver-class-name", DatabaseDriver.fromJdbcUrl(url).getDriverClassName());
+        properties.put("spring.datasource.username", System.getProperty("benchmark.datasource-username", "sa"));
+        properties.put("spring.datasource.password", System.getProperty("benchmark.datasource-password", ""));
+        properties.put("spring.liquibase.enabled", "false");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("spring.batch.job.enabled", "false");
+        properties.put("app.kafka.enabled", "false");
+        properties.put("app.scheduling.period", "3600000");
+        properties.put("app.scheduling.initial-delay", "3600000");
+        properties.put("app.scheduling.snapshot.directory", "build/benchmark/snapshots/" + name);
+        properties.put("app.scheduling.snapshot.generations", "1");
+        properties.putAll(strategy.properties());
+        return new SpringApplicationBuilder(WarehouseApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(properties.entrySet().stream()
+                        .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                        .toArray(String[]::new));
+    }
+
+    /**
+     * Заполняет каталог товарами пакетными вставками.
+     *
+     * @param dataSource  источник данных
+     * @param catalogSize количество товаров
+     * @throws SQLException если произошла ошибка доступа к бд
+     */
+    private void seedCatalog(DataSource dataSource, long catalogSize) throws SQLException {
+        final ProductCategory[] categories = ProductCategory.values();
+        final Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        final Date today = Date.valueOf(LocalDate.now());
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(INSERT_QUERY)) {
+            connection.setAutoCommit(false);
+            for (long i = 0; i < catalogSize; i++) {
+                statement.setObject(1, UUID.randomUUID());
+                statement.setString(2, "product " + i);
+                statement.setString(3, "article-" + i);
+                statement.setString(4, "description of product " + i);
+                statement.setString(5, categories[(int) (i % categories.length)].name());
+                statement.setBigDecimal(6, BigDecimal.valueOf(100 + i % 10000, 2));
+                statement.setLong(7, i % 1000);
+                statement.setTimestamp(8, now);
+                statement.setDate(9, today);
+                statement.setBoolean(10, true);
+                statement.addBatch();
+                if ((i + 1) % SEED_BATCH_SIZE == 0) {
+                    statement.executeBatch();
+                    connection.commit();
+                }
+            }
+            statement.executeBatch();
+            connection.commit();
+        }
+    }
+
+    /**
+     * Выбирает идентификаторы товаров, на которых проба измеряет ожидание блокировок.
+     *
+     * @param dataSource источник данных
+     * @return идентификаторы товаров
+     * @throws SQLException если произошла ошибка доступа к бд
+     */
+    private List<UUID> sampleIds(DataSource dataSource) throws SQLException {
+        final List<UUID> ids = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT id FROM product LIMIT ?")) {
+            statement.setInt(1, PROBE_SAMPLE_SIZE);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add((UUID) resultSet.getObject(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Выполняет один измеряемый проход стратегии.
+     *
+     * @param strategy    название стратегии
+     * @param catalogSize размер каталога
+     * @param iteration   номер прохода
+     * @param run         проход стратегии
+     * @param dataSource  источник данных для пробы блокировок
+     * @param probeIds    идентификаторы товаров для пробы блокировок
+     * @return результат прохода
+     * @throws InterruptedException если ожидание пробы было прервано
+     */
+    private RunResult measure(String strategy, long catalogSize, int iteration, Runnable run,
+                              DataSource dataSource, List<UUID> probeIds) throws InterruptedException {
+        System.gc();
+        final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        final LockProbe probe = new LockProbe(dataSource, probeIds);
+        final Map<Long, Long> allocatedBefore = threadAllocatedBytes();
+        probe.start();
+        final long start = System.nanoTime();
+        run.run();
+        final long wallTimeNanos = System.nanoTime() - start;
+        final long allocatedBytes = allocatedSince(allocatedBefore, probe.getId());
+        probe.finish();
+
+        final long peakHeapBytes = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        final double seconds = wallTimeNanos / 1e9;
+        return new RunResult(strategy, catalogSize, iteration,
+                wallTimeNanos / 1e6,
+                catalogSize / seconds,
+                peakHeapBytes,
+                allocatedBytes,
+                allocatedBytes / seconds,
+                probe.percentileMillis(100),
+                probe.percentileMillis(99),
+                probe.samples());
+    }
+
+    /**
+     * Возвращает объем памяти, выделенной каждым живым потоком.
+     *
+     * @return объем выделенной памяти по идентификатору потока
+     */
+    private static Map<Long, Long> threadAllocatedBytes() {
+        final Map<Long, Long> result = new HashMap<>();
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadMXBean
+                && threadMXBean.isThreadAllocatedMemorySupported()) {
+            final long[] ids = threadMXBean.getAllThreadIds();
+            final long[] bytes = threadMXBean.getThreadAllocatedBytes(ids);
+            for (int i = 0; i < ids.length; i++) {
+                if (bytes[i] >= 0) {
+                    result.put(ids[i], bytes[i]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает объем памяти, выделенной текущим потоком.
+     *
+     * @return объем выделенной памяти в байтах или 0, если измерение не поддерживается
+     */
+    private static long currentThreadAllocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadMXBean
+                && threadMXBean.isThreadAllocatedMemorySupported()) {
+            return threadMXBean.getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    /**
+     * Считает память, выделенную с момента снимка всеми потоками, кроме пробы.
+     * Потоки, завершившиеся до окончания прохода, не учитываются.
+     *
+     * @param before        снимок выделенной памяти до прохода
+     * @param probeThreadId идентификатор потока пробы
+     * @return объем выделенной памяти в байтах
+     */
+    private static long allocatedSince(Map<Long, Long> before, long probeThreadId) {
+        long total = 0;
+        for (Map.Entry<Long, Long> entry : threadAllocatedBytes().entrySet()) {
+            if (entry.getKey() != probeThreadId) {
+                total += entry.getValue() - before.getOrDefault(entry.getKey(), 0L);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Записывает JSON-отчет с результатами проходов и медианами по стратегиям.
+     *
+     * @param report       путь к отчету
+     * @param catalogSizes размеры каталога
+     * @param iterations   количество измеряемых проходов
+     * @param warmup       количество прогревочных проходов
+     * @param runs         результаты проходов
+     * @throws IOException если произошла ошибка записи отчета
+     */
+    private void writeReport(Path report, List<Long> catalogSizes, int iterations, int warmup,
+                             List<RunResult> runs) throws IOException {
+        final Map<String, List<RunResult>> grouped = new LinkedHashMap<>();
+        runs.forEach(run -> grouped.computeIfAbsent(run.strategy() + "/" + run.catalogSize(),
+                key -> new ArrayList<>()).add(run));
+        final List<Summary> summaries = grouped.values().stream()
+                .map(group -> new Summary(group.get(0).strategy(), group.get(0).catalogSize(),
+                        median(group.stream().map(RunResult::wallTimeMillis).toList()),
+                        median(group.stream().map(RunResult::rowsPerSecond).toList()),
+                        group.stream().mapToLong(RunResult::peakHeapBytes).max().orElse(0),
+                        median(group.stream().map(RunResult::allocationRateBytesPerSecond).toList()),
+                        group.stream().mapToDouble(RunResult::lockWaitMaxMillis).max().orElse(0)))
+                .toList();
+
+        final Map<String, Object> content = new LinkedHashMap<>();
+        content.put("createdAt", LocalDateTime.now().toString());
+        content.put("javaVersion", System.getProperty("java.version"));
+        content.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        content.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+        content.put("catalogSizes", catalogSizes);
+        content.put("iterations", iterations);
+        content.put("warmup", warmup);
+        content.put("summary", summaries);
+        content.put("runs", runs);
+
+        Files.createDirectories(report.toAbsolutePath().getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(report.toFile(), content);
+    }
+
+    /**
+     * Разбирает размер каталога с необязательным суффиксом k или m.
+     *
+     * @param value значение, например 10k или 1m
+     * @return размер каталога
+     */
+    private static long parseSize(String value) {
+        final String normalized = value.toLowerCase(Locale.ROOT);
+        if (normalized.endsWith("k")) {
+            return Long.parseLong(normalized.substring(0, normalized.length() - 1)) * 1_000;
+        }
+        if (normalized.endsWith("m")) {
+            return Long.parseLong(normalized.substring(0, normalized.length() - 1)) * 1_000_000;
+        }
+        return Long.parseLong(normalized);
+    }
+
+    /**
+     * Возвращает медиану значений.
+     *
+     * @param values значения
+     * @return медиана
+     */
+    private static double median(List<Double> values) {
+        final List<Double> sorted = values.stream().sorted().toList();
+        final int middle = sorted.size() / 2;
+        return sorted.size() % 2 == 1 ? sorted.get(middle) : (sorted.get(middle - 1) + sorted.get(middle)) / 2;
+    }
+
+    /**
+     * Сравниваемая стратегия.
+     *
+     * @param name       название стратегии в отчете
+     * @param properties свойства приложения, включающие стратегию
+     * @param runner     способ получить один проход стратегии из контекста
+     */
+    private record Strategy(String name, Map<String, String> properties,
+                            Function<ConfigurableApplicationContext, Runnable> runner) {
+    }
+
+    /**
+     * Результат одного прохода стратегии.
+     */
+    private record RunResult(String strategy, long catalogSize, int iteration, double wallTimeMillis,
+                             double rowsPerSecond, long peakHeapBytes, long allocatedBytes,
+                             double allocationRateBytesPerSecond, double lockWaitMaxMillis,
+                             double lockWaitP99Millis, int lockProbeSamples) {
+    }
+
+    /**
+     * Результат одного прохода пересчета цен.
+     */
+    private record ConversionResult(String conversion, int iteration, double nanosPerConversion,
+                                    double bytesPerConversion) {
+    }
+
+    /**
+     * Медианные показатели стратегии на одном размере каталога.
+     */
+    private record Summary(String strategy, long catalogSize, double medianWallTimeMillis,
+                           double medianRowsPerSecond, long maxPeakHeapBytes,
+                           double medianAllocationRateBytesPerSecond, double maxLockWaitMillis) {
+    }
+
+    /**
+     * Проба, которая во время прохода стратегии периодически блокирует случайный товар
+     * в отдельной транзакции и измеряет время ожидания блокировки.
+     * Максимальное время ожидания приближенно равно времени удержания блокировок стратегией.
+     */
+    private static final class LockProbe extends Thread {
+        private final DataSource dataSource;
+        private final List<UUID> ids;
+        private final List<Long> waits = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean running = true;
+
+        /**
+         * Создает пробу.
+         *
+         * @param dataSource источник данных
+         * @param ids        идентификаторы товаров для блокировки
+         */
+        LockProbe(DataSource dataSource, List<UUID> ids) {
+            super("benchmark-lock-probe");
+            this.dataSource = dataSource;
+            this.ids = ids;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            if (ids.isEmpty()) {
+                return;
+            }
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(PROBE_QUERY)) {
+                connection.setAutoCommit(false);
+                while (running) {
+                    statement.setObject(1, ids.get(ThreadLocalRandom.current().nextInt(ids.size())));
+                    final long start = System.nanoTime();
+                    statement.executeQuery().close();
+                    waits.add(System.nanoTime() - start);
+                    connection.rollback();
+                    Thread.sleep(PROBE_INTERVAL_MILLIS);
+                }
+            } catch (SQLException exception) {
+                throw new IllegalStateException("Lock probe failed", exception);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Останавливает пробу и дожидается завершения последнего измерения.
+         *
+         * @throws InterruptedException если ожидание было прервано
+         */
+        void finish() throws InterruptedException {
+            running = false;
+            join();
+        }
+
+        /**
+         * Возвращает перцентиль времени ожидания блокировки.
+         *
+         * @param percentile перцентиль от 0 до 100
+         * @return время ожидания в миллисекундах
+         */
+        double percentileMillis(int percentile) {
+            final List<Long> sorted = waits.stream().sorted().toList();
+            if (sorted.isEmpty()) {
+                return 0;
+            }
+            final int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+            return sorted.get(Math.max(index, 0)) / 1e6;
+        }
+
+        /**
+         * Возвращает количество измерений.
+         *
+         * @return количество измерений
+         */
+        int samples() {
+            return waits.size();
+        }
+    }
+}
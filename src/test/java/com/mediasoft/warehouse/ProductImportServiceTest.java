@@ -0,0 +1,114 @@
+package com.mediasoft.warehouse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediasoft.warehouse.dto.ViewImportResultDto;
+import com.mediasoft.warehouse.model.enums.ImportStatus;
+import com.mediasoft.warehouse.repository.ProductRepository;
+import com.mediasoft.warehouse.service.PriceEpochProvider;
+import com.mediasoft.warehouse.service.ProductImportService;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тестирование массового импорта товаров.
+ */
+@DataJpaTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ProductImportServiceTest {
+    @Autowired
+    ProductRepository productRepository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    ProductImportService importService;
+
+    @BeforeAll
+    void setUp() {
+        importService = new ProductImportService(productRepository, jdbcTemplate, transactionManager,
+                new PriceEpochProvider(null), Validation.buildDefaultValidatorFactory().getValidator(),
+                event -> { }, new ObjectMapper(), 2);
+    }
+
+    /**
+     * Создает поток с данными импорта.
+     *
+     * @param data данные
+     * @return поток в UTF-8
+     */
+    private static InputStream stream(String data) {
+        return new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Создает JSON товара.
+     *
+     * @param article артикул товара
+     * @return JSON товара
+     */
+    private static String json(String article) {
+        return "{\"name\":\"Product\",\"article\":\"" + article + "\",\"description\":\"Description\","
+                + "\"category\":\"BOOKS\",\"price\":10.5,\"quantity\":3,\"isAvailable\":true}";
+    }
+
+    /**
+     * Тест на импорт JSON с нарушенным форматом: прочитанные до ошибки товары создаются,
+     * а результат содержит место ошибки.
+     */
+    @Test
+    void testMalformedJsonReturnsPartialReport() throws IOException {
+        ViewImportResultDto result = importService.importJson(stream("[\n" + json("J-1") + ",\n"
+                + json("J-2") + ",\n" + json("J-3") + ",\n{\"name\": oops}\n]"));
+
+        assertEquals(3, result.getCreated());
+        assertEquals(0, result.getRejected());
+        assertTrue(result.getItems().stream().allMatch(item -> item.getStatus() == ImportStatus.CREATED));
+        assertTrue(result.getError().startsWith("Malformed JSON at line 5, column "), result.getError());
+        assertTrue(result.getError().contains("(product 3)"), result.getError());
+        assertEquals(3, productRepository.findExistingArticles(List.of("J-1", "J-2", "J-3")).size());
+
+        assertThrows(IllegalArgumentException.class, () -> importService.importJson(stream("{}")));
+    }
+
+    /**
+     * Тест на импорт CSV с нарушенным форматом: прочитанные до ошибки товары создаются,
+     * а результат содержит строку ошибочной записи.
+     */
+    @Test
+    void testMalformedCsvReturnsPartialReport() throws IOException {
+        ViewImportResultDto result = importService.importCsv(stream(
+                "name,article,description,category,price,quantity,isAvailable\n"
+                        + "Chair,C-1,Oak,BOOKS,10,1,true\n"
+                        + "Table,C-2,\"Two\nlines\",BOOKS,20,2,true\n"
+                        + "Lamp,C-3,Desk,BOOKS,abc,3,true\n"
+                        + "Sofa,C-4,\"unterminated,BOOKS,40,4,true\n"));
+
+        assertEquals(2, result.getCreated());
+        assertEquals(1, result.getRejected());
+        assertEquals(ImportStatus.INVALID, result.getItems().get(2).getStatus());
+        assertEquals("Malformed CSV at line 6 (product 3): Unterminated quoted value", result.getError());
+        assertEquals(2, productRepository.findExistingArticles(List.of("C-1", "C-2", "C-4")).size());
+
+        ViewImportResultDto complete = importService.importCsv(stream(
+                "name,article,description,category,price,quantity,isAvailable\nBed,C-5,Wide,BOOKS,50,5,true\n"));
+        assertEquals(1, complete.getCreated());
+        assertNull(complete.getError());
+    }
+}
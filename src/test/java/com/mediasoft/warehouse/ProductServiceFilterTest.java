@@ -1,11 +1,26 @@
 package com.mediasoft.warehouse;
 
+import com.mediasoft.warehouse.dto.SaveProductDto;
+import com.mediasoft.warehouse.dto.ViewPriceBucketDto;
+import com.mediasoft.warehouse.dto.ViewProductBatchDto;
+import com.mediasoft.warehouse.dto.ViewProductDto;
+import com.mediasoft.warehouse.dto.ViewProductFacetsDto;
+import com.mediasoft.warehouse.filter.currency.CurrencyProvider;
+import com.mediasoft.warehouse.model.PriceEpoch;
 import com.mediasoft.warehouse.model.Product;
 import com.mediasoft.warehouse.model.enums.FieldName;
 import com.mediasoft.warehouse.model.enums.OperationType;
 import com.mediasoft.warehouse.model.enums.ProductCategory;
+import com.mediasoft.warehouse.repository.PriceEpochRepository;
 import com.mediasoft.warehouse.repository.ProductRepository;
 import com.mediasoft.warehouse.search.*;
+import com.mediasoft.warehouse.search.engine.LikeProductSearchEngine;
+import com.mediasoft.warehouse.search.plan.FilterPlanCompiler;
+import com.mediasoft.warehouse.service.PriceEpochProvider;
+import com.mediasoft.warehouse.service.ProductChangedEvent;
+import com.mediasoft.warehouse.service.ProductCountEstimator;
+import com.mediasoft.warehouse.service.ProductFacetService;
+import com.mediasoft.warehouse.service.ProductSearchCache;
 import com.mediasoft.warehouse.service.ProductService;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -14,14 +29,23 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -32,6 +56,10 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 public class ProductServiceFilterTest {
     @Autowired
     ProductRepository productRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    PriceEpochRepository priceEpochRepository;
     ProductService productService;
 
     /**
@@ -64,7 +92,11 @@ public class ProductServiceFilterTest {
      */
     @BeforeAll
     void init() {
-        productService = new ProductService(productRepository, null, null);
+        productService = new ProductService(productRepository, new CurrencyProvider(), null,
+                new PriceEpochProvider(null),
+                new LikeProductSearchEngine(productRepository), event -> { },
+                new ProductCountEstimator(null, 60000, 100), new FilterPlanCompiler(false, false, 100),
+                new ProductSearchCache(null, false));
         productRepository.save(createProduct(1, 500, 50));
         productRepository.save(createProduct(2, 600, 60));
         productRepository.save(createProduct(3, 650, 70, "Product"));
@@ -119,9 +151,10 @@ public class ProductServiceFilterTest {
         filters.add(localDateTimeProductFilter);
         filters.add(localDateProductFilter);
 
-        Page<Product> productsPage = productService.getAllProducts(PageRequest.of(0, 5), filters);
+        Slice<ViewProductDto> productsPage =
+                productService.getAllProducts(PageRequest.of(0, 5), filters, CountMode.EXACT);
         assertEquals(1, productsPage.getContent().size(), "Ожидается 1 товар в результате фильтрации");
-        Product product = productsPage.getContent().get(0);
+        ViewProductDto product = productsPage.getContent().get(0);
 
         assertTrue(product.getName().startsWith("Product"), "Ожидается товар с названием, начинающимся на 'Product'");
         assertTrue(product.getPrice().compareTo(minPrice) >= 0 && product.getPrice().compareTo(maxPrice) <= 0,
@@ -132,4 +165,142 @@ public class ProductServiceFilterTest {
         assertTrue(priceDifference.compareTo(tenPercentOfSimilarPrice) <= 0,
                 String.format("Цена товара должна отличаться от %s не более чем на 10%%", similarPrice));
     }
+
+    /**
+     * Проверяет поиск по подстроке без учета регистра и экранирование специальных символов LIKE.
+     */
+    @Test
+    void testLikeSearchEngine() {
+        LikeProductSearchEngine searchEngine = new LikeProductSearchEngine(productRepository);
+        assertEquals(5, searchEngine.search("product", PageRequest.of(0, 10)).getTotalElements());
+        assertEquals(1, searchEngine.search("4 PROD", PageRequest.of(0, 10)).getTotalElements());
+        assertEquals(1, searchEngine.search("description3", PageRequest.of(0, 10)).getTotalElements());
+        assertEquals(0, searchEngine.search("%", PageRequest.of(0, 10)).getTotalElements());
+        assertEquals(0, searchEngine.search("Product_", PageRequest.of(0, 10)).getTotalElements());
+    }
+
+    /**
+     * Проверяет постраничное чтение по курсору: порядок, курсор последней страницы и подсчет.
+     */
+    @Test
+    void testCursorPagination() {
+        List<BigDecimal> prices = new ArrayList<>();
+        CursorPage<ViewProductDto> page = productService.getProductsAfter(List.of(), null, FieldName.PRICE,
+                Sort.Direction.DESC, 2, true);
+        assertEquals(5, page.getTotalElements());
+        int pages = 1;
+        page.getContent().forEach(product -> prices.add(product.getPrice()));
+        while (page.getNextCursor() != null) {
+            page = productService.getProductsAfter(List.of(), page.getNextCursor(), FieldName.ID,
+                    Sort.Direction.ASC, 2, false);
+            assertNull(page.getTotalElements());
+            page.getContent().forEach(product -> prices.add(product.getPrice()));
+            pages++;
+        }
+        assertEquals(3, pages);
+        assertEquals(List.of(700, 670, 650, 600, 500), prices.stream().map(BigDecimal::intValue).toList());
+        assertThrows(IllegalArgumentException.class, () -> productService.getProductsAfter(List.of(), "broken",
+                FieldName.ID, Sort.Direction.ASC, 2, false));
+    }
+
+    /**
+     * Проверяет выборку без подсчета и с приблизительным количеством товаров.
+     */
+    @Test
+    void testCountModes() {
+        BigDecimalProductFilter priceFilter = new BigDecimalProductFilter();
+        priceFilter.setField(FieldName.PRICE);
+        priceFilter.setOperation(OperationType.GRATER_THAN_OR_EQ);
+        priceFilter.setSearchParam(BigDecimal.valueOf(600));
+        List<AbstractProductFilter<?>> filters = List.of(priceFilter);
+
+        Slice<ViewProductDto> firstSlice = productService.getAllProducts(PageRequest.of(0, 3), filters, CountMode.NONE);
+        assertFalse(firstSlice instanceof Page);
+        assertEquals(3, firstSlice.getNumberOfElements());
+        assertTrue(firstSlice.hasNext());
+        Slice<ViewProductDto> lastSlice = productService.getAllProducts(PageRequest.of(1, 3), filters, CountMode.NONE);
+        assertEquals(1, lastSlice.getNumberOfElements());
+        assertFalse(lastSlice.hasNext());
+
+        Slice<ViewProductDto> approximate =
+                productService.getAllProducts(PageRequest.of(0, 3), filters, CountMode.APPROXIMATE);
+        assertTrue(approximate instanceof ApproximatePage);
+        assertEquals(4, ((Page<ViewProductDto>) approximate).getTotalElements());
+        assertTrue(approximate.hasNext());
+    }
+
+    /**
+     * Проверяет выборку DTO товаров по идентификаторам с ценой, пересчитанной в бд.
+     */
+    @Test
+    void testViewsByIds() {
+        Product product = productRepository.findAll().get(0);
+        UUID missingId = UUID.randomUUID();
+        ViewProductBatchDto batch = productService.getProductViewsByIds(
+                new LinkedHashSet<>(List.of(product.getId(), missingId)));
+        assertEquals(1, batch.getProducts().size());
+        assertEquals(0, product.getPrice().compareTo(batch.getProducts().get(0).getPrice()));
+        assertEquals(List.of(missingId), batch.getMissing());
+    }
+
+    /**
+     * Проверяет, что цена товара, сохраненная при множителе эпохи, не равном единице, читается без искажения.
+     */
+    @Test
+    void testPriceRoundTripUnderEpochMultiplier() {
+        PriceEpochProvider epochProvider = new PriceEpochProvider(priceEpochRepository);
+        ReflectionTestUtils.setField(epochProvider, "enabled", true);
+        priceEpochRepository.save(new PriceEpoch(new BigDecimal("1.21")));
+        ProductService epochProductService = new ProductService(productRepository, new CurrencyProvider(), null,
+                epochProvider, new LikeProductSearchEngine(productRepository), event -> { },
+                new ProductCountEstimator(null, 60000, 100), new FilterPlanCompiler(false, false, 100),
+                new ProductSearchCache(null, false));
+
+        for (String price : List.of("100.00", "0.01", "123.45", "99999.99")) {
+            SaveProductDto dto = new SaveProductDto();
+            dto.setName("Epoch product");
+            dto.setArticle("Epoch " + price);
+            dto.setDescription("Description");
+            dto.setCategory(ProductCategory.BOOKS);
+            dto.setPrice(new BigDecimal(price));
+            dto.setQuantity(1L);
+            dto.setIsAvailable(true);
+            Product created = epochProductService.createProduct(dto);
+            assertEquals(0, new BigDecimal(price).compareTo(
+                    epochProductService.getProductViewById(created.getId()).getPrice()), price);
+        }
+    }
+
+    /**
+     * Проверяет фасеты всех товаров по счетчикам, их изменение при удалении товара и фасеты с фильтрами.
+     */
+    @Test
+    void testFacets() {
+        ProductFacetService facetService = new ProductFacetService(productRepository, new PriceEpochProvider(null),
+                new FilterPlanCompiler(false, false, 100), transactionManager,
+                new BigDecimal[]{BigDecimal.valueOf(700), BigDecimal.valueOf(600)});
+
+        ViewProductFacetsDto all = facetService.getFacets(List.of());
+        assertEquals(5, all.getTotal());
+        assertEquals(5, all.getCategories().get(ProductCategory.BOOKS));
+        assertEquals(0, all.getCategories().get(ProductCategory.CLOTHING));
+        assertEquals(5, all.getAvailability().get(true));
+        assertEquals(List.of(1L, 3L, 1L), all.getPrices().stream().map(ViewPriceBucketDto::getCount).toList());
+        assertNull(all.getPrices().get(0).getFrom());
+        assertEquals(BigDecimal.valueOf(600), all.getPrices().get(0).getTo());
+
+        facetService.onProductChanged(ProductChangedEvent.deleted(UUID.randomUUID(),
+                new ProductChangedEvent.Facets(ProductCategory.BOOKS, true, BigDecimal.valueOf(650))));
+        ViewProductFacetsDto afterDelete = facetService.getFacets(List.of());
+        assertEquals(4, afterDelete.getTotal());
+        assertEquals(2, afterDelete.getPrices().get(1).getCount());
+
+        BigDecimalProductFilter priceFilter = new BigDecimalProductFilter();
+        priceFilter.setField(FieldName.PRICE);
+        priceFilter.setOperation(OperationType.GRATER_THAN_OR_EQ);
+        priceFilter.setSearchParam(BigDecimal.valueOf(600));
+        ViewProductFacetsDto filtered = facetService.getFacets(List.of(priceFilter));
+        assertEquals(4, filtered.getTotal());
+        assertEquals(List.of(0L, 3L, 1L), filtered.getPrices().stream().map(ViewPriceBucketDto::getCount).toList());
+    }
 }
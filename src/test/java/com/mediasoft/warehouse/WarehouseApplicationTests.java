@@ -125,7 +125,7 @@ class WarehouseApplicationTests {
     @Test
     void testGetProduct() {
         Product createdProduct = productService.createProduct(createProductDto());
-        Product product = productService.getProductById(createdProduct.getId());
+        Product product = productService.getRawProductById(createdProduct.getId());
         assertProductEquals(new SaveProductDto(createdProduct), product);
         assertEquals(createdProduct.getCreatedDate(), product.getCreatedDate());
         assertEquals(
@@ -140,7 +140,7 @@ class WarehouseApplicationTests {
     @Test
     void testInvalidGetProduct() {
         Assertions.assertThrows(ProductNotFoundException.class, () ->
-                productService.getProductById(UUID.randomUUID()));
+                productService.getRawProductById(UUID.randomUUID()));
     }
 
     /**
@@ -154,7 +154,7 @@ class WarehouseApplicationTests {
         product.setArticle("new_article");
         productService.createProduct(product);
 
-        Page<Product> products = productService.getAllProducts(1, 3);
+        Page<Product> products = productService.getRawProducts(1, 3);
         assertEquals(2, products.getTotalElements());
     }
 
@@ -178,9 +178,9 @@ class WarehouseApplicationTests {
         product.setDescription("name");
         productService.createProduct(product);
 
-        Page<Product> products = productService.getAllProducts(1, 5);
+        Page<Product> products = productService.getRawProducts(1, 5);
         assertEquals(4, products.getTotalElements());
-        products = productService.getAllProducts("name", 1, 5);
+        products = productService.searchRawProducts("name", 1, 5);
         assertEquals(3, products.getTotalElements());
     }
 
@@ -192,7 +192,7 @@ class WarehouseApplicationTests {
         SaveProductDto product = createProductDto();
         Product createdProduct = productService.createProduct(product);
         Assertions.assertTrue(productService.deleteProduct(createdProduct.getId()));
-        Assertions.assertThrows(ProductNotFoundException.class, () -> productService.getProductById(createdProduct.getId()));
+        Assertions.assertThrows(ProductNotFoundException.class, () -> productService.getRawProductById(createdProduct.getId()));
     }
 
     /**